@@ -19,6 +19,8 @@ package github.nisrulz.projectqreader;
 import android.Manifest;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
@@ -28,6 +30,7 @@ import android.widget.Button;
 import android.widget.TextView;
 import github.nisrulz.qreader.QRDataListener;
 import github.nisrulz.qreader.QREader;
+import java.util.concurrent.TimeUnit;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -98,16 +101,14 @@ public class MainActivity extends AppCompatActivity {
     qrEader = new QREader.Builder(this, mySurfaceView, new QRDataListener() {
       @Override
       public void onDetected(final String data) {
+        // Delivered on the main thread, see deliverOn() below
         Log.d("QREader", "Value : " + data);
-        text.post(new Runnable() {
-          @Override
-          public void run() {
-            text.setText(data);
-          }
-        });
+        text.setText(data);
       }
     }).facing(QREader.BACK_CAM)
         .enableAutofocus(true)
+        .deduplicateWithin(2, TimeUnit.SECONDS)
+        .deliverOn(new Handler(Looper.getMainLooper()), 200, TimeUnit.MILLISECONDS)
         .height(mySurfaceView.getHeight())
         .width(mySurfaceView.getWidth())
         .build();
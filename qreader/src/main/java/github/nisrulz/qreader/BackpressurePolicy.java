@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+/**
+ * What happens to new results while the listeners are still busy with earlier ones.
+ *
+ * @see QREader.Builder#backpressure(BackpressurePolicy, int)
+ */
+public enum BackpressurePolicy {
+  /**
+   * The detector waits until there is room in the queue, throttling the camera pipeline to the
+   * speed of the listeners. Once the reader is stopping, results are dropped instead.
+   */
+  BLOCK,
+  /**
+   * New results are dropped while the queue is full.
+   */
+  DROP_NEWEST,
+  /**
+   * The oldest queued result is dropped to make room for a new one.
+   */
+  DROP_OLDEST,
+  /**
+   * Only the most recent result is kept, replacing any result not delivered yet.
+   */
+  LATEST_ONLY
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.os.SystemClock;
+import android.util.SparseArray;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.barcode.Barcode;
+
+/**
+ * Receives the detections of every frame and hands the results to the dispatcher and the
+ * publisher.
+ */
+class BarcodeProcessor implements Detector.Processor<Barcode> {
+  private final ResultDispatcher dispatcher;
+  private final ResultPublisher publisher;
+  private final StructuredAppendReassembler reassembler;
+  private final ConsensusFilter consensusFilter;
+  private final DuplicateFilter duplicateFilter;
+  private final DetectedCodes codes = new DetectedCodes();
+
+  /**
+   * Instantiates a new Barcode processor.
+   *
+   * @param dispatcher
+   *     the dispatcher handing codes to the listeners
+   * @param publisher
+   *     the publisher handing codes to the subscribers
+   * @param reassembler
+   *     the reassembler joining structured append sequences, or null to deliver their symbols
+   *     one by one
+   * @param consensusFilter
+   *     the filter for values not decoded in enough recent frames, or null to deliver values
+   *     decoded once
+   * @param duplicateFilter
+   *     the filter for values delivered recently, or null to deliver every detection
+   */
+  BarcodeProcessor(ResultDispatcher dispatcher, ResultPublisher publisher,
+      StructuredAppendReassembler reassembler, ConsensusFilter consensusFilter,
+      DuplicateFilter duplicateFilter) {
+    this.dispatcher = dispatcher;
+    this.publisher = publisher;
+    this.reassembler = reassembler;
+    this.consensusFilter = consensusFilter;
+    this.duplicateFilter = duplicateFilter;
+  }
+
+  @Override
+  public void release() {
+    dispatcher.release();
+  }
+
+  @Override
+  public void receiveDetections(Detector.Detections<Barcode> detections) {
+    final SparseArray<Barcode> barcodes = detections.getDetectedItems();
+    if (!dispatcher.hasListeners() && !publisher.hasSubscribers()) {
+      return;
+    }
+    if (consensusFilter != null) {
+      // Frames without codes count towards the window as well
+      consensusFilter.nextFrame();
+    }
+    if (barcodes.size() == 0) {
+      return;
+    }
+
+    codes.clear();
+    final long now = SystemClock.elapsedRealtime();
+    for (int i = 0; i < barcodes.size(); i++) {
+      Barcode barcode = barcodes.valueAt(i);
+      if (reassembler != null && barcode instanceof DecodedBarcode
+          && ((DecodedBarcode) barcode).isSequencePart()) {
+        barcode = reassembler.offer((DecodedBarcode) barcode, now);
+        if (barcode == null) {
+          // Waiting for the other symbols of the sequence
+          continue;
+        }
+      }
+      if (consensusFilter == null && duplicateFilter == null) {
+        // Nothing compares values, leave decoding the text to the listeners
+        codes.add(barcode);
+        continue;
+      }
+      final String rawValue = DecodedBarcode.rawValueOf(barcode);
+      if (consensusFilter != null && (rawValue == null || !consensusFilter.vote(rawValue))) {
+        continue;
+      }
+      if (duplicateFilter == null || rawValue == null || !duplicateFilter.isDuplicate(rawValue,
+          now)) {
+        codes.add(barcode);
+      }
+    }
+    if (codes.size() != 0) {
+      publisher.publish(codes);
+      dispatcher.dispatch(codes);
+    }
+  }
+}
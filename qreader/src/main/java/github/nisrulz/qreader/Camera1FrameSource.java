@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.hardware.Camera;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+import android.view.WindowManager;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A frame source backed by the {@link Camera} API. Preview callbacks are delivered on a dedicated
+ * thread into a fixed set of callback buffers, whose luminance planes are copied into pooled
+ * frames.
+ */
+@SuppressWarnings("deprecation")
+public class Camera1FrameSource implements FrameSource, Camera.PreviewCallback {
+  private static final int CALLBACK_BUFFER_COUNT = 3;
+  private final String LOGTAG = getClass().getSimpleName();
+  private final Context context;
+  private final SurfaceHolder surfaceHolder;
+  private final int facing;
+  private final int requestedWidth;
+  private final int requestedHeight;
+  private final AtomicLong droppedFrameCount = new AtomicLong();
+  private HandlerThread cameraThread;
+  private Camera camera;
+  private LuminanceBufferPool pool;
+  private FrameConsumer consumer;
+  private int width;
+  private int height;
+  private int rotation;
+  private int frameId;
+
+  /**
+   * Instantiates a new Camera 1 frame source.
+   *
+   * @param context
+   *     the context
+   * @param surfaceHolder
+   *     the holder of the surface showing the preview
+   * @param facing
+   *     {@link QREader#BACK_CAM} or {@link QREader#FRONT_CAM}
+   * @param width
+   *     the requested preview width
+   * @param height
+   *     the requested preview height
+   */
+  public Camera1FrameSource(Context context, SurfaceHolder surfaceHolder, int facing, int width,
+      int height) {
+    this.context = context.getApplicationContext();
+    this.surfaceHolder = surfaceHolder;
+    this.facing = facing;
+    this.requestedWidth = width;
+    this.requestedHeight = height;
+  }
+
+  @Override
+  public synchronized void start(FrameConsumer consumer) throws IOException {
+    if (cameraThread != null) {
+      throw new IllegalStateException("Frame source already started!");
+    }
+    this.consumer = consumer;
+    cameraThread = new HandlerThread("QREader-Camera1FrameSource");
+    cameraThread.start();
+
+    // Preview callbacks arrive on the looper of the thread opening the camera
+    final IOException[] failure = new IOException[1];
+    final CountDownLatch opened = new CountDownLatch(1);
+    new Handler(cameraThread.getLooper()).post(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          openCamera();
+        } catch (IOException | RuntimeException e) {
+          failure[0] = e instanceof IOException ? (IOException) e : new IOException(e);
+        } finally {
+          opened.countDown();
+        }
+      }
+    });
+    try {
+      opened.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failure[0] = new IOException("Interrupted while opening the camera");
+    }
+    if (failure[0] != null) {
+      stop();
+      throw failure[0];
+    }
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (camera != null) {
+      camera.stopPreview();
+      camera.setPreviewCallbackWithBuffer(null);
+      camera.release();
+      camera = null;
+    }
+    if (cameraThread != null) {
+      cameraThread.quit();
+      cameraThread = null;
+    }
+  }
+
+  @Override
+  public void onPreviewFrame(byte[] data, Camera camera) {
+    final LuminanceFrame frame = pool.acquire();
+    if (frame != null) {
+      System.arraycopy(data, 0, frame.getData(), 0, width * height);
+      frame.setMetadata(frameId++, width, height, rotation, SystemClock.elapsedRealtime());
+    }
+    else {
+      droppedFrameCount.incrementAndGet();
+    }
+    camera.addCallbackBuffer(data);
+    if (frame != null) {
+      consumer.onFrame(frame);
+    }
+  }
+
+  /**
+   * Gets the number of frames dropped because no pooled buffer was free.
+   *
+   * @return the dropped frame count
+   */
+  public long getDroppedFrameCount() {
+    return droppedFrameCount.get();
+  }
+
+  private void openCamera() throws IOException {
+    final Camera.CameraInfo cameraInfo = new Camera.CameraInfo();
+    int cameraId = -1;
+    for (int i = 0; i < Camera.getNumberOfCameras(); i++) {
+      Camera.getCameraInfo(i, cameraInfo);
+      if (cameraInfo.facing == facing) {
+        cameraId = i;
+        break;
+      }
+    }
+    if (cameraId == -1) {
+      throw new IOException("No camera facing " + facing);
+    }
+    camera = Camera.open(cameraId);
+
+    final Camera.Parameters parameters = camera.getParameters();
+    final Camera.Size size = selectPreviewSize(parameters.getSupportedPreviewSizes());
+    width = size.width;
+    height = size.height;
+    parameters.setPreviewSize(width, height);
+    parameters.setPreviewFormat(ImageFormat.NV21);
+    if (parameters.getSupportedFocusModes()
+        .contains(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE)) {
+      parameters.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE);
+    }
+    camera.setParameters(parameters);
+    setRotation(cameraInfo);
+
+    if (pool == null || pool.getBufferSize() != width * height) {
+      pool = new LuminanceBufferPool(CALLBACK_BUFFER_COUNT, width * height);
+    }
+    final int bufferSize = width * height * ImageFormat.getBitsPerPixel(ImageFormat.NV21) / 8;
+    for (int i = 0; i < CALLBACK_BUFFER_COUNT; i++) {
+      camera.addCallbackBuffer(new byte[bufferSize]);
+    }
+    camera.setPreviewCallbackWithBuffer(this);
+    camera.setPreviewDisplay(surfaceHolder);
+    camera.startPreview();
+  }
+
+  private Camera.Size selectPreviewSize(List<Camera.Size> sizes) {
+    Camera.Size selected = sizes.get(0);
+    int minDiff = Integer.MAX_VALUE;
+    for (Camera.Size size : sizes) {
+      final int diff =
+          Math.abs(size.width - requestedWidth) + Math.abs(size.height - requestedHeight);
+      if (diff < minDiff) {
+        selected = size;
+        minDiff = diff;
+      }
+    }
+    return selected;
+  }
+
+  private void setRotation(Camera.CameraInfo cameraInfo) {
+    final WindowManager windowManager =
+        (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+    int degrees = 0;
+    switch (windowManager.getDefaultDisplay().getRotation()) {
+      case Surface.ROTATION_90:
+        degrees = 90;
+        break;
+      case Surface.ROTATION_180:
+        degrees = 180;
+        break;
+      case Surface.ROTATION_270:
+        degrees = 270;
+        break;
+      default:
+        break;
+    }
+
+    final int angle;
+    final int displayAngle;
+    if (cameraInfo.facing == Camera.CameraInfo.CAMERA_FACING_FRONT) {
+      angle = (cameraInfo.orientation + degrees) % 360;
+      displayAngle = (360 - angle) % 360;
+    }
+    else {
+      angle = (cameraInfo.orientation - degrees + 360) % 360;
+      displayAngle = angle;
+    }
+    rotation = angle / 90;
+    camera.setDisplayOrientation(displayAngle);
+    Log.d(LOGTAG, "Preview " + width + "x" + height + ", rotation " + angle);
+  }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.Size;
+import android.view.SurfaceHolder;
+import android.view.WindowManager;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A frame source backed by the camera2 API, available from Lollipop on. Frames are read from a
+ * YUV {@link ImageReader} and their luminance planes copied into pooled frames.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class Camera2FrameSource implements FrameSource, ImageReader.OnImageAvailableListener {
+  private static final int MAX_IMAGES = 2;
+  private static final int POOL_SIZE = 3;
+  private final String LOGTAG = getClass().getSimpleName();
+  private final Context context;
+  private final SurfaceHolder surfaceHolder;
+  private final int lensFacing;
+  private final int requestedWidth;
+  private final int requestedHeight;
+  private final AtomicLong droppedFrameCount = new AtomicLong();
+  private HandlerThread cameraThread;
+  private Handler cameraHandler;
+  private CameraDevice cameraDevice;
+  private CameraCaptureSession captureSession;
+  private ImageReader imageReader;
+  private LuminanceBufferPool pool;
+  private FrameConsumer consumer;
+  private int width;
+  private int height;
+  private int rotation;
+  private int frameId;
+
+  /**
+   * Instantiates a new Camera 2 frame source.
+   *
+   * @param context
+   *     the context
+   * @param surfaceHolder
+   *     the holder of the surface showing the preview
+   * @param facing
+   *     {@link QREader#BACK_CAM} or {@link QREader#FRONT_CAM}
+   * @param width
+   *     the requested preview width
+   * @param height
+   *     the requested preview height
+   */
+  public Camera2FrameSource(Context context, SurfaceHolder surfaceHolder, int facing, int width,
+      int height) {
+    this.context = context.getApplicationContext();
+    this.surfaceHolder = surfaceHolder;
+    this.lensFacing = facing == QREader.FRONT_CAM ? CameraCharacteristics.LENS_FACING_FRONT
+        : CameraCharacteristics.LENS_FACING_BACK;
+    this.requestedWidth = width;
+    this.requestedHeight = height;
+  }
+
+  @SuppressLint("MissingPermission")
+  @Override
+  public synchronized void start(FrameConsumer consumer) throws IOException {
+    if (cameraThread != null) {
+      throw new IllegalStateException("Frame source already started!");
+    }
+    this.consumer = consumer;
+    final CameraManager manager =
+        (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+    try {
+      final String cameraId = selectCamera(manager);
+      final CameraCharacteristics characteristics = manager.getCameraCharacteristics(cameraId);
+      final StreamConfigurationMap map =
+          characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+      final Size size = selectSize(map.getOutputSizes(ImageFormat.YUV_420_888));
+      width = size.getWidth();
+      height = size.getHeight();
+      setRotation(characteristics);
+
+      if (pool == null || pool.getBufferSize() != width * height) {
+        pool = new LuminanceBufferPool(POOL_SIZE, width * height);
+      }
+      cameraThread = new HandlerThread("QREader-Camera2FrameSource");
+      cameraThread.start();
+      cameraHandler = new Handler(cameraThread.getLooper());
+      imageReader = ImageReader.newInstance(width, height, ImageFormat.YUV_420_888, MAX_IMAGES);
+      imageReader.setOnImageAvailableListener(this, cameraHandler);
+      surfaceHolder.setFixedSize(width, height);
+      manager.openCamera(cameraId, stateCallback, cameraHandler);
+    } catch (CameraAccessException | RuntimeException e) {
+      stop();
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (captureSession != null) {
+      captureSession.close();
+      captureSession = null;
+    }
+    if (cameraDevice != null) {
+      cameraDevice.close();
+      cameraDevice = null;
+    }
+    if (imageReader != null) {
+      imageReader.close();
+      imageReader = null;
+    }
+    if (cameraThread != null) {
+      cameraThread.quitSafely();
+      cameraThread = null;
+      cameraHandler = null;
+    }
+  }
+
+  @Override
+  public void onImageAvailable(ImageReader reader) {
+    final Image image = reader.acquireLatestImage();
+    if (image == null) {
+      return;
+    }
+    final LuminanceFrame frame = pool.acquire();
+    try {
+      if (frame == null) {
+        droppedFrameCount.incrementAndGet();
+        return;
+      }
+      final Image.Plane plane = image.getPlanes()[0];
+      final ByteBuffer buffer = plane.getBuffer();
+      final int rowStride = plane.getRowStride();
+      final byte[] data = frame.getData();
+      if (rowStride == width) {
+        buffer.get(data, 0, width * height);
+      }
+      else {
+        for (int y = 0; y < height; y++) {
+          buffer.position(y * rowStride);
+          buffer.get(data, y * width, width);
+        }
+      }
+      frame.setMetadata(frameId++, width, height, rotation, SystemClock.elapsedRealtime());
+    } finally {
+      image.close();
+    }
+    consumer.onFrame(frame);
+  }
+
+  /**
+   * Gets the number of frames dropped because no pooled buffer was free.
+   *
+   * @return the dropped frame count
+   */
+  public long getDroppedFrameCount() {
+    return droppedFrameCount.get();
+  }
+
+  private final CameraDevice.StateCallback stateCallback = new CameraDevice.StateCallback() {
+    @Override
+    public void onOpened(CameraDevice camera) {
+      synchronized (Camera2FrameSource.this) {
+        if (imageReader == null) {
+          // Stopped while opening
+          camera.close();
+          return;
+        }
+        cameraDevice = camera;
+        try {
+          camera.createCaptureSession(
+              Arrays.asList(surfaceHolder.getSurface(), imageReader.getSurface()),
+              sessionCallback, cameraHandler);
+        } catch (CameraAccessException e) {
+          Log.e(LOGTAG, "Could not create capture session", e);
+        }
+      }
+    }
+
+    @Override
+    public void onDisconnected(CameraDevice camera) {
+      Log.e(LOGTAG, "Camera disconnected");
+      stop();
+    }
+
+    @Override
+    public void onError(CameraDevice camera, int error) {
+      Log.e(LOGTAG, "Camera error " + error);
+      stop();
+    }
+  };
+
+  private final CameraCaptureSession.StateCallback sessionCallback =
+      new CameraCaptureSession.StateCallback() {
+        @Override
+        public void onConfigured(CameraCaptureSession session) {
+          synchronized (Camera2FrameSource.this) {
+            if (cameraDevice == null) {
+              session.close();
+              return;
+            }
+            captureSession = session;
+            try {
+              final CaptureRequest.Builder request =
+                  cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+              request.addTarget(surfaceHolder.getSurface());
+              request.addTarget(imageReader.getSurface());
+              request.set(CaptureRequest.CONTROL_AF_MODE,
+                  CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+              session.setRepeatingRequest(request.build(), null, cameraHandler);
+            } catch (CameraAccessException e) {
+              Log.e(LOGTAG, "Could not start preview", e);
+            }
+          }
+        }
+
+        @Override
+        public void onConfigureFailed(CameraCaptureSession session) {
+          Log.e(LOGTAG, "Could not configure capture session");
+        }
+      };
+
+  private String selectCamera(CameraManager manager) throws CameraAccessException, IOException {
+    for (String cameraId : manager.getCameraIdList()) {
+      final Integer facing =
+          manager.getCameraCharacteristics(cameraId).get(CameraCharacteristics.LENS_FACING);
+      if (facing != null && facing == lensFacing) {
+        return cameraId;
+      }
+    }
+    throw new IOException("No camera with lens facing " + lensFacing);
+  }
+
+  private Size selectSize(Size[] sizes) {
+    Size selected = sizes[0];
+    int minDiff = Integer.MAX_VALUE;
+    for (Size size : sizes) {
+      final int diff = Math.abs(size.getWidth() - requestedWidth) + Math.abs(
+          size.getHeight() - requestedHeight);
+      if (diff < minDiff) {
+        selected = size;
+        minDiff = diff;
+      }
+    }
+    return selected;
+  }
+
+  private void setRotation(CameraCharacteristics characteristics) {
+    final WindowManager windowManager =
+        (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+    final int degrees = windowManager.getDefaultDisplay().getRotation() * 90;
+    final Integer sensorOrientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+    final int orientation = sensorOrientation == null ? 0 : sensorOrientation;
+    final int angle = lensFacing == CameraCharacteristics.LENS_FACING_FRONT
+        ? (orientation + degrees) % 360 : (orientation - degrees + 360) % 360;
+    rotation = angle / 90;
+  }
+}
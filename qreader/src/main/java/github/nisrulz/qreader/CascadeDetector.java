@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.util.SparseArray;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import java.util.List;
+
+/**
+ * Detects barcode formats in order of priority, running the lower priority formats less often.
+ * <p>
+ * The wrapped detector, looking for the highest priority formats, runs on every frame. The
+ * detectors of the other formats only run on every n-th frame, and on every frame once a number
+ * of frames in a row came up empty. Their codes are reported together with the ones of the
+ * wrapped detector.
+ */
+class CascadeDetector extends DelegatingDetector {
+  private final List<Detector<Barcode>> lowerPriorityDetectors;
+  private final int everyNthFrame;
+  private final int afterMisses;
+  private long frameCount;
+  private int missedFrames;
+
+  /**
+   * Instantiates a new Cascade detector.
+   *
+   * @param delegate
+   *     the detector of the highest priority formats
+   * @param lowerPriorityDetectors
+   *     the detectors of the other formats, from high to low priority, released with this stage
+   * @param everyNthFrame
+   *     the interval in frames to run the lower priority detectors at, 0 to only run them after
+   *     misses
+   * @param afterMisses
+   *     the number of frames in a row without codes after which the lower priority detectors
+   *     run on every frame, 0 to only run them at the interval
+   */
+  CascadeDetector(Detector<Barcode> delegate, List<Detector<Barcode>> lowerPriorityDetectors,
+      int everyNthFrame, int afterMisses) {
+    super(delegate);
+    this.lowerPriorityDetectors = lowerPriorityDetectors;
+    this.everyNthFrame = everyNthFrame;
+    this.afterMisses = afterMisses;
+  }
+
+  @Override
+  public SparseArray<Barcode> detect(Frame frame) {
+    SparseArray<Barcode> barcodes = delegate.detect(frame);
+    if (barcodes == SKIPPED_FRAME) {
+      return barcodes;
+    }
+
+    frameCount++;
+    final boolean scheduled = everyNthFrame > 0 && frameCount % everyNthFrame == 0;
+    final boolean missing = afterMisses > 0 && missedFrames >= afterMisses;
+    if (scheduled || missing) {
+      for (int level = 0; level < lowerPriorityDetectors.size(); level++) {
+        barcodes = merge(barcodes, lowerPriorityDetectors.get(level).detect(frame));
+      }
+    }
+
+    if (barcodes.size() == 0) {
+      missedFrames++;
+    }
+    else {
+      missedFrames = 0;
+    }
+    return barcodes;
+  }
+
+  @Override
+  public void release() {
+    super.release();
+    for (int i = 0; i < lowerPriorityDetectors.size(); i++) {
+      lowerPriorityDetectors.get(i).release();
+    }
+  }
+
+  private static SparseArray<Barcode> merge(SparseArray<Barcode> first,
+      SparseArray<Barcode> second) {
+    if (second.size() == 0) {
+      return first;
+    }
+    if (first.size() == 0) {
+      return second;
+    }
+    final SparseArray<Barcode> merged = new SparseArray<>(first.size() + second.size());
+    for (int i = 0; i < first.size(); i++) {
+      merged.append(i, first.valueAt(i));
+    }
+    for (int i = 0; i < second.size(); i++) {
+      merged.append(first.size() + i, second.valueAt(i));
+    }
+    return merged;
+  }
+}
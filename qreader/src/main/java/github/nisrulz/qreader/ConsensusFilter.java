@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+/**
+ * Counts in how many of the most recent frames each value was decoded, so that a value is only
+ * delivered once enough frames agree on it.
+ * <p>
+ * The values of each frame are kept in a ring of fixed arrays, one row per frame of the window.
+ * Voting compares against the stored values and allocates nothing. Only the first few distinct
+ * values of a frame are remembered.
+ */
+final class ConsensusFilter {
+  private static final int MAX_VALUES_PER_FRAME = 8;
+
+  private final int requiredVotes;
+  private final String[][] frameValues;
+  private final int[] frameSizes;
+  private int current;
+
+  /**
+   * Instantiates a new Consensus filter.
+   *
+   * @param requiredVotes
+   *     the number of frames a value must be decoded in
+   * @param windowFrames
+   *     the number of most recent frames counted
+   */
+  ConsensusFilter(int requiredVotes, int windowFrames) {
+    this.requiredVotes = requiredVotes;
+    this.frameValues = new String[windowFrames][MAX_VALUES_PER_FRAME];
+    this.frameSizes = new int[windowFrames];
+  }
+
+  /**
+   * Starts counting the votes of a new frame, forgetting the oldest one of the window.
+   */
+  void nextFrame() {
+    current = (current + 1) % frameSizes.length;
+    final String[] values = frameValues[current];
+    for (int i = 0; i < frameSizes[current]; i++) {
+      values[i] = null;
+    }
+    frameSizes[current] = 0;
+  }
+
+  /**
+   * Votes for a value decoded in the current frame.
+   *
+   * @param value
+   *     the value
+   * @return true if enough frames of the window agree on the value
+   */
+  boolean vote(String value) {
+    int votes = 0;
+    boolean inCurrentFrame = false;
+    for (int frame = 0; frame < frameSizes.length; frame++) {
+      final String[] values = frameValues[frame];
+      for (int i = 0; i < frameSizes[frame]; i++) {
+        if (value.equals(values[i])) {
+          votes++;
+          inCurrentFrame |= frame == current;
+          break;
+        }
+      }
+    }
+    if (!inCurrentFrame) {
+      votes++;
+      if (frameSizes[current] < MAX_VALUES_PER_FRAME) {
+        frameValues[current][frameSizes[current]++] = value;
+      }
+    }
+    return votes >= requiredVotes;
+  }
+}
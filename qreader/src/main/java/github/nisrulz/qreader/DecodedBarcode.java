@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import com.google.android.gms.vision.barcode.Barcode;
+import github.nisrulz.qreader.decoder.QRCodeResult;
+import java.nio.charset.Charset;
+
+/**
+ * A barcode reported with the bytes it encodes and, for a symbol of a structured append
+ * sequence, its position in the sequence. Detectors that read the symbol data themselves return
+ * these instead of plain barcodes.
+ * <p>
+ * The raw and display value fields stay empty until {@link #rawValueOf(Barcode)} or {@link
+ * #displayValueOf(Barcode)} first asks for them, so codes only read as bytes never create a
+ * string.
+ */
+class DecodedBarcode extends Barcode {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * The encoded bytes.
+   */
+  byte[] rawBytes;
+  /**
+   * The decoder result the text is taken from, or null to decode the raw bytes as UTF-8.
+   */
+  QRCodeResult result;
+  /**
+   * The index of the symbol in its structured append sequence, or -1 if it is not part of one.
+   */
+  int sequenceIndex = -1;
+  /**
+   * The number of symbols in the structured append sequence.
+   */
+  int sequenceCount;
+  /**
+   * The parity of the data of the whole sequence, the same for all its symbols.
+   */
+  int sequenceParity;
+
+  /**
+   * Gets whether the symbol is part of a structured append sequence.
+   *
+   * @return true for a sequence part
+   */
+  boolean isSequencePart() {
+    return sequenceIndex >= 0;
+  }
+
+  /**
+   * Gets the value of a barcode as encoded, decoding it on the first call for a decoded barcode.
+   *
+   * @param barcode
+   *     the barcode
+   * @return the raw value, or null if the barcode has no value
+   */
+  static String rawValueOf(Barcode barcode) {
+    if (barcode instanceof DecodedBarcode) {
+      final DecodedBarcode decoded = (DecodedBarcode) barcode;
+      if (decoded.rawValue == null && decoded.result != null) {
+        decoded.rawValue = decoded.result.getText();
+      }
+      else if (decoded.rawValue == null && decoded.rawBytes != null) {
+        decoded.rawValue = new String(decoded.rawBytes, UTF_8);
+      }
+    }
+    return barcode.rawValue;
+  }
+
+  /**
+   * Gets the value of a barcode as shown to the user, the raw value for a decoded barcode.
+   *
+   * @param barcode
+   *     the barcode
+   * @return the display value, or null if the barcode has no value
+   */
+  static String displayValueOf(Barcode barcode) {
+    if (barcode instanceof DecodedBarcode && barcode.displayValue == null) {
+      barcode.displayValue = rawValueOf(barcode);
+    }
+    return barcode.displayValue;
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.util.SparseArray;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+
+/**
+ * Base type for the stages layered on top of the barcode detector.
+ * <p>
+ * A stage wraps another detector and runs its own logic around {@link #detect(Frame)}. Returning
+ * {@link #SKIPPED_FRAME} drops the frame, in which case nothing is delivered to the processor.
+ */
+abstract class DelegatingDetector extends Detector<Barcode> {
+  /**
+   * Marker result for frames that were dropped before reaching the barcode detector. Compared by
+   * identity, never modified.
+   */
+  static final SparseArray<Barcode> SKIPPED_FRAME = new SparseArray<>(0);
+
+  /**
+   * The wrapped detector.
+   */
+  final Detector<Barcode> delegate;
+
+  private Detector.Processor<Barcode> processor;
+
+  /**
+   * Instantiates a new Delegating detector.
+   *
+   * @param delegate
+   *     the wrapped detector
+   */
+  DelegatingDetector(Detector<Barcode> delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public void setProcessor(Detector.Processor<Barcode> processor) {
+    super.setProcessor(processor);
+    this.processor = processor;
+  }
+
+  @Override
+  public void receiveFrame(Frame frame) {
+    final SparseArray<Barcode> barcodes = detect(frame);
+    final Detector.Processor<Barcode> processor = this.processor;
+    if (barcodes == SKIPPED_FRAME || processor == null) {
+      return;
+    }
+    processor.receiveDetections(
+        new Detector.Detections<>(barcodes, frame.getMetadata(), isOperational()));
+  }
+
+  @Override
+  public boolean isOperational() {
+    return delegate.isOperational();
+  }
+
+  @Override
+  public boolean setFocus(int id) {
+    return delegate.setFocus(id);
+  }
+
+  /**
+   * Releases the processor ahead of this stage, e.g. to wake up a detection waiting on the
+   * listeners before joining the thread it runs on. Releasing the stage releases it again.
+   */
+  void releaseProcessor() {
+    final Detector.Processor<Barcode> processor = this.processor;
+    if (processor != null) {
+      processor.release();
+    }
+  }
+
+  @Override
+  public void release() {
+    super.release();
+    processor = null;
+    delegate.release();
+  }
+}
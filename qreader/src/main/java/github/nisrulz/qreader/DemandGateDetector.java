@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.util.SparseArray;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+
+/**
+ * Skips detection while no subscriber of the results publisher has outstanding demand. Only used
+ * without listeners, which take every result.
+ */
+class DemandGateDetector extends DelegatingDetector {
+  private final ResultPublisher publisher;
+
+  /**
+   * Instantiates a new Demand gate detector.
+   *
+   * @param delegate
+   *     the wrapped detector
+   * @param publisher
+   *     the publisher whose demand opens the gate
+   */
+  DemandGateDetector(Detector<Barcode> delegate, ResultPublisher publisher) {
+    super(delegate);
+    this.publisher = publisher;
+  }
+
+  @Override
+  public SparseArray<Barcode> detect(Frame frame) {
+    if (!publisher.hasDemand()) {
+      return SKIPPED_FRAME;
+    }
+    return delegate.detect(frame);
+  }
+}
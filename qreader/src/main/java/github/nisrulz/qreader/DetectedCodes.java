@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.graphics.Point;
+import com.google.android.gms.vision.barcode.Barcode;
+import java.nio.charset.Charset;
+
+/**
+ * The codes found in one frame.
+ * <p>
+ * A single instance is reused for every frame, so no objects are allocated per code. Its content
+ * is only valid during the listener call; copy out what has to be kept.
+ */
+public final class DetectedCodes {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private Barcode[] barcodes = new Barcode[4];
+  private byte[][] rawBytes = new byte[4][];
+  private int size;
+
+  /**
+   * Instantiates a new Detected codes.
+   */
+  DetectedCodes() {
+  }
+
+  /**
+   * Gets the number of codes.
+   *
+   * @return the size
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the value of a code as shown to the user.
+   *
+   * @param index
+   *     the index of the code
+   * @return the display value
+   */
+  public String getDisplayValue(int index) {
+    return DecodedBarcode.displayValueOf(get(index));
+  }
+
+  /**
+   * Gets the value of a code as encoded.
+   *
+   * @param index
+   *     the index of the code
+   * @return the raw value
+   */
+  public String getRawValue(int index) {
+    return DecodedBarcode.rawValueOf(get(index));
+  }
+
+  /**
+   * Gets the raw bytes of a code. When the detector only reported text, the raw value is encoded
+   * as UTF-8 on the first call for a code and cached until the next frame.
+   *
+   * @param index
+   *     the index of the code
+   * @return the raw bytes, or null if the code has no raw value
+   */
+  public byte[] getRawBytes(int index) {
+    final Barcode barcode = get(index);
+    if (rawBytes[index] == null && barcode instanceof DecodedBarcode) {
+      rawBytes[index] = ((DecodedBarcode) barcode).rawBytes;
+    }
+    if (rawBytes[index] == null && barcode.rawValue != null) {
+      rawBytes[index] = barcode.rawValue.getBytes(UTF_8);
+    }
+    return rawBytes[index];
+  }
+
+  /**
+   * Gets the corner points of a code in frame coordinates, clockwise from the top left of the
+   * code.
+   *
+   * @param index
+   *     the index of the code
+   * @return the corner points
+   */
+  public Point[] getCornerPoints(int index) {
+    return get(index).cornerPoints;
+  }
+
+  /**
+   * Gets the format of a code, one of the {@link Barcode} format constants.
+   *
+   * @param index
+   *     the index of the code
+   * @return the format
+   */
+  public int getFormat(int index) {
+    return get(index).format;
+  }
+
+  /**
+   * Gets the barcode as returned by the detector. For codes read by the built-in decoder, the
+   * value fields are only filled in once the value was asked for through this class.
+   *
+   * @param index
+   *     the index of the code
+   * @return the barcode
+   */
+  public Barcode getBarcode(int index) {
+    return get(index);
+  }
+
+  /**
+   * Removes all codes, keeping the storage.
+   */
+  void clear() {
+    for (int i = 0; i < size; i++) {
+      barcodes[i] = null;
+      rawBytes[i] = null;
+    }
+    size = 0;
+  }
+
+  /**
+   * Adds a code, growing the storage when a frame holds more codes than any before.
+   *
+   * @param barcode
+   *     the barcode
+   */
+  void add(Barcode barcode) {
+    if (size == barcodes.length) {
+      final Barcode[] grownBarcodes = new Barcode[size * 2];
+      System.arraycopy(barcodes, 0, grownBarcodes, 0, size);
+      barcodes = grownBarcodes;
+      final byte[][] grownRawBytes = new byte[size * 2][];
+      System.arraycopy(rawBytes, 0, grownRawBytes, 0, size);
+      rawBytes = grownRawBytes;
+    }
+    barcodes[size++] = barcode;
+  }
+
+  /**
+   * Removes a run of codes, moving the following ones forward.
+   *
+   * @param from
+   *     the index of the first code to remove
+   * @param count
+   *     the number of codes to remove
+   */
+  void remove(int from, int count) {
+    System.arraycopy(barcodes, from + count, barcodes, from, size - from - count);
+    System.arraycopy(rawBytes, from + count, rawBytes, from, size - from - count);
+    for (int i = size - count; i < size; i++) {
+      barcodes[i] = null;
+      rawBytes[i] = null;
+    }
+    size -= count;
+  }
+
+  private Barcode get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+    }
+    return barcodes[index];
+  }
+}
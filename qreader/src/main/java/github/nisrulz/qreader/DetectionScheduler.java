@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.util.SparseArray;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drops frames so that detection stays within a rate and CPU budget.
+ * <p>
+ * The latency of every detection is measured and smoothed. After a detection the next one is
+ * allowed once both the minimum interval for the target rate has passed and the detector has been
+ * idle long enough to keep its busy share under the maximum utilization.
+ */
+class DetectionScheduler extends DelegatingDetector {
+  private static final float LATENCY_SMOOTHING = 0.2f;
+
+  private final long minIntervalNanos;
+  private final float maxUtilization;
+  private long nextDetectionNanos;
+  private float averageLatencyNanos;
+
+  /**
+   * Instantiates a new Detection scheduler.
+   *
+   * @param delegate
+   *     the wrapped detector
+   * @param targetDetectionsPerSecond
+   *     the highest detection rate, or 0 for no rate limit
+   * @param maxUtilization
+   *     the highest share of time spent detecting, in (0, 1]
+   */
+  DetectionScheduler(Detector<Barcode> delegate, float targetDetectionsPerSecond,
+      float maxUtilization) {
+    super(delegate);
+    this.minIntervalNanos = targetDetectionsPerSecond > 0
+        ? (long) (TimeUnit.SECONDS.toNanos(1) / targetDetectionsPerSecond) : 0;
+    this.maxUtilization = maxUtilization;
+    this.nextDetectionNanos = System.nanoTime();
+  }
+
+  @Override
+  public SparseArray<Barcode> detect(Frame frame) {
+    final long start = System.nanoTime();
+    if (start - nextDetectionNanos < 0) {
+      return SKIPPED_FRAME;
+    }
+    final SparseArray<Barcode> barcodes = delegate.detect(frame);
+    if (barcodes == SKIPPED_FRAME) {
+      // Dropped further down the chain, the detector did not run
+      return barcodes;
+    }
+    final long end = System.nanoTime();
+    final long latency = end - start;
+    averageLatencyNanos = averageLatencyNanos == 0 ? latency
+        : averageLatencyNanos + LATENCY_SMOOTHING * (latency - averageLatencyNanos);
+
+    // A detection taking L at utilization u has to be followed by L * (1 - u) / u of idle time
+    final long idleNanos = (long) (averageLatencyNanos * (1f - maxUtilization) / maxUtilization);
+    nextDetectionNanos = Math.max(start + minIntervalNanos, end + idleNanos);
+    return barcodes;
+  }
+}
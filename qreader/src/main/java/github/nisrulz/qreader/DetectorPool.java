@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.BarcodeDetector;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shares barcode detectors between readers, one detector per set of barcode formats.
+ * <p>
+ * Entries are looked up without locking. Only the first reader of a set of formats takes the
+ * lock of its entry, so that a detector is built once even when readers are created on several
+ * threads at the same time. Each entry counts the readers using its detector and frees the
+ * detector when the last one releases it, right away or after the idle timeout.
+ */
+final class DetectorPool {
+  /**
+   * Reader count of an entry while its detector is being freed.
+   */
+  private static final int EVICTING = -1;
+  /**
+   * Size of the blank frame detected on when warming up a detector.
+   */
+  private static final int WARM_UP_FRAME_SIZE = 64;
+  /**
+   * The least time a prewarmed detector is kept for its first reader before it is freed.
+   */
+  private static final long PREWARM_IDLE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private static final ConcurrentHashMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+  private static volatile long idleTimeoutNanos;
+  private static ScheduledExecutorService evictionTimer;
+
+  private DetectorPool() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Gets a handle on the shared detector for a set of formats, building the detector on first
+   * use, and counts the caller as one of its readers until the handle is released.
+   *
+   * @param context
+   *     the context
+   * @param formats
+   *     the barcode formats, a bitmask of the {@link com.google.android.gms.vision.barcode.Barcode}
+   *     format constants
+   * @return the handle on the barcode detector
+   */
+  static SharedDetector acquire(Context context, int formats) {
+    final Entry entry = entryFor(formats);
+    while (true) {
+      final int readers = entry.readers.get();
+      if (readers == EVICTING) {
+        // The detector is being taken out of the entry, which only takes a moment
+        Thread.yield();
+      }
+      else if (entry.readers.compareAndSet(readers, readers + 1)) {
+        break;
+      }
+    }
+
+    BarcodeDetector detector = entry.detector;
+    if (detector == null) {
+      synchronized (entry) {
+        detector = entry.detector;
+        if (detector == null) {
+          detector = newBarcodeDetector(context, formats);
+          entry.detector = detector;
+        }
+      }
+    }
+    return new SharedDetector(detector, formats);
+  }
+
+  /**
+   * Stops counting a reader of the shared detector for a set of formats. Called by {@link
+   * SharedDetector#release()}.
+   *
+   * @param formats
+   *     the barcode formats passed to {@link #acquire(Context, int)}
+   */
+  static void release(int formats) {
+    release(formats, idleTimeoutNanos);
+  }
+
+  /**
+   * Builds the shared detector for a set of formats ahead of the first reader and runs a blank
+   * frame through it, so that native initialization is done before it is needed. The detector
+   * is idle from then on, and freed like a released one if no reader acquires it within a
+   * minute, or the idle timeout if that is longer. Blocks until done.
+   *
+   * @param context
+   *     the context
+   * @param formats
+   *     the barcode formats
+   * @return true if the detector is operational
+   */
+  static boolean prewarm(Context context, int formats) {
+    final SharedDetector detector = acquire(context, formats);
+    try {
+      if (!detector.isOperational()) {
+        return false;
+      }
+      final int size = WARM_UP_FRAME_SIZE;
+      final ByteBuffer data = ByteBuffer.allocate(size * size * 3 / 2);
+      detector.detect(new Frame.Builder().setImageData(data, size, size, ImageFormat.NV21)
+          .build());
+      return true;
+    } finally {
+      // Not counted as a reader, the detector waits a while for the readers to come
+      release(formats, Math.max(idleTimeoutNanos, PREWARM_IDLE_TIMEOUT_NANOS));
+    }
+  }
+
+  private static void release(int formats, long timeoutNanos) {
+    final Entry entry = entries.get(formats);
+    if (entry == null || entry.readers.get() <= 0) {
+      throw new IllegalStateException("Detector for formats " + formats + " was not acquired");
+    }
+    if (entry.readers.decrementAndGet() != 0) {
+      return;
+    }
+
+    if (timeoutNanos == 0) {
+      evict(entry, 0);
+    }
+    else {
+      entry.idleSinceNanos = System.nanoTime();
+      scheduleEviction(entry, timeoutNanos);
+    }
+  }
+
+  /**
+   * Sets how long detectors are kept after their last reader released them, so readers coming
+   * back soon do not have to build them again. Applies to detectors released after the call.
+   *
+   * @param timeout
+   *     the idle timeout, or 0 to free detectors right away
+   * @param unit
+   *     the unit of the timeout
+   */
+  static void setIdleTimeout(long timeout, TimeUnit unit) {
+    idleTimeoutNanos = unit.toNanos(timeout);
+  }
+
+  /**
+   * Gets the number of readers using the shared detector for a set of formats.
+   *
+   * @param formats
+   *     the barcode formats
+   * @return the reader count
+   */
+  static int getReaderCount(int formats) {
+    final Entry entry = entries.get(formats);
+    return entry == null ? 0 : Math.max(0, entry.readers.get());
+  }
+
+  /**
+   * Builds a barcode detector that is not shared, e.g. for detecting on several threads at once.
+   *
+   * @param context
+   *     the context
+   * @param formats
+   *     the barcode formats
+   * @return the barcode detector
+   */
+  static BarcodeDetector newBarcodeDetector(Context context, int formats) {
+    return new BarcodeDetector.Builder(context.getApplicationContext()).setBarcodeFormats(formats)
+        .build();
+  }
+
+  private static Entry entryFor(int formats) {
+    Entry entry = entries.get(formats);
+    if (entry == null) {
+      final Entry created = new Entry();
+      entry = entries.putIfAbsent(formats, created);
+      if (entry == null) {
+        entry = created;
+      }
+    }
+    return entry;
+  }
+
+  private static synchronized void scheduleEviction(final Entry entry, final long timeoutNanos) {
+    if (evictionTimer == null) {
+      evictionTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          final Thread thread = new Thread(runnable, "QREader-DetectorPool");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    evictionTimer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        evict(entry, timeoutNanos);
+      }
+    }, timeoutNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Frees the detector of an entry if it has no readers and was idle for the given time.
+   */
+  private static void evict(Entry entry, long minIdleNanos) {
+    final BarcodeDetector detector;
+    synchronized (entry) {
+      // Released again after this eviction was scheduled, a later one takes care of it
+      if (minIdleNanos > 0 && System.nanoTime() - entry.idleSinceNanos < minIdleNanos) {
+        return;
+      }
+      if (!entry.readers.compareAndSet(0, EVICTING)) {
+        return;
+      }
+      detector = entry.detector;
+      entry.detector = null;
+      entry.readers.set(0);
+    }
+    if (detector != null) {
+      detector.release();
+    }
+  }
+
+  private static final class Entry {
+    final AtomicInteger readers = new AtomicInteger();
+    volatile BarcodeDetector detector;
+    volatile long idleSinceNanos;
+  }
+}
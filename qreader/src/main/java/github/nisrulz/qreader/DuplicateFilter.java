@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+/**
+ * Remembers recently delivered values so that each distinct value is delivered once per time
+ * window.
+ * <p>
+ * Entries live in fixed arrays and are looked up by hash first, so checking a value allocates
+ * nothing. When full, the entry seen least recently is replaced.
+ */
+final class DuplicateFilter {
+  private final long windowMillis;
+  private final int[] hashes;
+  private final String[] values;
+  private final long[] deliveredAt;
+  private final long[] seenAt;
+  private int size;
+
+  /**
+   * Instantiates a new Duplicate filter.
+   *
+   * @param capacity
+   *     the number of distinct values remembered
+   * @param windowMillis
+   *     the time window in milliseconds
+   */
+  DuplicateFilter(int capacity, long windowMillis) {
+    this.windowMillis = windowMillis;
+    this.hashes = new int[capacity];
+    this.values = new String[capacity];
+    this.deliveredAt = new long[capacity];
+    this.seenAt = new long[capacity];
+  }
+
+  /**
+   * Checks whether a value was already delivered within the window. If not, the value counts as
+   * delivered now.
+   *
+   * @param value
+   *     the value
+   * @param nowMillis
+   *     the current time in milliseconds
+   * @return true if the value should not be delivered again
+   */
+  synchronized boolean isDuplicate(String value, long nowMillis) {
+    final int hash = value.hashCode();
+    for (int i = 0; i < size; i++) {
+      if (hashes[i] == hash && value.equals(values[i])) {
+        seenAt[i] = nowMillis;
+        if (nowMillis - deliveredAt[i] < windowMillis) {
+          return true;
+        }
+        deliveredAt[i] = nowMillis;
+        return false;
+      }
+    }
+
+    int slot = size;
+    if (size < hashes.length) {
+      size++;
+    }
+    else {
+      slot = 0;
+      for (int i = 1; i < size; i++) {
+        if (seenAt[i] < seenAt[slot]) {
+          slot = i;
+        }
+      }
+    }
+    hashes[slot] = hash;
+    values[slot] = value;
+    deliveredAt[slot] = nowMillis;
+    seenAt[slot] = nowMillis;
+    return false;
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.graphics.Point;
+import android.util.SparseArray;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import github.nisrulz.qreader.decoder.QRCodeDecoder;
+import github.nisrulz.qreader.decoder.QRCodeResult;
+import java.nio.ByteBuffer;
+
+/**
+ * Detects QR codes with the pure Java {@link QRCodeDecoder}, for devices where the Play Services
+ * barcode detector is not operational, e.g. right after install or without Google services.
+ * <p>
+ * Codes are reported as {@link DecodedBarcode}s with their bytes and structured append header,
+ * at upright coordinates like the Play Services detector reports them. Frames without a code
+ * return the same empty array, so scanning does not allocate until a code is found.
+ */
+class FallbackDetector extends Detector<Barcode> {
+  private final Detector<Barcode> unavailableDetector;
+  private final QRCodeDecoder decoder = new QRCodeDecoder();
+  private final SparseArray<Barcode> noBarcodes = new SparseArray<>(0);
+  private byte[] frameCopy;
+
+  /**
+   * Instantiates a new Fallback detector.
+   *
+   * @param unavailableDetector
+   *     the detector that is not operational, released with this one
+   */
+  FallbackDetector(Detector<Barcode> unavailableDetector) {
+    this.unavailableDetector = unavailableDetector;
+  }
+
+  @Override
+  public synchronized SparseArray<Barcode> detect(Frame frame) {
+    final Frame.Metadata metadata = frame.getMetadata();
+    final int width = metadata.getWidth();
+    final int height = metadata.getHeight();
+    final ByteBuffer data = frame.getGrayscaleImageData();
+    final byte[] src;
+    final int offset;
+    if (data.hasArray()) {
+      src = data.array();
+      offset = data.arrayOffset();
+    }
+    else {
+      if (frameCopy == null || frameCopy.length < width * height) {
+        frameCopy = new byte[width * height];
+      }
+      LuminanceFrames.crop(data, width, 0, 0, width, height, frameCopy);
+      src = frameCopy;
+      offset = 0;
+    }
+
+    final QRCodeResult result = decoder.decode(src, offset, width, height, width);
+    if (result == null) {
+      return noBarcodes;
+    }
+    final SparseArray<Barcode> barcodes = new SparseArray<>(1);
+    barcodes.append(0, toBarcode(result, metadata.getRotation(), width, height));
+    return barcodes;
+  }
+
+  @Override
+  public boolean isOperational() {
+    return true;
+  }
+
+  @Override
+  public boolean setFocus(int id) {
+    return false;
+  }
+
+  @Override
+  public void release() {
+    super.release();
+    unavailableDetector.release();
+  }
+
+  private static DecodedBarcode toBarcode(QRCodeResult result, int rotation, int width,
+      int height) {
+    final DecodedBarcode barcode = new DecodedBarcode();
+    barcode.rawBytes = result.getBytes();
+    // The text is only decoded if asked for
+    barcode.result = result;
+    barcode.format = Barcode.QR_CODE;
+    barcode.sequenceIndex = result.getSequenceIndex();
+    barcode.sequenceCount = result.getSequenceCount();
+    barcode.sequenceParity = result.getSequenceParity();
+
+    final float[] corners = result.getCorners();
+    barcode.cornerPoints = new Point[corners.length / 2];
+    for (int i = 0; i < barcode.cornerPoints.length; i++) {
+      barcode.cornerPoints[i] = new Point();
+      LuminanceFrames.toUpright(barcode.cornerPoints[i], Math.round(corners[2 * i]),
+          Math.round(corners[2 * i + 1]), rotation, width, height);
+    }
+    return barcode;
+  }
+}
@@ -16,29 +16,18 @@
 
 package github.nisrulz.qreader;
 
-import android.content.Context;
-import com.google.android.gms.vision.barcode.Barcode;
-import com.google.android.gms.vision.barcode.BarcodeDetector;
-
 /**
- * The type Barcode detector holder.
+ * The interface Frame consumer.
  */
-class BarcodeDetectorHolder {
-  private static BarcodeDetector detector;
+public interface FrameConsumer {
 
   /**
-   * Gets barcode detector.
+   * On frame. The consumer owns the frame and has to call {@link LuminanceFrame#release()} once
+   * done with it.
    *
-   * @param context
-   *     the context
-   * @return the barcode detector
+   * @param frame
+   *     the frame
    */
-  static BarcodeDetector getBarcodeDetector(Context context) {
-    if (detector == null) {
-      detector = new BarcodeDetector.Builder(context.getApplicationContext()).setBarcodeFormats(
-          Barcode.QR_CODE).build();
-    }
-    return detector;
-  }
+  // Called on the thread of the frame source
+  void onFrame(LuminanceFrame frame);
 }
-
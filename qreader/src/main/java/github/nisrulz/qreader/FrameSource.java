@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import java.io.IOException;
+
+/**
+ * The interface Frame source. A frame source produces luminance frames from a camera, a
+ * recording or a generator and hands them to a {@link FrameConsumer}, taking the buffers from a
+ * {@link LuminanceBufferPool}.
+ */
+public interface FrameSource {
+
+  /**
+   * Starts producing frames. A source can be started again after it has been stopped or, if it
+   * has an end, after it ran out of frames.
+   *
+   * @param consumer
+   *     the consumer receiving the frames
+   * @throws IOException
+   *     if the source cannot be opened
+   */
+  void start(FrameConsumer consumer) throws IOException;
+
+  /**
+   * Stops producing frames and frees the underlying hardware or files. May also be called from
+   * {@link FrameConsumer#onFrame(LuminanceFrame)}.
+   */
+  void stop();
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.barcode.Barcode;
+
+/**
+ * Feeds the frames of a {@link FrameSource} to the detector and recycles them afterwards.
+ * <p>
+ * The pixels are never copied, but every frame is handed to the detector in a small {@link
+ * com.google.android.gms.vision.Frame} built for it, the one allocation left per frame.
+ */
+class FrameSourceFeeder implements FrameConsumer {
+  private final Detector<Barcode> detector;
+
+  /**
+   * Instantiates a new Frame source feeder.
+   *
+   * @param detector
+   *     the detector
+   */
+  FrameSourceFeeder(Detector<Barcode> detector) {
+    this.detector = detector;
+  }
+
+  @Override
+  public void onFrame(LuminanceFrame frame) {
+    try {
+      detector.receiveFrame(LuminanceFrames.wrap(frame));
+    } finally {
+      frame.release();
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.util.SparseArray;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs detection on a dedicated decode thread instead of the thread delivering the frames.
+ * <p>
+ * Arriving frames are copied into a pooled buffer and put into a single-slot mailbox, replacing
+ * any frame the decode thread has not picked up yet. The frame thread never waits for detection
+ * and results are at most one detection behind the camera.
+ */
+class LatestFrameDetector extends DelegatingDetector {
+  // One frame being decoded, one waiting in the mailbox and one being copied
+  private static final int POOL_SIZE = 3;
+
+  private final AtomicReference<LuminanceFrame> mailbox = new AtomicReference<>();
+  private final AtomicLong receivedFrameCount = new AtomicLong();
+  private final AtomicLong droppedFrameCount = new AtomicLong();
+  private final Thread decodeThread;
+  private volatile boolean running = true;
+  private LuminanceBufferPool pool;
+
+  /**
+   * Instantiates a new Latest frame detector and starts its decode thread.
+   *
+   * @param delegate
+   *     the wrapped detector
+   */
+  LatestFrameDetector(Detector<Barcode> delegate) {
+    super(delegate);
+    decodeThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        decodeLoop();
+      }
+    }, "QREader-Decode");
+    decodeThread.setDaemon(true);
+    decodeThread.start();
+  }
+
+  @Override
+  public void receiveFrame(Frame frame) {
+    if (!running) {
+      return;
+    }
+    receivedFrameCount.incrementAndGet();
+    final Frame.Metadata metadata = frame.getMetadata();
+    final int width = metadata.getWidth();
+    final int height = metadata.getHeight();
+    if (pool == null || pool.getBufferSize() != width * height) {
+      // The frame size is fixed while the camera runs, frames in use go to their old pool
+      pool = new LuminanceBufferPool(POOL_SIZE, width * height);
+    }
+
+    final LuminanceFrame copy = pool.acquire();
+    if (copy == null) {
+      droppedFrameCount.incrementAndGet();
+      return;
+    }
+    LuminanceFrames.crop(frame.getGrayscaleImageData(), width, 0, 0, width, height,
+        copy.getData());
+    copy.setMetadata(metadata.getId(), width, height, metadata.getRotation(),
+        metadata.getTimestampMillis());
+
+    final LuminanceFrame replaced = mailbox.getAndSet(copy);
+    if (replaced != null) {
+      droppedFrameCount.incrementAndGet();
+      replaced.release();
+    }
+    LockSupport.unpark(decodeThread);
+  }
+
+  @Override
+  public SparseArray<Barcode> detect(Frame frame) {
+    return delegate.detect(frame);
+  }
+
+  /**
+   * Gets the number of frames handed to this stage.
+   *
+   * @return the received frame count
+   */
+  long getReceivedFrameCount() {
+    return receivedFrameCount.get();
+  }
+
+  /**
+   * Gets the number of frames replaced in the mailbox before the decode thread got to them.
+   *
+   * @return the dropped frame count
+   */
+  long getDroppedFrameCount() {
+    return droppedFrameCount.get();
+  }
+
+  @Override
+  public void release() {
+    running = false;
+    // A detection blocked on delivering its results would never let the decode thread finish
+    releaseProcessor();
+    LockSupport.unpark(decodeThread);
+    try {
+      // Let a running detection finish before the detector goes away
+      decodeThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    final LuminanceFrame pending = mailbox.getAndSet(null);
+    if (pending != null) {
+      pending.release();
+    }
+    super.release();
+  }
+
+  private void decodeLoop() {
+    while (running) {
+      final LuminanceFrame frame = mailbox.getAndSet(null);
+      if (frame == null) {
+        LockSupport.park(this);
+        continue;
+      }
+      try {
+        super.receiveFrame(LuminanceFrames.wrap(frame));
+      } finally {
+        frame.release();
+      }
+    }
+  }
+}
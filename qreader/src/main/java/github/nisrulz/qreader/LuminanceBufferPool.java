@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A fixed set of {@link LuminanceFrame}s, all allocated up front and recycled afterwards so that
+ * steady-state scanning does not allocate frame buffers. Only the small detector frame wrapping
+ * each buffer is built per frame, see {@link FrameSourceFeeder}.
+ */
+public final class LuminanceBufferPool {
+  private final ArrayBlockingQueue<LuminanceFrame> freeFrames;
+  private final int capacity;
+  private final int bufferSize;
+
+  /**
+   * Instantiates a new Luminance buffer pool.
+   *
+   * @param capacity
+   *     the number of frames
+   * @param bufferSize
+   *     the size of each frame buffer, at least {@code width * height} of the frames to hold
+   */
+  public LuminanceBufferPool(int capacity, int bufferSize) {
+    if (capacity <= 0 || bufferSize <= 0) {
+      throw new IllegalArgumentException("Capacity and buffer size must be positive");
+    }
+    this.capacity = capacity;
+    this.bufferSize = bufferSize;
+    this.freeFrames = new ArrayBlockingQueue<>(capacity);
+    for (int i = 0; i < capacity; i++) {
+      freeFrames.add(new LuminanceFrame(this, bufferSize));
+    }
+  }
+
+  /**
+   * Takes a free frame from the pool.
+   *
+   * @return the frame, or null if all frames are in use
+   */
+  public LuminanceFrame acquire() {
+    final LuminanceFrame frame = freeFrames.poll();
+    if (frame != null) {
+      frame.inUse = true;
+    }
+    return frame;
+  }
+
+  /**
+   * Gets the number of frames currently free.
+   *
+   * @return the available count
+   */
+  public int getAvailableCount() {
+    return freeFrames.size();
+  }
+
+  /**
+   * Gets capacity.
+   *
+   * @return the number of frames
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Gets buffer size.
+   *
+   * @return the size of each frame buffer
+   */
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Puts a frame back into the pool.
+   *
+   * @param frame
+   *     the frame
+   */
+  void recycle(LuminanceFrame frame) {
+    if (!frame.inUse) {
+      throw new IllegalStateException("Frame " + frame.getId() + " released twice");
+    }
+    frame.inUse = false;
+    freeFrames.offer(frame);
+  }
+}
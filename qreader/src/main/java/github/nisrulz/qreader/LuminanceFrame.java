@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A luminance (Y) plane taken from a {@link LuminanceBufferPool}.
+ * <p>
+ * Frames are handed from a {@link FrameSource} to its {@link FrameConsumer}, which has to
+ * {@link #release()} them once done so that the buffer can be reused for a later frame.
+ */
+public final class LuminanceFrame {
+  private final LuminanceBufferPool pool;
+  private final byte[] data;
+  private final ByteBuffer buffer;
+  private int id;
+  private int width;
+  private int height;
+  private int rotation;
+  private long timestampMillis;
+  volatile boolean inUse;
+
+  /**
+   * Instantiates a new Luminance frame.
+   *
+   * @param pool
+   *     the pool owning the frame
+   * @param capacity
+   *     the size of the buffer
+   */
+  LuminanceFrame(LuminanceBufferPool pool, int capacity) {
+    this.pool = pool;
+    this.data = new byte[capacity];
+    this.buffer = ByteBuffer.wrap(data);
+  }
+
+  /**
+   * Gets the buffer holding the luminance plane, one byte per pixel row after row. Its length is
+   * the buffer size of the pool and may exceed {@code width * height}.
+   *
+   * @return the data
+   */
+  public byte[] getData() {
+    return data;
+  }
+
+  /**
+   * Sets what the data currently holds.
+   *
+   * @param id
+   *     the frame id
+   * @param width
+   *     the width
+   * @param height
+   *     the height
+   * @param rotation
+   *     the clockwise quarter turns needed to make the frame upright, as in {@code
+   *     com.google.android.gms.vision.Frame#ROTATION_90}
+   * @param timestampMillis
+   *     the timestamp in milliseconds of {@link android.os.SystemClock#elapsedRealtime()}, the
+   *     clock of the camera sources and of the time-based stages
+   */
+  public void setMetadata(int id, int width, int height, int rotation, long timestampMillis) {
+    if (width <= 0 || height <= 0 || width * height > data.length) {
+      throw new IllegalArgumentException(
+          "Frame of " + width + "x" + height + " does not fit a buffer of " + data.length);
+    }
+    this.id = id;
+    this.width = width;
+    this.height = height;
+    this.rotation = rotation;
+    this.timestampMillis = timestampMillis;
+  }
+
+  /**
+   * Gets id.
+   *
+   * @return the id
+   */
+  public int getId() {
+    return id;
+  }
+
+  /**
+   * Gets width.
+   *
+   * @return the width
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Gets height.
+   *
+   * @return the height
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Gets rotation.
+   *
+   * @return the clockwise quarter turns needed to make the frame upright
+   */
+  public int getRotation() {
+    return rotation;
+  }
+
+  /**
+   * Gets timestamp millis.
+   *
+   * @return the timestamp in milliseconds
+   */
+  public long getTimestampMillis() {
+    return timestampMillis;
+  }
+
+  /**
+   * Returns the frame to its pool. It must not be used afterwards.
+   */
+  public void release() {
+    pool.recycle(this);
+  }
+
+  /**
+   * Gets the data wrapped in a byte buffer, created once per frame buffer.
+   *
+   * @return the buffer
+   */
+  ByteBuffer getBuffer() {
+    return buffer;
+  }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.graphics.ImageFormat;
+import android.graphics.Point;
+import android.graphics.Rect;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import java.nio.ByteBuffer;
+
+/**
+ * Helpers for working on the luminance (Y) plane of camera frames.
+ * <p>
+ * Pixel positions come in two flavours. Sensor coordinates address the buffer as delivered by the
+ * camera. Upright coordinates are what the detector reports, i.e. sensor coordinates turned
+ * clockwise by the frame rotation.
+ */
+final class LuminanceFrames {
+
+  private LuminanceFrames() {
+    throw new AssertionError("No instances.");
+  }
+
+  /**
+   * Copies a rectangle of the luminance plane into {@code dst}, row after row.
+   *
+   * @param src
+   *     the frame data, starting with the luminance plane
+   * @param srcWidth
+   *     the width of the frame
+   * @param left
+   *     the left edge of the rectangle, in sensor coordinates
+   * @param top
+   *     the top edge of the rectangle, in sensor coordinates
+   * @param width
+   *     the width of the rectangle
+   * @param height
+   *     the height of the rectangle
+   * @param dst
+   *     the destination, at least {@code width * height} long
+   */
+  static void crop(ByteBuffer src, int srcWidth, int left, int top, int width, int height,
+      byte[] dst) {
+    if (src.hasArray()) {
+      crop(src.array(), src.arrayOffset(), srcWidth, left, top, width, height, dst);
+    }
+    else {
+      final int position = src.position();
+      int dstIndex = 0;
+      for (int y = 0; y < height; y++) {
+        src.position((top + y) * srcWidth + left);
+        src.get(dst, dstIndex, width);
+        dstIndex += width;
+      }
+      src.position(position);
+    }
+  }
+
+  /**
+   * Copies a rectangle of a luminance plane held in an array into {@code dst}, row after row.
+   *
+   * @param src
+   *     the frame data, starting with the luminance plane at {@code offset}
+   * @param offset
+   *     the index of the first pixel of the frame
+   * @param srcWidth
+   *     the width of the frame
+   * @param left
+   *     the left edge of the rectangle, in sensor coordinates
+   * @param top
+   *     the top edge of the rectangle, in sensor coordinates
+   * @param width
+   *     the width of the rectangle
+   * @param height
+   *     the height of the rectangle
+   * @param dst
+   *     the destination, at least {@code width * height} long
+   */
+  static void crop(byte[] src, int offset, int srcWidth, int left, int top, int width, int height,
+      byte[] dst) {
+    int srcIndex = offset + top * srcWidth + left;
+    int dstIndex = 0;
+    for (int y = 0; y < height; y++) {
+      System.arraycopy(src, srcIndex, dst, dstIndex, width);
+      srcIndex += srcWidth;
+      dstIndex += width;
+    }
+  }
+
+  /**
+   * Halves the resolution of a luminance plane by averaging 2x2 blocks.
+   *
+   * @param src
+   *     the source plane
+   * @param offset
+   *     the index of the first source pixel
+   * @param srcWidth
+   *     the width of the source
+   * @param srcHeight
+   *     the height of the source
+   * @param dst
+   *     the destination, at least {@code (srcWidth / 2) * (srcHeight / 2)} long
+   */
+  static void downscale(byte[] src, int offset, int srcWidth, int srcHeight, byte[] dst) {
+    final int dstWidth = srcWidth / 2;
+    final int dstHeight = srcHeight / 2;
+    int dstIndex = 0;
+    for (int y = 0; y < dstHeight; y++) {
+      int top = offset + 2 * y * srcWidth;
+      int bottom = top + srcWidth;
+      for (int x = 0; x < dstWidth; x++) {
+        final int sum = (src[top] & 0xff) + (src[top + 1] & 0xff) + (src[bottom] & 0xff) + (
+            src[bottom + 1] & 0xff);
+        dst[dstIndex++] = (byte) (sum >> 2);
+        top += 2;
+        bottom += 2;
+      }
+    }
+  }
+
+  /**
+   * Wraps luminance data in a frame carrying the id, timestamp and rotation of another frame.
+   *
+   * @param data
+   *     the luminance data
+   * @param width
+   *     the width of the data
+   * @param height
+   *     the height of the data
+   * @param source
+   *     the metadata of the frame the data was taken from
+   * @return the frame
+   */
+  static Frame wrap(ByteBuffer data, int width, int height, Frame.Metadata source) {
+    return new Frame.Builder().setImageData(data, width, height, ImageFormat.NV21)
+        .setId(source.getId())
+        .setTimestampMillis(source.getTimestampMillis())
+        .setRotation(source.getRotation())
+        .build();
+  }
+
+  /**
+   * Wraps a pooled luminance frame in a frame for the detector. The luminance buffer is shared,
+   * but the frame itself is new on every call: a Play Services frame cannot be changed once
+   * built, and its id and timestamp differ from frame to frame.
+   *
+   * @param frame
+   *     the luminance frame
+   * @return the frame
+   */
+  static Frame wrap(LuminanceFrame frame) {
+    return new Frame.Builder().setImageData(frame.getBuffer(), frame.getWidth(),
+        frame.getHeight(), ImageFormat.NV21)
+        .setId(frame.getId())
+        .setTimestampMillis(frame.getTimestampMillis())
+        .setRotation(frame.getRotation())
+        .build();
+  }
+
+  /**
+   * Converts a rectangle given as fractions of the upright frame into sensor coordinates.
+   *
+   * @param left
+   *     the left edge, as a fraction of the upright width
+   * @param top
+   *     the top edge, as a fraction of the upright height
+   * @param right
+   *     the right edge, as a fraction of the upright width
+   * @param bottom
+   *     the bottom edge, as a fraction of the upright height
+   * @param rotation
+   *     the frame rotation
+   * @param width
+   *     the sensor width of the frame
+   * @param height
+   *     the sensor height of the frame
+   * @param out
+   *     receives the rectangle, clamped to the frame
+   */
+  static void toSensorRect(float left, float top, float right, float bottom, int rotation,
+      int width, int height, Rect out) {
+    float sensorLeft, sensorTop, sensorRight, sensorBottom;
+    switch (rotation) {
+      case Frame.ROTATION_90:
+        sensorLeft = top;
+        sensorRight = bottom;
+        sensorTop = 1f - right;
+        sensorBottom = 1f - left;
+        break;
+      case Frame.ROTATION_180:
+        sensorLeft = 1f - right;
+        sensorRight = 1f - left;
+        sensorTop = 1f - bottom;
+        sensorBottom = 1f - top;
+        break;
+      case Frame.ROTATION_270:
+        sensorLeft = 1f - bottom;
+        sensorRight = 1f - top;
+        sensorTop = left;
+        sensorBottom = right;
+        break;
+      default:
+        sensorLeft = left;
+        sensorRight = right;
+        sensorTop = top;
+        sensorBottom = bottom;
+        break;
+    }
+    out.set(clamp(Math.round(sensorLeft * width), width),
+        clamp(Math.round(sensorTop * height), height),
+        clamp(Math.round(sensorRight * width), width),
+        clamp(Math.round(sensorBottom * height), height));
+  }
+
+  /**
+   * Maps the corner points of a barcode detected in a sub-image back to the upright coordinates of
+   * the full frame. The points are updated in place.
+   *
+   * @param barcode
+   *     the barcode detected in the sub-image
+   * @param rotation
+   *     the rotation shared by the sub-image and the frame
+   * @param left
+   *     the left edge of the sub-image, in sensor coordinates of the frame
+   * @param top
+   *     the top edge of the sub-image, in sensor coordinates of the frame
+   * @param scale
+   *     the number of frame pixels per sub-image pixel
+   * @param subWidth
+   *     the sensor width of the sub-image
+   * @param subHeight
+   *     the sensor height of the sub-image
+   * @param width
+   *     the sensor width of the frame
+   * @param height
+   *     the sensor height of the frame
+   */
+  static void mapToFrame(Barcode barcode, int rotation, int left, int top, int scale,
+      int subWidth, int subHeight, int width, int height) {
+    final Point[] points = barcode.cornerPoints;
+    if (points == null) {
+      return;
+    }
+    for (Point point : points) {
+      // Back to sensor coordinates of the sub-image ...
+      int x, y;
+      switch (rotation) {
+        case Frame.ROTATION_90:
+          x = point.y;
+          y = subHeight - point.x;
+          break;
+        case Frame.ROTATION_180:
+          x = subWidth - point.x;
+          y = subHeight - point.y;
+          break;
+        case Frame.ROTATION_270:
+          x = subWidth - point.y;
+          y = point.x;
+          break;
+        default:
+          x = point.x;
+          y = point.y;
+          break;
+      }
+      // ... then sensor coordinates of the frame ...
+      x = left + x * scale;
+      y = top + y * scale;
+      // ... and finally upright coordinates of the frame
+      toUpright(point, x, y, rotation, width, height);
+    }
+  }
+
+  /**
+   * Sets a point to the upright coordinates of a frame, as detectors report them, from sensor
+   * coordinates.
+   *
+   * @param point
+   *     the point to set
+   * @param x
+   *     the x coordinate, in sensor coordinates
+   * @param y
+   *     the y coordinate, in sensor coordinates
+   * @param rotation
+   *     the rotation of the frame
+   * @param width
+   *     the sensor width of the frame
+   * @param height
+   *     the sensor height of the frame
+   */
+  static void toUpright(Point point, int x, int y, int rotation, int width, int height) {
+    switch (rotation) {
+      case Frame.ROTATION_90:
+        point.set(height - y, x);
+        break;
+      case Frame.ROTATION_180:
+        point.set(width - x, height - y);
+        break;
+      case Frame.ROTATION_270:
+        point.set(y, width - x);
+        break;
+      default:
+        point.set(x, y);
+        break;
+    }
+  }
+
+  /**
+   * Computes the bounds of a barcode's corner points in sensor coordinates.
+   *
+   * @param barcode
+   *     the barcode, with corner points in upright coordinates of the frame
+   * @param rotation
+   *     the frame rotation
+   * @param width
+   *     the sensor width of the frame
+   * @param height
+   *     the sensor height of the frame
+   * @param out
+   *     receives the bounds, clamped to the frame
+   * @return false if the barcode has no corner points
+   */
+  static boolean toSensorBounds(Barcode barcode, int rotation, int width, int height, Rect out) {
+    final Point[] points = barcode.cornerPoints;
+    if (points == null || points.length == 0) {
+      return false;
+    }
+    int left = Integer.MAX_VALUE, top = Integer.MAX_VALUE;
+    int right = Integer.MIN_VALUE, bottom = Integer.MIN_VALUE;
+    for (Point point : points) {
+      int x, y;
+      switch (rotation) {
+        case Frame.ROTATION_90:
+          x = point.y;
+          y = height - point.x;
+          break;
+        case Frame.ROTATION_180:
+          x = width - point.x;
+          y = height - point.y;
+          break;
+        case Frame.ROTATION_270:
+          x = width - point.y;
+          y = point.x;
+          break;
+        default:
+          x = point.x;
+          y = point.y;
+          break;
+      }
+      left = Math.min(left, x);
+      top = Math.min(top, y);
+      right = Math.max(right, x);
+      bottom = Math.max(bottom, y);
+    }
+    out.set(clamp(left, width), clamp(top, height), clamp(right, width), clamp(bottom, height));
+    return true;
+  }
+
+  private static int clamp(int value, int max) {
+    return value < 0 ? 0 : value > max ? max : value;
+  }
+}
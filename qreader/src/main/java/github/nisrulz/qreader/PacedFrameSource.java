@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Base type for frame sources that fill frames on their own thread at a fixed rate. Ticks where
+ * the pool has no free frame are counted as dropped.
+ */
+abstract class PacedFrameSource implements FrameSource {
+  private final String threadName;
+  private final LuminanceBufferPool pool;
+  private final long frameIntervalNanos;
+  private final AtomicLong droppedFrameCount = new AtomicLong();
+  private volatile boolean running;
+  private Thread thread;
+
+  /**
+   * Instantiates a new Paced frame source.
+   *
+   * @param threadName
+   *     the name of the thread producing frames
+   * @param pool
+   *     the pool to take frames from
+   * @param framesPerSecond
+   *     the frame rate, or 0 to produce frames as fast as they are consumed
+   */
+  PacedFrameSource(String threadName, LuminanceBufferPool pool, float framesPerSecond) {
+    if (framesPerSecond < 0) {
+      throw new IllegalArgumentException("framesPerSecond must not be negative");
+    }
+    this.threadName = threadName;
+    this.pool = pool;
+    this.frameIntervalNanos =
+        framesPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / framesPerSecond) : 0;
+  }
+
+  @Override
+  public synchronized void start(final FrameConsumer consumer) throws IOException {
+    if (thread != null && running) {
+      throw new IllegalStateException("Frame source already started!");
+    }
+    if (thread != null) {
+      // Ran out of frames, the thread has closed the source and is about to end
+      join(thread);
+      thread = null;
+    }
+    open();
+    running = true;
+    thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        produce(consumer);
+      }
+    }, threadName);
+    thread.start();
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (thread == null) {
+      return;
+    }
+    running = false;
+    // Stopped from a consumer, the thread ends once the consumer returns
+    if (thread != Thread.currentThread()) {
+      thread.interrupt();
+      join(thread);
+    }
+    thread = null;
+    close();
+  }
+
+  /**
+   * Gets whether frames are being produced.
+   *
+   * @return false before the start, after a stop and once the source ran out of frames
+   */
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Gets the number of frames dropped because no pooled buffer was free.
+   *
+   * @return the dropped frame count
+   */
+  public long getDroppedFrameCount() {
+    return droppedFrameCount.get();
+  }
+
+  /**
+   * Gets pool.
+   *
+   * @return the pool frames are taken from
+   */
+  public LuminanceBufferPool getPool() {
+    return pool;
+  }
+
+  /**
+   * Opens the underlying resources before the first frame.
+   *
+   * @throws IOException
+   *     if the source cannot be opened
+   */
+  void open() throws IOException {
+  }
+
+  /**
+   * Fills the next frame.
+   *
+   * @param frame
+   *     the frame to fill, including its metadata
+   * @param index
+   *     the index of the frame since start
+   * @return false once the source has no more frames
+   * @throws IOException
+   *     if reading the frame failed
+   */
+  abstract boolean fill(LuminanceFrame frame, int index) throws IOException;
+
+  /**
+   * Closes the underlying resources after the last frame.
+   */
+  void close() {
+  }
+
+  private static void join(Thread thread) {
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void produce(FrameConsumer consumer) {
+    int index = 0;
+    long nextFrameNanos = System.nanoTime();
+    while (running) {
+      final LuminanceFrame frame = pool.acquire();
+      if (frame == null) {
+        droppedFrameCount.incrementAndGet();
+      }
+      else {
+        boolean filled = false;
+        try {
+          filled = fill(frame, index++);
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+        if (!filled) {
+          frame.release();
+          running = false;
+          close();
+          return;
+        }
+        consumer.onFrame(frame);
+      }
+
+      if (frameIntervalNanos > 0) {
+        nextFrameNanos += frameIntervalNanos;
+        long waitNanos;
+        while (running && (waitNanos = nextFrameNanos - System.nanoTime()) > 0) {
+          LockSupport.parkNanos(waitNanos);
+        }
+      }
+      else if (frame == null) {
+        Thread.yield();
+      }
+    }
+  }
+}
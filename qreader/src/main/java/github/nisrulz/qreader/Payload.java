@@ -0,0 +1,361 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+/**
+ * The parsed content of a code, one of the nested payload types. Codes read by the Play Services
+ * detector are taken from the structured fields it reports, the syntaxes named on each type are
+ * what the text of other codes is parsed from.
+ *
+ * @see ScanResult#getPayload()
+ */
+public abstract class Payload {
+  /**
+   * Plain text, see {@link Text}.
+   */
+  public static final int TYPE_TEXT = 0;
+  /**
+   * A link, see {@link Url}.
+   */
+  public static final int TYPE_URL = 1;
+  /**
+   * Wi-Fi network credentials, see {@link WiFi}.
+   */
+  public static final int TYPE_WIFI = 2;
+  /**
+   * A contact card, see {@link Contact}.
+   */
+  public static final int TYPE_CONTACT = 3;
+  /**
+   * A geographic location, see {@link Geo}.
+   */
+  public static final int TYPE_GEO = 4;
+  /**
+   * A text message, see {@link Sms}.
+   */
+  public static final int TYPE_SMS = 5;
+
+  private final String text;
+
+  Payload(String text) {
+    this.text = text;
+  }
+
+  /**
+   * Gets the type of the payload, one of the type constants.
+   *
+   * @return the type
+   */
+  public abstract int getType();
+
+  /**
+   * Gets the text the payload was parsed from.
+   *
+   * @return the text
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Text without a recognized structure.
+   */
+  public static final class Text extends Payload {
+    Text(String text) {
+      super(text);
+    }
+
+    @Override
+    public int getType() {
+      return TYPE_TEXT;
+    }
+  }
+
+  /**
+   * A link, from a plain http(s) address, URLTO: or a MEBKM: bookmark.
+   */
+  public static final class Url extends Payload {
+    private final String url;
+    private final String title;
+
+    Url(String text, String url, String title) {
+      super(text);
+      this.url = url;
+      this.title = title;
+    }
+
+    @Override
+    public int getType() {
+      return TYPE_URL;
+    }
+
+    /**
+     * Gets the url.
+     *
+     * @return the url
+     */
+    public String getUrl() {
+      return url;
+    }
+
+    /**
+     * Gets the title of a bookmark.
+     *
+     * @return the title, or null if there is none
+     */
+    public String getTitle() {
+      return title;
+    }
+  }
+
+  /**
+   * Wi-Fi network credentials, from a WIFI: code.
+   */
+  public static final class WiFi extends Payload {
+    private final String ssid;
+    private final String password;
+    private final String encryptionType;
+    private final boolean hidden;
+
+    WiFi(String text, String ssid, String password, String encryptionType, boolean hidden) {
+      super(text);
+      this.ssid = ssid;
+      this.password = password;
+      this.encryptionType = encryptionType;
+      this.hidden = hidden;
+    }
+
+    @Override
+    public int getType() {
+      return TYPE_WIFI;
+    }
+
+    /**
+     * Gets the network name.
+     *
+     * @return the ssid
+     */
+    public String getSsid() {
+      return ssid;
+    }
+
+    /**
+     * Gets the password.
+     *
+     * @return the password, or null for an open network
+     */
+    public String getPassword() {
+      return password;
+    }
+
+    /**
+     * Gets the encryption type as written in the code, e.g. WPA, WEP or nopass.
+     *
+     * @return the encryption type, or null if not given
+     */
+    public String getEncryptionType() {
+      return encryptionType;
+    }
+
+    /**
+     * Gets whether the network does not broadcast its name.
+     *
+     * @return true if hidden
+     */
+    public boolean isHidden() {
+      return hidden;
+    }
+  }
+
+  /**
+   * A contact card, from a MECARD: or vCard code.
+   */
+  public static final class Contact extends Payload {
+    private final String name;
+    private final String organization;
+    private final String[] phones;
+    private final String[] emails;
+    private final String[] urls;
+    private final String[] addresses;
+
+    Contact(String text, String name, String organization, String[] phones, String[] emails,
+        String[] urls, String[] addresses) {
+      super(text);
+      this.name = name;
+      this.organization = organization;
+      this.phones = phones;
+      this.emails = emails;
+      this.urls = urls;
+      this.addresses = addresses;
+    }
+
+    @Override
+    public int getType() {
+      return TYPE_CONTACT;
+    }
+
+    /**
+     * Gets the name.
+     *
+     * @return the name, or null if not given
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Gets the organization.
+     *
+     * @return the organization, or null if not given
+     */
+    public String getOrganization() {
+      return organization;
+    }
+
+    /**
+     * Gets the phone numbers.
+     *
+     * @return the phone numbers, empty if none are given
+     */
+    public String[] getPhones() {
+      return phones;
+    }
+
+    /**
+     * Gets the email addresses.
+     *
+     * @return the email addresses, empty if none are given
+     */
+    public String[] getEmails() {
+      return emails;
+    }
+
+    /**
+     * Gets the urls.
+     *
+     * @return the urls, empty if none are given
+     */
+    public String[] getUrls() {
+      return urls;
+    }
+
+    /**
+     * Gets the postal addresses, their parts separated by spaces.
+     *
+     * @return the addresses, empty if none are given
+     */
+    public String[] getAddresses() {
+      return addresses;
+    }
+  }
+
+  /**
+   * A geographic location, from a geo: URI.
+   */
+  public static final class Geo extends Payload {
+    private final double latitude;
+    private final double longitude;
+    private final double altitude;
+    private final String query;
+
+    Geo(String text, double latitude, double longitude, double altitude, String query) {
+      super(text);
+      this.latitude = latitude;
+      this.longitude = longitude;
+      this.altitude = altitude;
+      this.query = query;
+    }
+
+    @Override
+    public int getType() {
+      return TYPE_GEO;
+    }
+
+    /**
+     * Gets the latitude in degrees.
+     *
+     * @return the latitude
+     */
+    public double getLatitude() {
+      return latitude;
+    }
+
+    /**
+     * Gets the longitude in degrees.
+     *
+     * @return the longitude
+     */
+    public double getLongitude() {
+      return longitude;
+    }
+
+    /**
+     * Gets the altitude in meters.
+     *
+     * @return the altitude, or {@link Double#NaN} if not given
+     */
+    public double getAltitude() {
+      return altitude;
+    }
+
+    /**
+     * Gets the search query, as encoded in the URI.
+     *
+     * @return the query, or null if not given
+     */
+    public String getQuery() {
+      return query;
+    }
+  }
+
+  /**
+   * A text message, from an SMSTO: code or an sms: URI.
+   */
+  public static final class Sms extends Payload {
+    private final String phoneNumber;
+    private final String message;
+
+    Sms(String text, String phoneNumber, String message) {
+      super(text);
+      this.phoneNumber = phoneNumber;
+      this.message = message;
+    }
+
+    @Override
+    public int getType() {
+      return TYPE_SMS;
+    }
+
+    /**
+     * Gets the phone number to send to.
+     *
+     * @return the phone number
+     */
+    public String getPhoneNumber() {
+      return phoneNumber;
+    }
+
+    /**
+     * Gets the message.
+     *
+     * @return the message, or null if not given
+     */
+    public String getMessage() {
+      return message;
+    }
+  }
+}
@@ -0,0 +1,527 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import com.google.android.gms.vision.barcode.Barcode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the text of a code into a {@link Payload}.
+ * <p>
+ * A code the Play Services detector already parsed is taken from its structured fields. For
+ * everything else the kind of payload is taken from the prefix of the text, unless the detector
+ * already reported plain text. Each parser makes a single pass over the text without
+ * regular expressions.
+ */
+final class PayloadParser {
+  private static final String[] EMPTY = new String[0];
+
+  private PayloadParser() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Parses the text of a code.
+   *
+   * @param text
+   *     the text
+   * @param valueFormat
+   *     the value format reported by the detector, one of the {@link Barcode} value format
+   *     constants, or 0 if unknown
+   * @return the payload, {@link Payload.Text} if the text has no recognized structure, or null if
+   * there is no text
+   */
+  static Payload parse(String text, int valueFormat) {
+    if (text == null) {
+      return null;
+    }
+    // Text the detector found no structure in is not looked at again, for everything else the
+    // prefix tells which syntax to parse
+    final Payload payload = valueFormat == Barcode.TEXT ? null : parseByPrefix(text);
+    return payload != null ? payload : new Payload.Text(text);
+  }
+
+  /**
+   * Builds the payload of a barcode returned by the Play Services detector from the structured
+   * field it filled in, and parses the text if it filled in none.
+   * <p>
+   * The detector does not report whether a WiFi network is hidden, nor the altitude and query of
+   * a geo location, so these are left out.
+   *
+   * @param barcode
+   *     the barcode
+   * @param text
+   *     the raw value of the barcode
+   * @return the payload, or null if there is no text
+   */
+  static Payload fromBarcode(Barcode barcode, String text) {
+    if (text == null) {
+      return null;
+    }
+    if (barcode.url != null && barcode.url.url != null) {
+      return new Payload.Url(text, barcode.url.url, barcode.url.title);
+    }
+    if (barcode.wifi != null && barcode.wifi.ssid != null) {
+      return fromWiFi(text, barcode.wifi);
+    }
+    if (barcode.contactInfo != null) {
+      return fromContactInfo(text, barcode.contactInfo);
+    }
+    if (barcode.geoPoint != null) {
+      return new Payload.Geo(text, barcode.geoPoint.lat, barcode.geoPoint.lng, Double.NaN, null);
+    }
+    if (barcode.sms != null && barcode.sms.phoneNumber != null) {
+      return new Payload.Sms(text, barcode.sms.phoneNumber, barcode.sms.message);
+    }
+    return parse(text, barcode.valueFormat);
+  }
+
+  private static Payload fromWiFi(String text, Barcode.WiFi wifi) {
+    final String type;
+    String password = wifi.password;
+    switch (wifi.encryptionType) {
+      case Barcode.WiFi.OPEN:
+        type = "nopass";
+        password = null;
+        break;
+      case Barcode.WiFi.WPA:
+        type = "WPA";
+        break;
+      case Barcode.WiFi.WEP:
+        type = "WEP";
+        break;
+      default:
+        type = null;
+        break;
+    }
+    if (password != null && password.isEmpty()) {
+      password = null;
+    }
+    return new Payload.WiFi(text, wifi.ssid, password, type, false);
+  }
+
+  private static Payload fromContactInfo(String text, Barcode.ContactInfo contact) {
+    final List<String> phones = new ArrayList<>();
+    if (contact.phones != null) {
+      for (Barcode.Phone phone : contact.phones) {
+        if (phone != null && phone.number != null) {
+          phones.add(phone.number);
+        }
+      }
+    }
+    final List<String> emails = new ArrayList<>();
+    if (contact.emails != null) {
+      for (Barcode.Email email : contact.emails) {
+        if (email != null && email.address != null) {
+          emails.add(email.address);
+        }
+      }
+    }
+    final List<String> urls = new ArrayList<>();
+    if (contact.urls != null) {
+      for (String url : contact.urls) {
+        if (url != null) {
+          urls.add(url);
+        }
+      }
+    }
+    final List<String> addresses = new ArrayList<>();
+    if (contact.addresses != null) {
+      for (Barcode.Address address : contact.addresses) {
+        if (address != null && address.addressLines != null) {
+          addresses.add(joinLines(address.addressLines));
+        }
+      }
+    }
+    return new Payload.Contact(text, nameOf(contact.name), contact.organization, toArray(phones),
+        toArray(emails), toArray(urls), toArray(addresses));
+  }
+
+  private static String nameOf(Barcode.PersonName name) {
+    if (name == null) {
+      return null;
+    }
+    if (name.formattedName != null) {
+      return name.formattedName;
+    }
+    final StringBuilder builder = new StringBuilder();
+    for (String part : new String[] { name.prefix, name.first, name.middle, name.last,
+        name.suffix }) {
+      if (part != null && !part.isEmpty()) {
+        if (builder.length() > 0) {
+          builder.append(' ');
+        }
+        builder.append(part);
+      }
+    }
+    return builder.length() > 0 ? builder.toString() : null;
+  }
+
+  private static String joinLines(String[] lines) {
+    final StringBuilder builder = new StringBuilder();
+    for (String line : lines) {
+      if (line != null && !line.isEmpty()) {
+        if (builder.length() > 0) {
+          builder.append(", ");
+        }
+        builder.append(line);
+      }
+    }
+    return builder.toString();
+  }
+
+  private static Payload parseByPrefix(String text) {
+    if (startsWith(text, "http://") || startsWith(text, "https://")) {
+      return new Payload.Url(text, text.trim(), null);
+    }
+    if (startsWith(text, "URLTO:")) {
+      return new Payload.Url(text, text.substring("URLTO:".length()).trim(), null);
+    }
+    if (startsWith(text, "MEBKM:")) {
+      return parseBookmark(text);
+    }
+    if (startsWith(text, "WIFI:")) {
+      return parseWiFi(text);
+    }
+    if (startsWith(text, "MECARD:")) {
+      return parseMeCard(text);
+    }
+    if (startsWith(text, "BEGIN:VCARD")) {
+      return parseVCard(text);
+    }
+    if (startsWith(text, "geo:")) {
+      return parseGeo(text);
+    }
+    if (startsWith(text, "SMSTO:") || startsWith(text, "MMSTO:")) {
+      return parseSmsTo(text);
+    }
+    if (startsWith(text, "sms:")) {
+      return parseSmsUri(text);
+    }
+    return null;
+  }
+
+  private static Payload parseBookmark(String text) {
+    final FieldReader reader = new FieldReader(text, "MEBKM:".length());
+    String title = null;
+    String url = null;
+    while (reader.next()) {
+      if (reader.keyIs("TITLE")) {
+        title = reader.value();
+      }
+      else if (reader.keyIs("URL")) {
+        url = reader.value();
+      }
+    }
+    return url == null ? null : new Payload.Url(text, url, title);
+  }
+
+  private static Payload parseWiFi(String text) {
+    final FieldReader reader = new FieldReader(text, "WIFI:".length());
+    String ssid = null;
+    String password = null;
+    String type = null;
+    boolean hidden = false;
+    while (reader.next()) {
+      if (reader.keyIs("S")) {
+        ssid = reader.value();
+      }
+      else if (reader.keyIs("P")) {
+        password = reader.value();
+      }
+      else if (reader.keyIs("T")) {
+        type = reader.value();
+      }
+      else if (reader.keyIs("H")) {
+        hidden = "true".equalsIgnoreCase(reader.value());
+      }
+    }
+    if (ssid == null) {
+      return null;
+    }
+    if ("nopass".equalsIgnoreCase(type) || (password != null && password.isEmpty())) {
+      password = null;
+    }
+    return new Payload.WiFi(text, ssid, password, type, hidden);
+  }
+
+  private static Payload parseMeCard(String text) {
+    final FieldReader reader = new FieldReader(text, "MECARD:".length());
+    String name = null;
+    String organization = null;
+    final List<String> phones = new ArrayList<>();
+    final List<String> emails = new ArrayList<>();
+    final List<String> urls = new ArrayList<>();
+    final List<String> addresses = new ArrayList<>();
+    while (reader.next()) {
+      if (reader.keyIs("N")) {
+        name = reader.value();
+        // Written as "last,first"
+        final int comma = name.indexOf(',');
+        if (comma >= 0) {
+          name = (name.substring(comma + 1) + ' ' + name.substring(0, comma)).trim();
+        }
+      }
+      else if (reader.keyIs("ORG")) {
+        organization = reader.value();
+      }
+      else if (reader.keyIs("TEL")) {
+        phones.add(reader.value());
+      }
+      else if (reader.keyIs("EMAIL")) {
+        emails.add(reader.value());
+      }
+      else if (reader.keyIs("URL")) {
+        urls.add(reader.value());
+      }
+      else if (reader.keyIs("ADR")) {
+        addresses.add(reader.value());
+      }
+    }
+    return new Payload.Contact(text, name, organization, toArray(phones), toArray(emails),
+        toArray(urls), toArray(addresses));
+  }
+
+  private static Payload parseVCard(String text) {
+    final int length = text.length();
+    final StringBuilder value = new StringBuilder();
+    String formattedName = null;
+    String structuredName = null;
+    String organization = null;
+    final List<String> phones = new ArrayList<>();
+    final List<String> emails = new ArrayList<>();
+    final List<String> urls = new ArrayList<>();
+    final List<String> addresses = new ArrayList<>();
+
+    int pos = 0;
+    while (pos < length) {
+      // Property name, after an optional group like "item1."
+      int nameStart = pos;
+      while (pos < length && ":;\r\n".indexOf(text.charAt(pos)) < 0) {
+        if (text.charAt(pos) == '.') {
+          nameStart = pos + 1;
+        }
+        pos++;
+      }
+      final int nameEnd = pos;
+      // Parameters are skipped
+      while (pos < length && text.charAt(pos) != ':' && text.charAt(pos) != '\n') {
+        pos++;
+      }
+      if (pos == length || text.charAt(pos) == '\n') {
+        pos++;
+        continue;
+      }
+      pos++;
+
+      // Structured values separate their parts with semicolons
+      final boolean structured = propertyIs(text, nameStart, nameEnd, "N") || propertyIs(text,
+          nameStart, nameEnd, "ADR") || propertyIs(text, nameStart, nameEnd, "ORG");
+      value.setLength(0);
+      while (pos < length) {
+        final char c = text.charAt(pos++);
+        if (c == '\r' || c == '\n') {
+          if (c == '\r' && pos < length && text.charAt(pos) == '\n') {
+            pos++;
+          }
+          // A line starting with white space continues the value
+          if (pos < length && (text.charAt(pos) == ' ' || text.charAt(pos) == '\t')) {
+            pos++;
+            continue;
+          }
+          break;
+        }
+        if (c == '\\' && pos < length) {
+          final char escaped = text.charAt(pos++);
+          value.append(escaped == 'n' || escaped == 'N' ? '\n' : escaped);
+        }
+        else if (c == ';' && structured) {
+          if (value.length() != 0 && value.charAt(value.length() - 1) != ' ') {
+            value.append(' ');
+          }
+        }
+        else {
+          value.append(c);
+        }
+      }
+
+      if (propertyIs(text, nameStart, nameEnd, "FN")) {
+        formattedName = trimmed(value);
+      }
+      else if (propertyIs(text, nameStart, nameEnd, "N")) {
+        structuredName = trimmed(value);
+      }
+      else if (propertyIs(text, nameStart, nameEnd, "ORG")) {
+        organization = trimmed(value);
+      }
+      else if (propertyIs(text, nameStart, nameEnd, "TEL")) {
+        phones.add(trimmed(value));
+      }
+      else if (propertyIs(text, nameStart, nameEnd, "EMAIL")) {
+        emails.add(trimmed(value));
+      }
+      else if (propertyIs(text, nameStart, nameEnd, "URL")) {
+        urls.add(trimmed(value));
+      }
+      else if (propertyIs(text, nameStart, nameEnd, "ADR")) {
+        addresses.add(trimmed(value));
+      }
+    }
+    return new Payload.Contact(text, formattedName != null ? formattedName : structuredName,
+        organization, toArray(phones), toArray(emails), toArray(urls), toArray(addresses));
+  }
+
+  private static Payload parseGeo(String text) {
+    final int length = text.length();
+    final int start = "geo:".length();
+    // Coordinates end at parameters or the query
+    int end = start;
+    while (end < length && text.charAt(end) != ';' && text.charAt(end) != '?') {
+      end++;
+    }
+    final int firstComma = text.indexOf(',', start);
+    if (firstComma < 0 || firstComma >= end) {
+      return null;
+    }
+    int secondComma = text.indexOf(',', firstComma + 1);
+    if (secondComma < 0 || secondComma >= end) {
+      secondComma = end;
+    }
+
+    final double latitude;
+    final double longitude;
+    double altitude = Double.NaN;
+    try {
+      latitude = Double.parseDouble(text.substring(start, firstComma).trim());
+      longitude = Double.parseDouble(text.substring(firstComma + 1, secondComma).trim());
+      if (secondComma < end) {
+        altitude = Double.parseDouble(text.substring(secondComma + 1, end).trim());
+      }
+    } catch (NumberFormatException e) {
+      return null;
+    }
+
+    String query = null;
+    if (end < length && text.charAt(end) == '?') {
+      final int queryStart = text.indexOf("q=", end);
+      if (queryStart >= 0) {
+        query = text.substring(queryStart + 2);
+      }
+    }
+    return new Payload.Geo(text, latitude, longitude, altitude, query);
+  }
+
+  private static Payload parseSmsTo(String text) {
+    final int start = "SMSTO:".length();
+    final int colon = text.indexOf(':', start);
+    if (colon < 0) {
+      return new Payload.Sms(text, text.substring(start).trim(), null);
+    }
+    return new Payload.Sms(text, text.substring(start, colon).trim(), text.substring(colon + 1));
+  }
+
+  private static Payload parseSmsUri(String text) {
+    final int start = "sms:".length();
+    final int question = text.indexOf('?', start);
+    if (question < 0) {
+      return new Payload.Sms(text, text.substring(start).trim(), null);
+    }
+    String message = null;
+    final int body = text.indexOf("body=", question);
+    if (body >= 0) {
+      final int bodyEnd = text.indexOf('&', body);
+      message = text.substring(body + "body=".length(), bodyEnd < 0 ? text.length() : bodyEnd);
+    }
+    return new Payload.Sms(text, text.substring(start, question).trim(), message);
+  }
+
+  private static boolean startsWith(String text, String prefix) {
+    return text.regionMatches(true, 0, prefix, 0, prefix.length());
+  }
+
+  private static boolean propertyIs(String text, int start, int end, String name) {
+    return end - start == name.length() && text.regionMatches(true, start, name, 0,
+        name.length());
+  }
+
+  private static String trimmed(StringBuilder value) {
+    return value.toString().trim();
+  }
+
+  private static String[] toArray(List<String> values) {
+    return values.isEmpty() ? EMPTY : values.toArray(new String[values.size()]);
+  }
+
+  /**
+   * Reads the KEY:value; fields of MECARD style codes, unescaping backslash escapes.
+   */
+  private static final class FieldReader {
+    private final String text;
+    private final StringBuilder value = new StringBuilder();
+    private int pos;
+    private int keyStart;
+    private int keyEnd;
+
+    FieldReader(String text, int start) {
+      this.text = text;
+      this.pos = start;
+    }
+
+    boolean next() {
+      final int length = text.length();
+      while (pos < length) {
+        keyStart = pos;
+        while (pos < length && text.charAt(pos) != ':' && text.charAt(pos) != ';') {
+          pos++;
+        }
+        if (pos == length) {
+          return false;
+        }
+        if (text.charAt(pos) == ';') {
+          // Empty field, the terminating ";;" included
+          pos++;
+          continue;
+        }
+        keyEnd = pos++;
+        value.setLength(0);
+        while (pos < length) {
+          final char c = text.charAt(pos++);
+          if (c == '\\' && pos < length) {
+            value.append(text.charAt(pos++));
+          }
+          else if (c == ';') {
+            break;
+          }
+          else {
+            value.append(c);
+          }
+        }
+        return true;
+      }
+      return false;
+    }
+
+    boolean keyIs(String key) {
+      return propertyIs(text, keyStart, keyEnd, key);
+    }
+
+    String value() {
+      return value.toString();
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.util.SparseArray;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Runs detection coarse to fine on a luminance pyramid. The quarter resolution level is tried
+ * first and the finer levels only when the coarser ones did not find anything. Codes filling a
+ * good part of the view are found at a fraction of the full resolution cost.
+ */
+class PyramidDetector extends DelegatingDetector {
+  /**
+   * The number of pyramid levels: quarter, half and full resolution.
+   */
+  static final int LEVEL_COUNT = 3;
+  private static final int QUARTER = 0;
+  private static final int HALF = 1;
+  private static final int FULL = 2;
+
+  private final AtomicIntegerArray attempts = new AtomicIntegerArray(LEVEL_COUNT);
+  private final AtomicIntegerArray hits = new AtomicIntegerArray(LEVEL_COUNT);
+  private byte[] frameCopy;
+  private byte[] half;
+  private byte[] quarter;
+  private ByteBuffer halfBuffer;
+  private ByteBuffer quarterBuffer;
+
+  /**
+   * Instantiates a new Pyramid detector.
+   *
+   * @param delegate
+   *     the wrapped detector
+   */
+  PyramidDetector(Detector<Barcode> delegate) {
+    super(delegate);
+  }
+
+  @Override
+  public SparseArray<Barcode> detect(Frame frame) {
+    final Frame.Metadata metadata = frame.getMetadata();
+    final int width = metadata.getWidth();
+    final int height = metadata.getHeight();
+    final int halfWidth = width / 2;
+    final int halfHeight = height / 2;
+    final int quarterWidth = halfWidth / 2;
+    final int quarterHeight = halfHeight / 2;
+    if (quarterWidth == 0 || quarterHeight == 0) {
+      return detectLevel(FULL, frame, frame, 1, width, height);
+    }
+    ensureBuffers(halfWidth * halfHeight, quarterWidth * quarterHeight);
+
+    final ByteBuffer data = frame.getGrayscaleImageData();
+    final byte[] src;
+    final int offset;
+    if (data.hasArray()) {
+      src = data.array();
+      offset = data.arrayOffset();
+    }
+    else {
+      if (frameCopy == null || frameCopy.length < width * height) {
+        frameCopy = new byte[width * height];
+      }
+      LuminanceFrames.crop(data, width, 0, 0, width, height, frameCopy);
+      src = frameCopy;
+      offset = 0;
+    }
+    LuminanceFrames.downscale(src, offset, width, height, half);
+    LuminanceFrames.downscale(half, 0, halfWidth, halfHeight, quarter);
+
+    SparseArray<Barcode> barcodes = detectLevel(QUARTER, frame,
+        LuminanceFrames.wrap(quarterBuffer, quarterWidth, quarterHeight, metadata), 4,
+        quarterWidth, quarterHeight);
+    if (barcodes == SKIPPED_FRAME || barcodes.size() != 0) {
+      return barcodes;
+    }
+    barcodes = detectLevel(HALF, frame,
+        LuminanceFrames.wrap(halfBuffer, halfWidth, halfHeight, metadata), 2, halfWidth,
+        halfHeight);
+    if (barcodes == SKIPPED_FRAME || barcodes.size() != 0) {
+      return barcodes;
+    }
+    return detectLevel(FULL, frame, frame, 1, width, height);
+  }
+
+  /**
+   * Gets the hit rates of the levels, from quarter to full resolution.
+   *
+   * @param out
+   *     receives the share of attempts on each level that found a code
+   */
+  void getHitRates(float[] out) {
+    for (int level = 0; level < LEVEL_COUNT; level++) {
+      final int levelAttempts = attempts.get(level);
+      out[level] = levelAttempts == 0 ? 0f : (float) hits.get(level) / levelAttempts;
+    }
+  }
+
+  private SparseArray<Barcode> detectLevel(int level, Frame frame, Frame levelFrame, int scale,
+      int levelWidth, int levelHeight) {
+    final SparseArray<Barcode> barcodes = delegate.detect(levelFrame);
+    if (barcodes == SKIPPED_FRAME) {
+      return barcodes;
+    }
+    attempts.incrementAndGet(level);
+    if (barcodes.size() == 0) {
+      return barcodes;
+    }
+    hits.incrementAndGet(level);
+    if (scale != 1) {
+      final Frame.Metadata metadata = frame.getMetadata();
+      for (int i = 0; i < barcodes.size(); i++) {
+        LuminanceFrames.mapToFrame(barcodes.valueAt(i), metadata.getRotation(), 0, 0, scale,
+            levelWidth, levelHeight, metadata.getWidth(), metadata.getHeight());
+      }
+    }
+    return barcodes;
+  }
+
+  private void ensureBuffers(int halfSize, int quarterSize) {
+    if (half == null || half.length != halfSize) {
+      half = new byte[halfSize];
+      halfBuffer = ByteBuffer.wrap(half);
+    }
+    if (quarter == null || quarter.length != quarterSize) {
+      quarter = new byte[quarterSize];
+      quarterBuffer = ByteBuffer.wrap(quarter);
+    }
+  }
+}
@@ -27,6 +27,6 @@ public interface QRDataListener {
    * @param data
    *     the data
    */
-  // Called from not main thread. Be careful
+  // Called on the executor or handler set with Builder#deliverOn, otherwise on the detector thread
   void onDetected(final String data);
 }
@@ -20,10 +20,11 @@ import android.Manifest;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.pm.PackageManager;
+import android.graphics.RectF;
 import android.os.Build;
+import android.os.Handler;
 import android.support.v4.app.ActivityCompat;
 import android.util.Log;
-import android.util.SparseArray;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.View;
@@ -33,6 +34,11 @@ import com.google.android.gms.vision.Detector;
 import com.google.android.gms.vision.barcode.Barcode;
 import com.google.android.gms.vision.barcode.BarcodeDetector;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.reactivestreams.Publisher;
 
 /**
  * QREader Singleton.
@@ -46,15 +52,53 @@ public class QREader {
    * The constant BACK_CAM.
    */
   public static final int BACK_CAM = CameraSource.CAMERA_FACING_BACK;
+  private static final int DEDUPLICATE_CAPACITY = 32;
+  private static final int SEQUENCE_CAPACITY = 4;
+  private static final int DEFAULT_FORMATS = Barcode.QR_CODE;
+  private static final int DEFAULT_QUEUE_CAPACITY = 16;
   private final String LOGTAG = getClass().getSimpleName();
   private final int width;
   private final int height;
   private final int facing;
   private final QRDataListener qrDataListener;
+  private final QRMultiDataListener qrMultiDataListener;
+  private final ScanResultListener scanResultListener;
   private final Context context;
   private final SurfaceView surfaceView;
+  private final float targetDetectionsPerSecond;
+  private final float maxDetectorUtilization;
+  private final RectF regionOfInterest;
+  private final boolean pyramidDetectionEnabled;
+  private final FrameSource frameSource;
+  private final boolean decodeThreadEnabled;
+  private final boolean tiledDetectionEnabled;
+  private final boolean sharpnessGateEnabled;
+  private final boolean sceneChangeGateEnabled;
+  private final boolean trackingEnabled;
+  private final int trackingMaxMisses;
+  private final long deduplicateWithinMillis;
+  private final int consensusVotes;
+  private final long sequenceTimeoutMillis;
+  private final int consensusWindowFrames;
+  private final Executor deliveryExecutor;
+  private final long batchIntervalMillis;
+  private final BackpressurePolicy backpressurePolicy;
+  private final int queueCapacity;
+  private PyramidDetector pyramidDetector = null;
+  private LatestFrameDetector latestFrameDetector = null;
+  private SharpnessGateDetector sharpnessGateDetector = null;
+  private ResultDispatcher dispatcher = null;
+  private StructuredAppendReassembler reassembler = null;
+  private final ResultPublisher resultPublisher = new ResultPublisher();
   private CameraSource cameraSource = null;
-  private BarcodeDetector barcodeDetector = null;
+  private Detector<Barcode> detector = null;
+  private FrameSourceFeeder frameSourceFeeder = null;
+  private Detector<Barcode> barcodeDetector = null;
+  private final List<Detector<Barcode>> lowerPriorityDetectors = new ArrayList<>();
+  private final boolean detectorPooled;
+  private final int[] barcodeFormats;
+  private final int cascadeEveryNthFrame;
+  private final int cascadeAfterMisses;
   private boolean autoFocusEnabled;
 
   private boolean cameraRunning = false;
@@ -97,18 +141,96 @@ public class QREader {
     this.height = builder.height;
     this.facing = builder.facing;
     this.qrDataListener = builder.qrDataListener;
+    this.qrMultiDataListener = builder.qrMultiDataListener;
+    this.scanResultListener = builder.scanResultListener;
     this.context = builder.context;
     this.surfaceView = builder.surfaceView;
+    this.targetDetectionsPerSecond = builder.targetDetectionsPerSecond;
+    this.maxDetectorUtilization = builder.maxDetectorUtilization;
+    this.regionOfInterest = builder.regionOfInterest;
+    this.pyramidDetectionEnabled = builder.pyramidDetectionEnabled;
+    this.frameSource = builder.frameSource;
+    this.decodeThreadEnabled = builder.decodeThreadEnabled;
+    this.tiledDetectionEnabled = builder.tiledDetectionEnabled;
+    this.sharpnessGateEnabled = builder.sharpnessGateEnabled;
+    this.sceneChangeGateEnabled = builder.sceneChangeGateEnabled;
+    this.trackingEnabled = builder.trackingEnabled;
+    this.trackingMaxMisses = builder.trackingMaxMisses;
+    this.deduplicateWithinMillis = builder.deduplicateWithinMillis;
+    this.consensusVotes = builder.consensusVotes;
+    this.sequenceTimeoutMillis = builder.sequenceTimeoutMillis;
+    this.consensusWindowFrames = builder.consensusWindowFrames;
+    this.deliveryExecutor = builder.deliveryExecutor;
+    this.batchIntervalMillis = builder.batchIntervalMillis;
+    this.backpressurePolicy = builder.backpressurePolicy;
+    this.queueCapacity = builder.queueCapacity;
+    this.barcodeFormats = builder.barcodeFormats;
+    this.cascadeEveryNthFrame = builder.cascadeEveryNthFrame;
+    this.cascadeAfterMisses = builder.cascadeAfterMisses;
     //for better performance we should use one detector for all Reader, if builder not specify it
-    if (builder.barcodeDetector == null) {
-      this.barcodeDetector = BarcodeDetectorHolder.getBarcodeDetector(context);
+    this.detectorPooled = builder.barcodeDetector == null;
+    if (detectorPooled) {
+      acquireDetectors();
     }
     else {
       this.barcodeDetector = builder.barcodeDetector;
     }
   }
 
+  /**
+   * Sets how long the barcode detectors shared between readers are kept after the last reader
+   * released them, e.g. so that they are not built again on every onPause/onResume cycle. By
+   * default they are freed right away. Applies to all readers not given their own detector.
+   *
+   * @param timeout
+   *     the idle timeout, or 0 to free detectors right away
+   * @param unit
+   *     the unit of the timeout
+   */
+  public static void setDetectorIdleTimeout(long timeout, TimeUnit unit) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("timeout must not be negative");
+    }
+    DetectorPool.setIdleTimeout(timeout, unit);
+  }
+
+  /**
+   * Builds the shared barcode detectors on a background thread and runs a blank frame through
+   * them, so that readers created later find them ready instead of paying for their native
+   * initialization while the user waits to scan. Call it early, e.g. in {@link
+   * android.app.Application#onCreate()}. Detectors no reader acquires within a minute, or the
+   * idle timeout set with {@link #setDetectorIdleTimeout(long, TimeUnit)} if that is longer, are
+   * freed again.
+   *
+   * @param context
+   *     the context
+   * @param formats
+   *     the formats as passed to {@link Builder#formats(int...)}, none for QR codes
+   */
+  public static void prewarm(Context context, int... formats) {
+    final Context appContext = context.getApplicationContext();
+    final int[] prewarmFormats = formats.length == 0 ? new int[] { DEFAULT_FORMATS } : formats;
+    final Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < prewarmFormats.length; i++) {
+          if (!DetectorPool.prewarm(appContext, prewarmFormats[i])) {
+            Log.e(QREader.class.getSimpleName(),
+                "Barcode recognition libs are not downloaded and are not operational");
+            return;
+          }
+        }
+      }
+    }, "QREader-Prewarm");
+    thread.setPriority(Thread.MIN_PRIORITY);
+    thread.start();
+  }
+
   public void initAndStart(final SurfaceView surfaceView) {
+    if (surfaceView == null) {
+      initAndStart();
+      return;
+    }
 
     surfaceView.getViewTreeObserver()
         .addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
@@ -121,55 +243,151 @@ public class QREader {
         });
   }
 
+  /**
+   * Initializes and starts reading from the frame source set through the builder. No view is
+   * needed, so together with a {@link SyntheticFrameSource} or a {@link RecordedFrameSource} the
+   * whole pipeline also runs on a plain JVM, e.g. to load-test it from unit tests.
+   *
+   * @throws IllegalStateException
+   *     if no frame source was set
+   * @see Builder#frameSource(FrameSource)
+   */
+  public void initAndStart() {
+    if (frameSource == null) {
+      throw new IllegalStateException("No frame source set, pass a SurfaceView instead");
+    }
+    start();
+  }
+
   /**
    * Init.
    */
   private void init() {
-    if (!hasAutofocus(context)) {
+    if (detectorPooled && barcodeDetector == null) {
+      acquireDetectors();
+    }
+
+    // Frame sources take care of the camera hardware themselves, if they use one at all
+    if (frameSource == null && !hasAutofocus(context)) {
       Log.e(LOGTAG, "Do not have autofocus feature, disabling autofocus feature in the library!");
       autoFocusEnabled = false;
     }
-
-    if (!hasCameraHardware(context)) {
+    if (frameSource == null && !hasCameraHardware(context)) {
       Log.e(LOGTAG, "Does not have camera hardware!");
       return;
     }
-    if (!checkCameraPermission(context)) {
+    if (frameSource == null && !checkCameraPermission(context)) {
       Log.e(LOGTAG, "Do not have camera permission!");
       return;
     }
 
+    final Detector<Barcode> detector;
     if (barcodeDetector.isOperational()) {
-      barcodeDetector.setProcessor(new Detector.Processor<Barcode>() {
-        @Override
-        public void release() {
-          // Handled via public method
-        }
-
-        @Override
-        public void receiveDetections(Detector.Detections<Barcode> detections) {
-          final SparseArray<Barcode> barcodes = detections.getDetectedItems();
-          if (barcodes.size() != 0 && qrDataListener != null) {
-            qrDataListener.onDetected(barcodes.valueAt(0).displayValue);
-          }
-        }
-      });
+      detector = buildDetectorChain(barcodeDetector, true);
+    }
+    else {
+      Log.w(LOGTAG, "Barcode recognition libs are not downloaded and are not operational, "
+          + "falling back to the built-in QR code decoder");
+      detector = buildDetectorChain(new FallbackDetector(barcodeDetector), false);
+    }
+    dispatcher = new ResultDispatcher(qrDataListener, qrMultiDataListener, scanResultListener,
+        deliveryExecutor, batchIntervalMillis, backpressurePolicy, queueCapacity);
+    final DuplicateFilter duplicateFilter = deduplicateWithinMillis > 0
+        ? new DuplicateFilter(DEDUPLICATE_CAPACITY, deduplicateWithinMillis) : null;
+    final ConsensusFilter consensusFilter = consensusVotes > 1
+        ? new ConsensusFilter(consensusVotes, consensusWindowFrames) : null;
+    reassembler = sequenceTimeoutMillis > 0
+        ? new StructuredAppendReassembler(SEQUENCE_CAPACITY, sequenceTimeoutMillis) : null;
+    detector.setProcessor(
+        new BarcodeProcessor(dispatcher, resultPublisher, reassembler, consensusFilter,
+            duplicateFilter));
 
+    if (frameSource == null) {
       cameraSource =
-          new CameraSource.Builder(context, barcodeDetector).setAutoFocusEnabled(autoFocusEnabled)
+          new CameraSource.Builder(context, detector).setAutoFocusEnabled(autoFocusEnabled)
               .setFacing(facing)
               .setRequestedPreviewSize(width, height)
               .build();
     }
     else {
-      Log.e(LOGTAG, "Barcode recognition libs are not downloaded and are not operational");
+      frameSourceFeeder = new FrameSourceFeeder(detector);
+    }
+    this.detector = detector;
+  }
+
+  /**
+   * Wraps the barcode detector in the stages enabled through the builder. Stages are added from
+   * the inside out, frames pass them in reverse order.
+   *
+   * @param root
+   *     the detector at the center of the chain
+   * @param nativeDetector
+   *     whether the root is the Play Services detector. Tiling and the format cascade need more
+   *     Play Services detectors and are left out otherwise.
+   * @return the detector frames are handed to
+   */
+  private Detector<Barcode> buildDetectorChain(Detector<Barcode> root, boolean nativeDetector) {
+    Detector<Barcode> detector = root;
+    if (nativeDetector && tiledDetectionEnabled) {
+      // One detector per core, the shared one included, the others built in the background
+      detector = new TiledDetector(detector, context, barcodeFormats[0],
+          Runtime.getRuntime().availableProcessors());
+    }
+    if (pyramidDetectionEnabled) {
+      pyramidDetector = new PyramidDetector(detector);
+      detector = pyramidDetector;
+    }
+    if (nativeDetector && !lowerPriorityDetectors.isEmpty()) {
+      // Outside the pyramid, so the cascade counts frames rather than levels and lower priority
+      // formats are detected on the whole frame at full resolution
+      detector = new CascadeDetector(detector, new ArrayList<>(lowerPriorityDetectors),
+          cascadeEveryNthFrame, cascadeAfterMisses);
+    }
+    if (sharpnessGateEnabled) {
+      sharpnessGateDetector = new SharpnessGateDetector(detector);
+      detector = sharpnessGateDetector;
+    }
+    if (trackingEnabled) {
+      detector = new TrackingDetector(detector, trackingMaxMisses);
+    }
+    if (regionOfInterest != null) {
+      detector = new RegionOfInterestDetector(detector, regionOfInterest.left, regionOfInterest.top,
+          regionOfInterest.right, regionOfInterest.bottom);
+    }
+    if (sceneChangeGateEnabled) {
+      // Outside tracking and the region of interest, so the whole frame is compared
+      detector = new SceneChangeGateDetector(detector);
     }
+    if (targetDetectionsPerSecond > 0 || maxDetectorUtilization < 1f) {
+      detector =
+          new DetectionScheduler(detector, targetDetectionsPerSecond, maxDetectorUtilization);
+    }
+    if (qrDataListener == null && qrMultiDataListener == null && scanResultListener == null) {
+      // Nothing takes results but the subscribers, detect only when they ask for more
+      detector = new DemandGateDetector(detector, resultPublisher);
+    }
+    if (decodeThreadEnabled) {
+      latestFrameDetector = new LatestFrameDetector(detector);
+      detector = latestFrameDetector;
+    }
+    return detector;
   }
 
   /**
    * Start scanning qr codes.
    */
   public void start() {
+    if (dispatcher != null) {
+      dispatcher.setStopping(false);
+    }
+    if (frameSource != null && surfaceView == null) {
+      // Nothing to wait for, initialized here on the first start and after a release
+      if (frameSourceFeeder == null) {
+        init();
+      }
+      startCameraView(context, cameraSource, null);
+      return;
+    }
     if (surfaceView != null && surfaceHolderCallback != null) {
       //if surface already created, we can start camera
       if (surfaceCreated) {
@@ -213,7 +431,13 @@ public class QREader {
       throw new IllegalStateException("Camera already started!");
     }
     try {
-      if (ActivityCompat.checkSelfPermission(context, Manifest.permission.CAMERA)
+      if (frameSource != null) {
+        if (frameSourceFeeder != null) {
+          frameSource.start(frameSourceFeeder);
+          cameraRunning = true;
+        }
+      }
+      else if (ActivityCompat.checkSelfPermission(context, Manifest.permission.CAMERA)
           != PackageManager.PERMISSION_GRANTED) {
         Log.e(LOGTAG, "Permission not granted!");
       }
@@ -236,24 +460,169 @@ public class QREader {
     return cameraRunning;
   }
 
+  /**
+   * Gets the hit rates of the pyramid detection levels, from quarter over half to full
+   * resolution. Each is the share of the detection attempts on that level that found a code.
+   *
+   * @return the hit rates, all 0 if pyramid detection is not enabled or not started yet
+   * @see Builder#enablePyramidDetection(boolean)
+   */
+  public float[] getPyramidHitRates() {
+    final float[] hitRates = new float[PyramidDetector.LEVEL_COUNT];
+    final PyramidDetector pyramidDetector = this.pyramidDetector;
+    if (pyramidDetector != null) {
+      pyramidDetector.getHitRates(hitRates);
+    }
+    return hitRates;
+  }
+
+  /**
+   * Gets the number of frames the decode thread skipped because a newer frame arrived before it
+   * got to them, since the reader was last initialized.
+   *
+   * @return the dropped frame count, 0 if the decode thread is not enabled
+   * @see Builder#enableDecodeThread(boolean)
+   */
+  public long getDroppedFrameCount() {
+    final LatestFrameDetector latestFrameDetector = this.latestFrameDetector;
+    return latestFrameDetector == null ? 0 : latestFrameDetector.getDroppedFrameCount();
+  }
+
+  /**
+   * Gets the number of frames handed to the decode thread since the reader was last initialized.
+   *
+   * @return the received frame count, 0 if the decode thread is not enabled
+   * @see Builder#enableDecodeThread(boolean)
+   */
+  public long getReceivedFrameCount() {
+    final LatestFrameDetector latestFrameDetector = this.latestFrameDetector;
+    return latestFrameDetector == null ? 0 : latestFrameDetector.getReceivedFrameCount();
+  }
+
+  /**
+   * Gets the number of frames the sharpness gate dropped as blurry since the reader was last
+   * initialized.
+   *
+   * @return the gated frame count, 0 if the sharpness gate is not enabled
+   * @see Builder#enableSharpnessGate(boolean)
+   */
+  public long getSharpnessGatedFrameCount() {
+    final SharpnessGateDetector sharpnessGateDetector = this.sharpnessGateDetector;
+    return sharpnessGateDetector == null ? 0 : sharpnessGateDetector.getGatedFrameCount();
+  }
+
+  /**
+   * Gets the number of frames the sharpness gate let through to detection since the reader was
+   * last initialized.
+   *
+   * @return the passed frame count, 0 if the sharpness gate is not enabled
+   * @see Builder#enableSharpnessGate(boolean)
+   */
+  public long getSharpnessPassedFrameCount() {
+    final SharpnessGateDetector sharpnessGateDetector = this.sharpnessGateDetector;
+    return sharpnessGateDetector == null ? 0 : sharpnessGateDetector.getPassedFrameCount();
+  }
+
+  /**
+   * Gets a publisher of the display values of detected codes. Subscribers get values only as
+   * far as they requested them, values detected while a subscriber has no outstanding demand are
+   * not delivered to it. Without listeners, frames are only decoded while a subscriber has
+   * outstanding demand and detection pauses when the demand reaches zero. Values are published on
+   * the detector thread, subscriptions stay across {@link #releaseAndCleanup()} and {@link
+   * #initAndStart(SurfaceView)} until cancelled.
+   *
+   * @return the publisher
+   */
+  public Publisher<String> results() {
+    return resultPublisher;
+  }
+
+  /**
+   * Gets the number of frame results dropped by the backpressure policy because the listeners
+   * did not keep up, since the reader was last initialized.
+   *
+   * @return the dropped result count
+   * @see Builder#backpressure(BackpressurePolicy, int)
+   */
+  public long getDroppedResultCount() {
+    final ResultDispatcher dispatcher = this.dispatcher;
+    return dispatcher == null ? 0 : dispatcher.getDroppedResultCount();
+  }
+
+  /**
+   * Gets the number of frame results currently waiting for the listeners.
+   *
+   * @return the queued result count
+   * @see Builder#backpressure(BackpressurePolicy, int)
+   */
+  public int getQueuedResultCount() {
+    final ResultDispatcher dispatcher = this.dispatcher;
+    return dispatcher == null ? 0 : dispatcher.getQueuedResultCount();
+  }
+
+  /**
+   * Gets the number of structured append sequences dropped before all their symbols were seen,
+   * since the reader was last initialized.
+   *
+   * @return the dropped sequence count
+   * @see Builder#reassembleStructuredAppend(long, TimeUnit)
+   */
+  public long getDroppedSequenceCount() {
+    final StructuredAppendReassembler reassembler = this.reassembler;
+    return reassembler == null ? 0 : reassembler.getDroppedSequenceCount();
+  }
+
   /**
    * Release and cleanup QREader.
    */
   public void releaseAndCleanup() {
     stop();
     if (cameraSource != null) {
-      //release camera and barcode detector(will invoke inside) resources
+      //release camera and barcode detector(will invoke inside) resources. A shared detector is
+      //only freed once no other reader uses it
       cameraSource.release();
       cameraSource = null;
     }
+    else if (detector != null) {
+      detector.release();
+    }
+    detector = null;
+    frameSourceFeeder = null;
+    if (detectorPooled && barcodeDetector != null) {
+      // Gives the shares back if no detector chain was built, does nothing otherwise
+      barcodeDetector.release();
+      barcodeDetector = null;
+      for (int i = 0; i < lowerPriorityDetectors.size(); i++) {
+        lowerPriorityDetectors.get(i).release();
+      }
+      lowerPriorityDetectors.clear();
+    }
+  }
+
+  /**
+   * Takes shares of the pooled detectors, one per format priority.
+   */
+  private void acquireDetectors() {
+    barcodeDetector = DetectorPool.acquire(context, barcodeFormats[0]);
+    for (int i = 1; i < barcodeFormats.length; i++) {
+      lowerPriorityDetectors.add(DetectorPool.acquire(context, barcodeFormats[i]));
+    }
   }
 
   /**
    * Stop camera
    */
   public void stop() {
+    if (dispatcher != null) {
+      // Wakes up a detection waiting for room in the queue before its thread is joined
+      dispatcher.setStopping(true);
+    }
     try {
-      if (cameraRunning && cameraSource != null) {
+      if (cameraRunning && frameSource != null) {
+        frameSource.stop();
+        cameraRunning = false;
+      }
+      else if (cameraRunning && cameraSource != null) {
         cameraSource.stop();
         cameraRunning = false;
       }
@@ -274,7 +643,31 @@ public class QREader {
     private int width;
     private int height;
     private int facing;
-    private BarcodeDetector barcodeDetector;
+    private Detector<Barcode> barcodeDetector;
+    private int[] barcodeFormats;
+    private int cascadeEveryNthFrame;
+    private int cascadeAfterMisses;
+    private float targetDetectionsPerSecond;
+    private float maxDetectorUtilization;
+    private RectF regionOfInterest;
+    private boolean pyramidDetectionEnabled;
+    private FrameSource frameSource;
+    private boolean decodeThreadEnabled;
+    private boolean tiledDetectionEnabled;
+    private boolean sharpnessGateEnabled;
+    private boolean sceneChangeGateEnabled;
+    private boolean trackingEnabled;
+    private int trackingMaxMisses;
+    private long deduplicateWithinMillis;
+    private int consensusVotes;
+    private long sequenceTimeoutMillis;
+    private int consensusWindowFrames;
+    private QRMultiDataListener qrMultiDataListener;
+    private ScanResultListener scanResultListener;
+    private Executor deliveryExecutor;
+    private long batchIntervalMillis;
+    private BackpressurePolicy backpressurePolicy;
+    private int queueCapacity;
 
     /**
      * Instantiates a new Builder.
@@ -284,13 +677,21 @@ public class QREader {
      * @param surfaceView
      *     the surface view
      * @param qrDataListener
-     *     the qr data listener
+     *     the qr data listener, may be null if a {@link #multiDataListener(QRMultiDataListener)}
+     *     is set
      */
     public Builder(Context context, SurfaceView surfaceView, QRDataListener qrDataListener) {
       this.autofocusEnabled = true;
       this.width = 800;
       this.height = 800;
       this.facing = BACK_CAM;
+      this.targetDetectionsPerSecond = 0;
+      this.maxDetectorUtilization = 1f;
+      this.trackingMaxMisses = 5;
+      this.queueCapacity = DEFAULT_QUEUE_CAPACITY;
+      this.barcodeFormats = new int[] { DEFAULT_FORMATS };
+      this.cascadeEveryNthFrame = 4;
+      this.cascadeAfterMisses = 3;
       this.qrDataListener = qrDataListener;
       this.context = context;
       this.surfaceView = surfaceView;
@@ -348,6 +749,387 @@ public class QREader {
       return this;
     }
 
+    /**
+     * Target detections per second builder. Frames arriving faster than this rate are dropped
+     * before detection. Pass 0 (the default) to detect on every frame.
+     *
+     * @param targetDetectionsPerSecond
+     *     the highest number of detections per second
+     * @return the builder
+     */
+    public Builder targetDetectionsPerSecond(float targetDetectionsPerSecond) {
+      if (targetDetectionsPerSecond < 0) {
+        throw new IllegalArgumentException("targetDetectionsPerSecond must not be negative");
+      }
+      this.targetDetectionsPerSecond = targetDetectionsPerSecond;
+      return this;
+    }
+
+    /**
+     * Max detector utilization builder. Frames are dropped so that the detector stays busy for at
+     * most this share of the time, based on the measured per-frame detection latency. Defaults to
+     * 1, i.e. no limit.
+     *
+     * @param maxDetectorUtilization
+     *     the share of time the detector may run, in (0, 1]
+     * @return the builder
+     */
+    public Builder maxDetectorUtilization(float maxDetectorUtilization) {
+      if (maxDetectorUtilization <= 0 || maxDetectorUtilization > 1) {
+        throw new IllegalArgumentException("maxDetectorUtilization must be in (0, 1]");
+      }
+      this.maxDetectorUtilization = maxDetectorUtilization;
+      return this;
+    }
+
+    /**
+     * Region of interest builder. Only this part of each frame is handed to detection, given as
+     * fractions of the preview, e.g. {@code (0.3f, 0.3f, 0.7f, 0.7f)} for a centered aiming box.
+     * Corner points of detected codes are still reported in full-frame coordinates.
+     *
+     * @param left
+     *     the left edge, in [0, 1]
+     * @param top
+     *     the top edge, in [0, 1]
+     * @param right
+     *     the right edge, in [0, 1]
+     * @param bottom
+     *     the bottom edge, in [0, 1]
+     * @return the builder
+     */
+    public Builder regionOfInterest(float left, float top, float right, float bottom) {
+      if (left < 0 || top < 0 || right > 1 || bottom > 1 || left >= right || top >= bottom) {
+        throw new IllegalArgumentException("Region of interest must be a non-empty area in [0, 1]");
+      }
+      this.regionOfInterest = new RectF(left, top, right, bottom);
+      return this;
+    }
+
+    /**
+     * Enable pyramid detection builder. Detection is first tried at quarter resolution and only
+     * escalates to half and full resolution when nothing was found, which is much cheaper when
+     * codes fill a large part of the view. Disabled by default.
+     *
+     * @param pyramidDetectionEnabled
+     *     the pyramid detection enabled
+     * @return the builder
+     * @see QREader#getPyramidHitRates()
+     */
+    public Builder enablePyramidDetection(boolean pyramidDetectionEnabled) {
+      this.pyramidDetectionEnabled = pyramidDetectionEnabled;
+      return this;
+    }
+
+    /**
+     * Frame source builder. Frames are taken from the given source instead of the play services
+     * camera source, e.g. a {@link Camera2FrameSource}, a {@link RecordedFrameSource} or a
+     * {@link SyntheticFrameSource}.
+     *
+     * @param frameSource
+     *     the frame source
+     * @return the builder
+     */
+    public Builder frameSource(FrameSource frameSource) {
+      this.frameSource = frameSource;
+      return this;
+    }
+
+    /**
+     * Enable decode thread builder. Detection then runs on a dedicated thread that always picks
+     * the latest frame, so a slow detection never holds up the camera and results are at most one
+     * detection behind. Frames replaced before being decoded are counted, see {@link
+     * QREader#getDroppedFrameCount()}. Disabled by default.
+     *
+     * @param decodeThreadEnabled
+     *     the decode thread enabled
+     * @return the builder
+     */
+    public Builder enableDecodeThread(boolean decodeThreadEnabled) {
+      this.decodeThreadEnabled = decodeThreadEnabled;
+      return this;
+    }
+
+    /**
+     * Enable tiled detection builder. Frames of 1280x720 and above are split into overlapping
+     * tiles that are detected on in parallel, one thread and QR code detector per core. Meant for
+     * high resolutions picked through {@link #width(int)} and {@link #height(int)} to read small
+     * or distant codes. Disabled by default.
+     *
+     * @param tiledDetectionEnabled
+     *     the tiled detection enabled
+     * @return the builder
+     */
+    public Builder enableTiledDetection(boolean tiledDetectionEnabled) {
+      this.tiledDetectionEnabled = tiledDetectionEnabled;
+      return this;
+    }
+
+    /**
+     * Enable sharpness gate builder. A cheap focus measure is computed for every frame and frames
+     * much blurrier than the recent average, e.g. while the device is moving, are dropped before
+     * detection. Disabled by default.
+     *
+     * @param sharpnessGateEnabled
+     *     the sharpness gate enabled
+     * @return the builder
+     * @see QREader#getSharpnessGatedFrameCount()
+     * @see QREader#getSharpnessPassedFrameCount()
+     */
+    public Builder enableSharpnessGate(boolean sharpnessGateEnabled) {
+      this.sharpnessGateEnabled = sharpnessGateEnabled;
+      return this;
+    }
+
+    /**
+     * Enable scene change gate builder. Once a code has been read, detection is skipped and the
+     * listener not called again until the scene in front of the camera changes. Meant for devices
+     * pointed at the same code for a long time. Disabled by default.
+     *
+     * @param sceneChangeGateEnabled
+     *     the scene change gate enabled
+     * @return the builder
+     */
+    public Builder enableSceneChangeGate(boolean sceneChangeGateEnabled) {
+      this.sceneChangeGateEnabled = sceneChangeGateEnabled;
+      return this;
+    }
+
+    /**
+     * Enable tracking builder. Once codes are found, the following frames are only detected on
+     * around where the codes are expected, predicted from their last position and motion. Useful
+     * to keep reading a moving code at the cost of a small crop per frame. Disabled by default.
+     *
+     * @param trackingEnabled
+     *     the tracking enabled
+     * @return the builder
+     * @see #trackingMaxMisses(int)
+     */
+    public Builder enableTracking(boolean trackingEnabled) {
+      this.trackingEnabled = trackingEnabled;
+      return this;
+    }
+
+    /**
+     * Tracking max misses builder. Tracking falls back to detecting on the full frame once the
+     * tracked codes are missing from this many frames in a row. Defaults to 5.
+     *
+     * @param trackingMaxMisses
+     *     the tracking max misses
+     * @return the builder
+     */
+    public Builder trackingMaxMisses(int trackingMaxMisses) {
+      if (trackingMaxMisses <= 0) {
+        throw new IllegalArgumentException("trackingMaxMisses must be positive");
+      }
+      this.trackingMaxMisses = trackingMaxMisses;
+      return this;
+    }
+
+    /**
+     * Deduplicate within builder. The listener is called once for each distinct code within the
+     * given time, instead of for every frame the code is seen in. The most recent codes are
+     * remembered. Disabled by default.
+     *
+     * @param duration
+     *     the time window, or 0 to deliver every detection
+     * @param unit
+     *     the unit of the duration
+     * @return the builder
+     */
+    public Builder deduplicateWithin(long duration, TimeUnit unit) {
+      if (duration < 0) {
+        throw new IllegalArgumentException("duration must not be negative");
+      }
+      this.deduplicateWithinMillis = unit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * Require consensus builder. A value is only delivered once it has been decoded identically
+     * in at least the given number of the most recent frames, filtering out misreads of damaged
+     * codes. Disabled by default.
+     *
+     * @param votes
+     *     the number of frames the value must be decoded in, 1 to deliver values decoded once
+     * @param windowFrames
+     *     the number of most recent frames counted, at least the number of votes
+     * @return the builder
+     */
+    public Builder requireConsensus(int votes, int windowFrames) {
+      if (votes <= 0) {
+        throw new IllegalArgumentException("votes must be positive");
+      }
+      if (windowFrames < votes) {
+        throw new IllegalArgumentException("windowFrames must be at least votes");
+      }
+      this.consensusVotes = votes;
+      this.consensusWindowFrames = windowFrames;
+      return this;
+    }
+
+    /**
+     * Reassemble structured append builder. The symbols of a structured append sequence are
+     * collected and delivered as one code once all of them have been seen, instead of one by
+     * one. Up to 4 sequences are collected at the same time, a sequence not completed within the
+     * timeout is dropped. Applies to detectors reporting the sequence header of a symbol.
+     * Disabled by default.
+     *
+     * @param timeout
+     *     the time a sequence has to complete from its first symbol, or 0 to deliver symbols one
+     *     by one
+     * @param unit
+     *     the unit of the timeout
+     * @return the builder
+     * @see QREader#getDroppedSequenceCount()
+     */
+    public Builder reassembleStructuredAppend(long timeout, TimeUnit unit) {
+      if (timeout < 0) {
+        throw new IllegalArgumentException("timeout must not be negative");
+      }
+      this.sequenceTimeoutMillis = unit.toMillis(timeout);
+      return this;
+    }
+
+    /**
+     * Multi data listener builder. The listener receives all codes found in a frame at once,
+     * with their values, raw bytes and corner points.
+     *
+     * @param qrMultiDataListener
+     *     the qr multi data listener
+     * @return the builder
+     */
+    public Builder multiDataListener(QRMultiDataListener qrMultiDataListener) {
+      this.qrMultiDataListener = qrMultiDataListener;
+      return this;
+    }
+
+    /**
+     * Scan result listener builder. The listener receives a result for every code found, with
+     * its raw bytes, format and corner points. String values are only created when asked for.
+     * Can be used alongside the qr data listener.
+     *
+     * @param scanResultListener
+     *     the scan result listener
+     * @return the builder
+     */
+    public Builder scanResultListener(ScanResultListener scanResultListener) {
+      this.scanResultListener = scanResultListener;
+      return this;
+    }
+
+    /**
+     * Deliver on builder. Listeners are called on the given executor instead of the detector
+     * thread, so slow listeners do not hold up detection. Codes found within the batch interval
+     * are delivered together in a single task, still frame by frame to each listener.
+     *
+     * @param executor
+     *     the executor to call the listeners on
+     * @param batchInterval
+     *     the time to collect codes for before delivering them, 0 to deliver as soon as the
+     *     executor gets to it
+     * @param unit
+     *     the unit of the batch interval
+     * @return the builder
+     */
+    public Builder deliverOn(Executor executor, long batchInterval, TimeUnit unit) {
+      if (batchInterval < 0) {
+        throw new IllegalArgumentException("batchInterval must not be negative");
+      }
+      this.deliveryExecutor = executor;
+      this.batchIntervalMillis = unit.toMillis(batchInterval);
+      return this;
+    }
+
+    /**
+     * Deliver on builder. Listeners are called on the thread of the given handler, e.g. one of
+     * the main looper, instead of the detector thread. Codes found within the batch interval are
+     * delivered together in a single message, still frame by frame to each listener.
+     *
+     * @param handler
+     *     the handler to call the listeners on
+     * @param batchInterval
+     *     the time to collect codes for before delivering them, 0 to deliver as soon as the
+     *     handler gets to it
+     * @param unit
+     *     the unit of the batch interval
+     * @return the builder
+     */
+    public Builder deliverOn(Handler handler, long batchInterval, TimeUnit unit) {
+      return deliverOn(ResultDispatcher.executorOf(handler), batchInterval, unit);
+    }
+
+    /**
+     * Backpressure builder. Decides what happens to results while the listeners are still busy
+     * with earlier ones. Setting a policy without {@link #deliverOn(Executor, long, TimeUnit)}
+     * calls the listeners on a thread of their own. When listeners are called on an executor
+     * without a policy, the oldest of 16 queued results is dropped.
+     *
+     * @param policy
+     *     the policy
+     * @param queueCapacity
+     *     the number of frame results to queue while waiting for the executor, not counting
+     *     those collected over the batch interval. Ignored for {@link
+     *     BackpressurePolicy#LATEST_ONLY}
+     * @return the builder
+     * @see QREader#getDroppedResultCount()
+     * @see QREader#getQueuedResultCount()
+     */
+    public Builder backpressure(BackpressurePolicy policy, int queueCapacity) {
+      if (queueCapacity <= 0) {
+        throw new IllegalArgumentException("queueCapacity must be positive");
+      }
+      this.backpressurePolicy = policy;
+      this.queueCapacity = queueCapacity;
+      return this;
+    }
+
+    /**
+     * Formats builder. Sets the barcode formats to detect, in order of priority. The first
+     * formats are detected on every frame, the others only as set through {@link
+     * #formatCascade(int, int)}. Each argument is one of the {@link Barcode} format constants, or
+     * several of them or-ed together to detect them at the same priority. Ignored when a barcode
+     * detector is passed to the builder. QR codes only by default.
+     *
+     * @param formats
+     *     the formats, highest priority first
+     * @return the builder
+     */
+    public Builder formats(int... formats) {
+      if (formats.length == 0) {
+        throw new IllegalArgumentException("At least one format must be given");
+      }
+      for (int format : formats) {
+        if (format == 0) {
+          throw new IllegalArgumentException("Formats must not be 0");
+        }
+      }
+      this.barcodeFormats = formats.clone();
+      return this;
+    }
+
+    /**
+     * Format cascade builder. Sets how often the formats after the first one passed to {@link
+     * #formats(int...)} are detected: on every n-th frame, and on every frame once a number of
+     * frames in a row had no codes. By default every 4th frame and after 3 misses.
+     *
+     * @param everyNthFrame
+     *     the interval in frames, or 0 to only detect them after misses
+     * @param afterMisses
+     *     the number of frames without codes, or 0 to only detect them at the interval
+     * @return the builder
+     */
+    public Builder formatCascade(int everyNthFrame, int afterMisses) {
+      if (everyNthFrame < 0 || afterMisses < 0) {
+        throw new IllegalArgumentException("everyNthFrame and afterMisses must not be negative");
+      }
+      if (everyNthFrame == 0 && afterMisses == 0) {
+        throw new IllegalArgumentException("everyNthFrame or afterMisses must be positive");
+      }
+      this.cascadeEveryNthFrame = everyNthFrame;
+      this.cascadeAfterMisses = afterMisses;
+      return this;
+    }
+
     /**
      * Build QREader
      *
@@ -366,6 +1148,19 @@ public class QREader {
     public void barcodeDetector(BarcodeDetector barcodeDetector) {
       this.barcodeDetector = barcodeDetector;
     }
+
+    /**
+     * Detector builder. Detects with the given detector instead of a Play Services one, e.g. to
+     * run the pipeline on the JVM.
+     *
+     * @param detector
+     *     the detector
+     * @return the builder
+     */
+    Builder detector(Detector<Barcode> detector) {
+      this.barcodeDetector = detector;
+      return this;
+    }
   }
 }
 
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.os.SystemClock;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * A frame source replaying frames recorded to a file, e.g. camera previews dumped in NV21. The
+ * file holds the frames back to back, each starting with its luminance plane.
+ */
+public class RecordedFrameSource extends PacedFrameSource {
+  private final File file;
+  private final int width;
+  private final int height;
+  private final int frameSize;
+  private final boolean loop;
+  private DataInputStream input;
+
+  /**
+   * Instantiates a new Recorded frame source.
+   *
+   * @param file
+   *     the recording
+   * @param width
+   *     the width of the frames
+   * @param height
+   *     the height of the frames
+   * @param frameSize
+   *     the number of bytes per frame in the file, e.g. {@code width * height * 3 / 2} for NV21
+   * @param framesPerSecond
+   *     the frame rate, or 0 to replay as fast as frames are consumed
+   * @param loop
+   *     whether to start over at the end of the file
+   */
+  public RecordedFrameSource(File file, int width, int height, int frameSize,
+      float framesPerSecond, boolean loop) {
+    super("QREader-RecordedFrameSource", new LuminanceBufferPool(3, width * height),
+        framesPerSecond);
+    if (frameSize < width * height) {
+      throw new IllegalArgumentException("frameSize must hold at least width * height bytes");
+    }
+    this.file = file;
+    this.width = width;
+    this.height = height;
+    this.frameSize = frameSize;
+    this.loop = loop;
+  }
+
+  @Override
+  void open() throws IOException {
+    input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+  }
+
+  @Override
+  boolean fill(LuminanceFrame frame, int index) throws IOException {
+    final int lumaSize = width * height;
+    try {
+      input.readFully(frame.getData(), 0, lumaSize);
+    } catch (EOFException e) {
+      if (!loop || index == 0) {
+        return false;
+      }
+      close();
+      open();
+      input.readFully(frame.getData(), 0, lumaSize);
+    }
+    skipFully(frameSize - lumaSize);
+    frame.setMetadata(index, width, height, 0, SystemClock.elapsedRealtime());
+    return true;
+  }
+
+  @Override
+  void close() {
+    if (input != null) {
+      try {
+        input.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      input = null;
+    }
+  }
+
+  private void skipFully(int count) throws IOException {
+    while (count > 0) {
+      final int skipped = input.skipBytes(count);
+      if (skipped <= 0) {
+        return;
+      }
+      count -= skipped;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.graphics.Rect;
+import android.util.SparseArray;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import java.nio.ByteBuffer;
+
+/**
+ * Hands only a sub-rectangle of every frame to detection. Corner points of the results are mapped
+ * back to full-frame coordinates.
+ */
+class RegionOfInterestDetector extends DelegatingDetector {
+  private final float left;
+  private final float top;
+  private final float right;
+  private final float bottom;
+  private final Rect region = new Rect();
+  private int frameWidth;
+  private int frameHeight;
+  private int frameRotation = -1;
+  private byte[] buffer;
+  private ByteBuffer wrappedBuffer;
+
+  /**
+   * Instantiates a new Region of interest detector. The region is given as fractions of the
+   * upright frame.
+   *
+   * @param delegate
+   *     the wrapped detector
+   * @param left
+   *     the left edge
+   * @param top
+   *     the top edge
+   * @param right
+   *     the right edge
+   * @param bottom
+   *     the bottom edge
+   */
+  RegionOfInterestDetector(Detector<Barcode> delegate, float left, float top, float right,
+      float bottom) {
+    super(delegate);
+    this.left = left;
+    this.top = top;
+    this.right = right;
+    this.bottom = bottom;
+  }
+
+  @Override
+  public SparseArray<Barcode> detect(Frame frame) {
+    final Frame.Metadata metadata = frame.getMetadata();
+    final int width = metadata.getWidth();
+    final int height = metadata.getHeight();
+    final int rotation = metadata.getRotation();
+    if (width != frameWidth || height != frameHeight || rotation != frameRotation) {
+      updateRegion(width, height, rotation);
+    }
+    if (region.isEmpty() || (region.width() == width && region.height() == height)) {
+      return delegate.detect(frame);
+    }
+
+    final int regionWidth = region.width();
+    final int regionHeight = region.height();
+    LuminanceFrames.crop(frame.getGrayscaleImageData(), width, region.left, region.top,
+        regionWidth, regionHeight, buffer);
+    final SparseArray<Barcode> barcodes = delegate.detect(
+        LuminanceFrames.wrap(wrappedBuffer, regionWidth, regionHeight, metadata));
+    if (barcodes == SKIPPED_FRAME) {
+      return barcodes;
+    }
+    for (int i = 0; i < barcodes.size(); i++) {
+      LuminanceFrames.mapToFrame(barcodes.valueAt(i), rotation, region.left, region.top, 1,
+          regionWidth, regionHeight, width, height);
+    }
+    return barcodes;
+  }
+
+  private void updateRegion(int width, int height, int rotation) {
+    frameWidth = width;
+    frameHeight = height;
+    frameRotation = rotation;
+    LuminanceFrames.toSensorRect(left, top, right, bottom, rotation, width, height, region);
+    final int size = region.width() * region.height();
+    if (buffer == null || buffer.length != size) {
+      buffer = new byte[size];
+      wrappedBuffer = ByteBuffer.wrap(buffer);
+    }
+  }
+}
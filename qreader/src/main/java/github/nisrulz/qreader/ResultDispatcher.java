@@ -0,0 +1,397 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.os.Handler;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands detected codes to the listeners.
+ * <p>
+ * Without an executor the listeners are called right away on the detector thread. With one, the
+ * results of each frame are queued, collected over the batch interval and delivered together in
+ * a single task on the executor, so the detector thread does not wait for the listeners. Within
+ * the task the listeners are still called frame by frame: the single value listener with the
+ * first code of each frame, the multi listener with all codes of each frame and the scan result
+ * listener once per code.
+ * <p>
+ * The {@link BackpressurePolicy} decides what happens to results arriving while the queue is
+ * full. Frames collected while the batch interval runs are not counted against the capacity, as
+ * holding them is what batching asks for; the queue only fills up with frames arriving while
+ * the executor has not got to a delivery yet.
+ * <p>
+ * Two batches are swapped between the detector and the delivery side and a single task object is
+ * reused, so delivery does not allocate per detection apart from the results of a scan result
+ * listener.
+ */
+class ResultDispatcher {
+  private final QRDataListener qrDataListener;
+  private final QRMultiDataListener qrMultiDataListener;
+  private final ScanResultListener scanResultListener;
+  private final Executor executor;
+  private final ExecutorService ownedExecutor;
+  private final long batchIntervalMillis;
+  private final BackpressurePolicy policy;
+  private final int capacity;
+  private final ScheduledExecutorService timer;
+  private final Object lock = new Object();
+  private Batch pending = new Batch();
+  private Batch delivering = new Batch();
+  private final DetectedCodes frameCodes = new DetectedCodes();
+  private boolean deliveryScheduled;
+  private boolean batchWindowOpen;
+  private boolean released;
+  private boolean stopping;
+  private long droppedResultCount;
+
+  private final Runnable deliverTask = new Runnable() {
+    @Override
+    public void run() {
+      deliverPending();
+    }
+  };
+
+  private final Runnable submitTask = new Runnable() {
+    @Override
+    public void run() {
+      synchronized (lock) {
+        batchWindowOpen = false;
+      }
+      executor.execute(deliverTask);
+    }
+  };
+
+  /**
+   * Instantiates a new Result dispatcher.
+   *
+   * @param qrDataListener
+   *     the listener for single values, or null
+   * @param qrMultiDataListener
+   *     the listener for all codes at once, or null
+   * @param scanResultListener
+   *     the listener for the result of each code, or null
+   * @param executor
+   *     the executor to deliver on, or null to deliver on the detector thread unless a policy is
+   *     given
+   * @param batchIntervalMillis
+   *     the time to collect codes for before delivering them, 0 to deliver as soon as the
+   *     executor gets to it
+   * @param policy
+   *     the policy for a full queue, or null for the default. Without an executor, a policy
+   *     makes delivery run on a thread of its own.
+   * @param capacity
+   *     the number of frame results the queue holds besides those collected over the batch
+   *     interval
+   */
+  ResultDispatcher(QRDataListener qrDataListener, QRMultiDataListener qrMultiDataListener,
+      ScanResultListener scanResultListener,
+      Executor executor, long batchIntervalMillis, BackpressurePolicy policy, int capacity) {
+    this.qrDataListener = qrDataListener;
+    this.qrMultiDataListener = qrMultiDataListener;
+    this.scanResultListener = scanResultListener;
+    if (executor == null && policy != null) {
+      ownedExecutor = Executors.newSingleThreadExecutor(daemonThreads("QREader-Delivery"));
+      executor = ownedExecutor;
+    }
+    else {
+      ownedExecutor = null;
+    }
+    this.executor = executor;
+    this.batchIntervalMillis = batchIntervalMillis;
+    this.policy = policy == null ? BackpressurePolicy.DROP_OLDEST : policy;
+    this.capacity = this.policy == BackpressurePolicy.LATEST_ONLY ? 1 : capacity;
+    this.timer = executor != null && batchIntervalMillis > 0
+        ? Executors.newSingleThreadScheduledExecutor(daemonThreads("QREader-Dispatch")) : null;
+  }
+
+  /**
+   * Wraps a handler in an executor posting to it.
+   *
+   * @param handler
+   *     the handler
+   * @return the executor
+   */
+  static Executor executorOf(final Handler handler) {
+    return new Executor() {
+      @Override
+      public void execute(Runnable runnable) {
+        handler.post(runnable);
+      }
+    };
+  }
+
+  /**
+   * Gets whether any listener is set.
+   *
+   * @return true if there is a listener to dispatch to
+   */
+  boolean hasListeners() {
+    return qrDataListener != null || qrMultiDataListener != null || scanResultListener != null;
+  }
+
+  /**
+   * Dispatches the codes of a frame. The codes are copied, the instance can be reused right
+   * after.
+   *
+   * @param codes
+   *     the codes, not empty
+   */
+  void dispatch(DetectedCodes codes) {
+    if (executor == null) {
+      deliver(codes);
+      return;
+    }
+    synchronized (lock) {
+      if (released) {
+        return;
+      }
+      if (isCounted() && isFull()) {
+        switch (policy) {
+          case BLOCK:
+            try {
+              while (isCounted() && isFull() && !released && !stopping) {
+                lock.wait();
+              }
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              droppedResultCount++;
+              return;
+            }
+            if (released) {
+              return;
+            }
+            if (stopping && isCounted() && isFull()) {
+              droppedResultCount++;
+              return;
+            }
+            break;
+          case DROP_NEWEST:
+            droppedResultCount++;
+            return;
+          case DROP_OLDEST:
+            pending.removeOldestCountedFrame();
+            droppedResultCount++;
+            break;
+          case LATEST_ONLY:
+            droppedResultCount += pending.frameCount;
+            pending.clear();
+            break;
+        }
+      }
+      pending.add(codes, isCounted());
+      if (!deliveryScheduled) {
+        deliveryScheduled = true;
+        scheduleDelivery();
+      }
+    }
+  }
+
+  /**
+   * Gets the number of frame results dropped because the queue was full.
+   *
+   * @return the dropped result count
+   */
+  long getDroppedResultCount() {
+    synchronized (lock) {
+      return droppedResultCount;
+    }
+  }
+
+  /**
+   * Gets the number of frame results waiting for delivery.
+   *
+   * @return the queued result count
+   */
+  int getQueuedResultCount() {
+    synchronized (lock) {
+      return pending.frameCount;
+    }
+  }
+
+  /**
+   * Sets whether the reader is stopping. While it is, a detection does not wait for room in a
+   * full queue but drops its results, so the threads detecting can be joined even when the
+   * listeners are called on the thread joining them.
+   *
+   * @param stopping
+   *     true before stopping the camera, false when starting it again
+   */
+  void setStopping(boolean stopping) {
+    synchronized (lock) {
+      this.stopping = stopping;
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * Stops delivering, codes not delivered yet are dropped.
+   */
+  void release() {
+    synchronized (lock) {
+      released = true;
+      pending.clear();
+      lock.notifyAll();
+    }
+    if (timer != null) {
+      timer.shutdownNow();
+    }
+    if (ownedExecutor != null) {
+      ownedExecutor.shutdown();
+    }
+  }
+
+  private void deliverPending() {
+    synchronized (lock) {
+      final Batch batch = pending;
+      pending = delivering;
+      delivering = batch;
+      // Room in the queue again
+      lock.notifyAll();
+    }
+    try {
+      int code = 0;
+      for (int frame = 0; frame < delivering.frameCount; frame++) {
+        frameCodes.clear();
+        final int end = code + delivering.codeCounts[frame];
+        for (; code < end; code++) {
+          frameCodes.add(delivering.codes.getBarcode(code));
+        }
+        deliver(frameCodes);
+      }
+    } finally {
+      frameCodes.clear();
+      delivering.clear();
+      synchronized (lock) {
+        // Only one delivery at a time, the next one is scheduled once this one is done
+        deliveryScheduled = pending.frameCount != 0 && !released;
+        if (deliveryScheduled) {
+          scheduleDelivery();
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets whether a frame dispatched now counts against the capacity. Frames collected over the
+   * batch interval, including the one scheduling a delivery and so starting it, do not. Latest
+   * only keeps a single frame, batching or not.
+   */
+  private boolean isCounted() {
+    final boolean batched = batchWindowOpen || !deliveryScheduled && timer != null;
+    return !batched || policy == BackpressurePolicy.LATEST_ONLY;
+  }
+
+  private boolean isFull() {
+    return pending.countedFrameCount >= capacity;
+  }
+
+  private void scheduleDelivery() {
+    if (timer != null) {
+      batchWindowOpen = true;
+      timer.schedule(submitTask, batchIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+    else {
+      executor.execute(deliverTask);
+    }
+  }
+
+  private void deliver(DetectedCodes codes) {
+    if (qrDataListener != null) {
+      qrDataListener.onDetected(codes.getDisplayValue(0));
+    }
+    if (qrMultiDataListener != null) {
+      qrMultiDataListener.onDetected(codes);
+    }
+    deliverScanResults(codes);
+  }
+
+  private void deliverScanResults(DetectedCodes codes) {
+    if (scanResultListener != null) {
+      for (int i = 0; i < codes.size(); i++) {
+        scanResultListener.onDetected(new ScanResult(codes.getBarcode(i)));
+      }
+    }
+  }
+
+  private static ThreadFactory daemonThreads(final String name) {
+    return new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+
+  /**
+   * The results of the frames collected for one delivery: all their codes, plus the number of
+   * codes of each frame and whether it counts against the capacity.
+   */
+  private static final class Batch {
+    final DetectedCodes codes = new DetectedCodes();
+    int[] codeCounts = new int[4];
+    boolean[] counted = new boolean[4];
+    int frameCount;
+    int countedFrameCount;
+
+    void add(DetectedCodes frameCodes, boolean countedFrame) {
+      for (int i = 0; i < frameCodes.size(); i++) {
+        codes.add(frameCodes.getBarcode(i));
+      }
+      if (frameCount == codeCounts.length) {
+        final int[] grownCounts = new int[frameCount * 2];
+        System.arraycopy(codeCounts, 0, grownCounts, 0, frameCount);
+        codeCounts = grownCounts;
+        final boolean[] grownCounted = new boolean[frameCount * 2];
+        System.arraycopy(counted, 0, grownCounted, 0, frameCount);
+        counted = grownCounted;
+      }
+      codeCounts[frameCount] = frameCodes.size();
+      counted[frameCount] = countedFrame;
+      frameCount++;
+      if (countedFrame) {
+        countedFrameCount++;
+      }
+    }
+
+    void removeOldestCountedFrame() {
+      int frame = 0;
+      int code = 0;
+      while (!counted[frame]) {
+        code += codeCounts[frame];
+        frame++;
+      }
+      codes.remove(code, codeCounts[frame]);
+      System.arraycopy(codeCounts, frame + 1, codeCounts, frame, frameCount - frame - 1);
+      System.arraycopy(counted, frame + 1, counted, frame, frameCount - frame - 1);
+      frameCount--;
+      countedFrameCount--;
+    }
+
+    void clear() {
+      codes.clear();
+      frameCount = 0;
+      countedFrameCount = 0;
+    }
+  }
+}
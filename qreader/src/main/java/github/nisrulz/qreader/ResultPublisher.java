@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Publishes the display value of every detected code to the subscribers with outstanding demand.
+ * <p>
+ * This is a hot source: values are only produced while a subscriber asks for them, a subscriber
+ * without demand misses the values detected meanwhile. Without listeners, {@link #hasDemand()}
+ * tells the detector chain to skip frames until a subscriber asks for more.
+ */
+class ResultPublisher implements Publisher<String> {
+  private final CopyOnWriteArrayList<ResultSubscription> subscriptions =
+      new CopyOnWriteArrayList<>();
+
+  @Override
+  public void subscribe(Subscriber<? super String> subscriber) {
+    if (subscriber == null) {
+      throw new NullPointerException("subscriber == null");
+    }
+    final ResultSubscription subscription = new ResultSubscription(subscriber);
+    subscriber.onSubscribe(subscription);
+    if (!subscription.cancelled) {
+      subscriptions.add(subscription);
+    }
+  }
+
+  /**
+   * Gets whether any subscriber has outstanding demand.
+   *
+   * @return true if a detected value would be delivered
+   */
+  boolean hasDemand() {
+    for (ResultSubscription subscription : subscriptions) {
+      if (subscription.demand.get() > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets whether there are subscribers.
+   *
+   * @return true if values are published to anyone
+   */
+  boolean hasSubscribers() {
+    return !subscriptions.isEmpty();
+  }
+
+  /**
+   * Publishes the display values of the codes of a frame.
+   *
+   * @param codes
+   *     the codes
+   */
+  void publish(DetectedCodes codes) {
+    for (int i = 0; i < codes.size(); i++) {
+      publish(codes.getDisplayValue(i));
+    }
+  }
+
+  /**
+   * Publishes a value to every subscriber with outstanding demand.
+   *
+   * @param value
+   *     the value
+   */
+  void publish(String value) {
+    for (ResultSubscription subscription : subscriptions) {
+      subscription.emit(value);
+    }
+  }
+
+  private final class ResultSubscription implements Subscription {
+    private final Subscriber<? super String> subscriber;
+    final AtomicLong demand = new AtomicLong();
+    volatile boolean cancelled;
+
+    ResultSubscription(Subscriber<? super String> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        signalError(new IllegalArgumentException("request must be positive, was " + n));
+        return;
+      }
+      long current;
+      long updated;
+      do {
+        current = demand.get();
+        if (current == Long.MAX_VALUE) {
+          return;
+        }
+        updated = current + n < 0 ? Long.MAX_VALUE : current + n;
+      } while (!demand.compareAndSet(current, updated));
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      subscriptions.remove(this);
+    }
+
+    synchronized void emit(String value) {
+      if (cancelled) {
+        return;
+      }
+      long current;
+      do {
+        current = demand.get();
+        if (current == 0) {
+          return;
+        }
+      } while (current != Long.MAX_VALUE && !demand.compareAndSet(current, current - 1));
+      subscriber.onNext(value);
+    }
+
+    private synchronized void signalError(Throwable error) {
+      if (cancelled) {
+        return;
+      }
+      cancel();
+      subscriber.onError(error);
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.graphics.Point;
+import com.google.android.gms.vision.barcode.Barcode;
+import java.nio.charset.Charset;
+
+/**
+ * A detected code, with its raw bytes, format and corner points.
+ * <p>
+ * The string, byte and parsed views of the value are only created when asked for and cached
+ * after, so listeners only pay for the views they use. A result can be kept after the listener
+ * call.
+ */
+public final class ScanResult {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final int format;
+  private final int valueFormat;
+  private final Point[] cornerPoints;
+  private final Barcode barcode;
+  private final DecodedBarcode decoded;
+  private byte[] rawBytes;
+  private String rawValue;
+  private String displayValue;
+  private Payload payload;
+
+  /**
+   * Instantiates a new Scan result from a barcode returned by a detector. The Play Services
+   * detector reports text, which is kept as is; a code read by the built-in decoder keeps its
+   * bytes and has its text decoded on the first call asking for it. The barcode is kept for the
+   * structured fields the Play Services detector fills in.
+   *
+   * @param barcode
+   *     the barcode
+   */
+  ScanResult(Barcode barcode) {
+    this.barcode = barcode;
+    if (barcode instanceof DecodedBarcode) {
+      this.decoded = (DecodedBarcode) barcode;
+      this.rawBytes = decoded.rawBytes;
+    }
+    else {
+      this.decoded = null;
+      this.rawValue = barcode.rawValue;
+      this.displayValue = barcode.displayValue;
+    }
+    this.format = barcode.format;
+    this.valueFormat = barcode.valueFormat;
+    this.cornerPoints = barcode.cornerPoints;
+  }
+
+  /**
+   * Gets the raw bytes of the code. Encoded as UTF-8 from the raw value on the first call when
+   * the detector only reported text.
+   *
+   * @return the raw bytes, or null if the code has no value
+   */
+  public byte[] getRawBytes() {
+    if (rawBytes == null && rawValue != null) {
+      rawBytes = rawValue.getBytes(UTF_8);
+    }
+    return rawBytes;
+  }
+
+  /**
+   * Gets the value of the code as encoded. Decoded from the raw bytes on the first call when the
+   * detector only reported bytes.
+   *
+   * @return the raw value, or null if the code has no value
+   */
+  public String getRawValue() {
+    if (rawValue == null && decoded != null) {
+      rawValue = DecodedBarcode.rawValueOf(decoded);
+    }
+    return rawValue;
+  }
+
+  /**
+   * Gets the value of the code as shown to the user, the raw value unless the detector
+   * reported otherwise.
+   *
+   * @return the display value, or null if the code has no value
+   */
+  public String getDisplayValue() {
+    if (displayValue == null) {
+      displayValue = getRawValue();
+    }
+    return displayValue;
+  }
+
+  /**
+   * Gets the format of the code, one of the {@link Barcode} format constants.
+   *
+   * @return the format
+   */
+  public int getFormat() {
+    return format;
+  }
+
+  /**
+   * Gets the kind of value as reported by the detector, one of the {@link Barcode} value format
+   * constants.
+   *
+   * @return the value format, or 0 if unknown
+   */
+  public int getValueFormat() {
+    return valueFormat;
+  }
+
+  /**
+   * Gets the parsed value. Built on the first call, so codes that are never inspected cost
+   * nothing. Taken from the structured fields the Play Services detector filled in, if any, and
+   * parsed from the raw value otherwise.
+   *
+   * @return the payload, or null if the code has no value
+   * @see Payload#getType()
+   */
+  public Payload getPayload() {
+    if (payload == null) {
+      payload = decoded != null ? PayloadParser.parse(getRawValue(), valueFormat)
+          : PayloadParser.fromBarcode(barcode, getRawValue());
+    }
+    return payload;
+  }
+
+  /**
+   * Gets the corner points of the code in frame coordinates, clockwise from the top left of the
+   * code.
+   *
+   * @return the corner points
+   */
+  public Point[] getCornerPoints() {
+    return cornerPoints;
+  }
+}
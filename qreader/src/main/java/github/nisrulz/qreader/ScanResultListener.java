@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+/**
+ * The interface Scan result listener.
+ */
+public interface ScanResultListener {
+
+  /**
+   * On detected. Called once for every code found in a frame.
+   *
+   * @param result
+   *     the result, can be kept after the call
+   */
+  // Called on the executor or handler set with Builder#deliverOn, otherwise on the detector thread
+  void onDetected(ScanResult result);
+}
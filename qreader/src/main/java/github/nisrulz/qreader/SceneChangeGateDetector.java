@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.util.SparseArray;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import java.nio.ByteBuffer;
+
+/**
+ * Skips detection on a static scene once a code has been found in it.
+ * <p>
+ * Every frame is reduced to a 16x16 thumbnail, hashed to one bit per cell (brighter than the
+ * thumbnail mean or not). After a detection found a code, frames whose hash is within a few bits
+ * of the last detected frame are dropped until the scene changes.
+ */
+class SceneChangeGateDetector extends DelegatingDetector {
+  private static final int GRID_SIZE = 16;
+  private static final int CELL_COUNT = GRID_SIZE * GRID_SIZE;
+  private static final int SAMPLES_PER_CELL_SIDE = 4;
+  /**
+   * Hashes differing in at most this many of the 256 bits show the same scene.
+   */
+  private static final int MAX_UNCHANGED_DISTANCE = 8;
+
+  private final int[] cells = new int[CELL_COUNT];
+  private final long[] hash = new long[CELL_COUNT / 64];
+  private final long[] detectedHash = new long[CELL_COUNT / 64];
+  private boolean codeInScene;
+
+  /**
+   * Instantiates a new Scene change gate detector.
+   *
+   * @param delegate
+   *     the wrapped detector
+   */
+  SceneChangeGateDetector(Detector<Barcode> delegate) {
+    super(delegate);
+  }
+
+  @Override
+  public SparseArray<Barcode> detect(Frame frame) {
+    final Frame.Metadata metadata = frame.getMetadata();
+    computeHash(frame.getGrayscaleImageData(), metadata.getWidth(), metadata.getHeight());
+    if (codeInScene && distance(hash, detectedHash) <= MAX_UNCHANGED_DISTANCE) {
+      return SKIPPED_FRAME;
+    }
+
+    final SparseArray<Barcode> barcodes = delegate.detect(frame);
+    if (barcodes == SKIPPED_FRAME) {
+      return barcodes;
+    }
+    codeInScene = barcodes.size() != 0;
+    System.arraycopy(hash, 0, detectedHash, 0, hash.length);
+    return barcodes;
+  }
+
+  private void computeHash(ByteBuffer data, int width, int height) {
+    long total = 0;
+    for (int cellY = 0; cellY < GRID_SIZE; cellY++) {
+      final int top = cellY * height / GRID_SIZE;
+      final int bottom = (cellY + 1) * height / GRID_SIZE;
+      final int stepY = Math.max(1, (bottom - top) / SAMPLES_PER_CELL_SIDE);
+      for (int cellX = 0; cellX < GRID_SIZE; cellX++) {
+        final int left = cellX * width / GRID_SIZE;
+        final int right = (cellX + 1) * width / GRID_SIZE;
+        final int stepX = Math.max(1, (right - left) / SAMPLES_PER_CELL_SIDE);
+        int sum = 0;
+        int count = 0;
+        for (int y = top; y < bottom; y += stepY) {
+          for (int x = left; x < right; x += stepX) {
+            sum += data.get(y * width + x) & 0xff;
+            count++;
+          }
+        }
+        final int cell = count == 0 ? 0 : sum / count;
+        cells[cellY * GRID_SIZE + cellX] = cell;
+        total += cell;
+      }
+    }
+
+    final long mean = total / CELL_COUNT;
+    for (int i = 0; i < hash.length; i++) {
+      hash[i] = 0;
+    }
+    for (int i = 0; i < CELL_COUNT; i++) {
+      if (cells[i] > mean) {
+        hash[i >> 6] |= 1L << (i & 63);
+      }
+    }
+  }
+
+  private static int distance(long[] a, long[] b) {
+    int distance = 0;
+    for (int i = 0; i < a.length; i++) {
+      distance += Long.bitCount(a[i] ^ b[i]);
+    }
+    return distance;
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.util.SparseArray;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import com.google.android.gms.vision.barcode.BarcodeDetector;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A reader's handle on a detector shared through the {@link DetectorPool}.
+ * <p>
+ * Releasing the handle, e.g. when the camera source is released, only gives the reader's share
+ * back to the pool. The pool frees the detector once no reader uses it anymore.
+ */
+class SharedDetector extends Detector<Barcode> {
+  private final BarcodeDetector detector;
+  private final int formats;
+  private final AtomicBoolean released = new AtomicBoolean();
+
+  /**
+   * Instantiates a new Shared detector.
+   *
+   * @param detector
+   *     the shared detector
+   * @param formats
+   *     the barcode formats the detector was acquired for
+   */
+  SharedDetector(BarcodeDetector detector, int formats) {
+    this.detector = detector;
+    this.formats = formats;
+  }
+
+  @Override
+  public SparseArray<Barcode> detect(Frame frame) {
+    return detector.detect(frame);
+  }
+
+  @Override
+  public boolean isOperational() {
+    return detector.isOperational();
+  }
+
+  @Override
+  public boolean setFocus(int id) {
+    return detector.setFocus(id);
+  }
+
+  /**
+   * Gives the share back to the pool, only the first call counts.
+   */
+  @Override
+  public void release() {
+    super.release();
+    if (released.compareAndSet(false, true)) {
+      DetectorPool.release(formats);
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.util.SparseArray;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drops blurry frames before detection.
+ * <p>
+ * The focus measure is the variance of the Laplacian on a subsampled luminance plane. A frame
+ * passes when its measure reaches a share of the running average, so the threshold follows the
+ * scene and lighting instead of being an absolute value.
+ */
+class SharpnessGateDetector extends DelegatingDetector {
+  private static final int SAMPLE_STEP = 4;
+  private static final float PASS_RATIO = 0.7f;
+  private static final float AVERAGE_SMOOTHING = 0.1f;
+  /**
+   * Let a frame through after this many gated ones, in case the scene itself lost detail.
+   */
+  private static final int MAX_CONSECUTIVE_GATED = 15;
+
+  private final AtomicLong gatedFrameCount = new AtomicLong();
+  private final AtomicLong passedFrameCount = new AtomicLong();
+  private float averageSharpness;
+  private int consecutiveGated;
+
+  /**
+   * Instantiates a new Sharpness gate detector.
+   *
+   * @param delegate
+   *     the wrapped detector
+   */
+  SharpnessGateDetector(Detector<Barcode> delegate) {
+    super(delegate);
+  }
+
+  @Override
+  public SparseArray<Barcode> detect(Frame frame) {
+    final Frame.Metadata metadata = frame.getMetadata();
+    final float sharpness =
+        laplacianVariance(frame.getGrayscaleImageData(), metadata.getWidth(),
+            metadata.getHeight());
+    final boolean pass = averageSharpness == 0 || sharpness >= PASS_RATIO * averageSharpness
+        || consecutiveGated >= MAX_CONSECUTIVE_GATED;
+    averageSharpness = averageSharpness == 0 ? sharpness
+        : averageSharpness + AVERAGE_SMOOTHING * (sharpness - averageSharpness);
+
+    if (!pass) {
+      consecutiveGated++;
+      gatedFrameCount.incrementAndGet();
+      return SKIPPED_FRAME;
+    }
+    consecutiveGated = 0;
+    passedFrameCount.incrementAndGet();
+    return delegate.detect(frame);
+  }
+
+  /**
+   * Gets the number of frames dropped as blurry.
+   *
+   * @return the gated frame count
+   */
+  long getGatedFrameCount() {
+    return gatedFrameCount.get();
+  }
+
+  /**
+   * Gets the number of frames sharp enough to be detected on.
+   *
+   * @return the passed frame count
+   */
+  long getPassedFrameCount() {
+    return passedFrameCount.get();
+  }
+
+  /**
+   * Computes the variance of the 4-neighbour Laplacian, sampling every {@link #SAMPLE_STEP}th
+   * pixel in both directions.
+   */
+  private static float laplacianVariance(ByteBuffer data, int width, int height) {
+    long sum = 0;
+    long sumOfSquares = 0;
+    int count = 0;
+    for (int y = SAMPLE_STEP; y < height - SAMPLE_STEP; y += SAMPLE_STEP) {
+      final int row = y * width;
+      for (int x = SAMPLE_STEP; x < width - SAMPLE_STEP; x += SAMPLE_STEP) {
+        final int index = row + x;
+        final int laplacian = 4 * (data.get(index) & 0xff)
+            - (data.get(index - SAMPLE_STEP) & 0xff)
+            - (data.get(index + SAMPLE_STEP) & 0xff)
+            - (data.get(index - SAMPLE_STEP * width) & 0xff)
+            - (data.get(index + SAMPLE_STEP * width) & 0xff);
+        sum += laplacian;
+        sumOfSquares += laplacian * laplacian;
+        count++;
+      }
+    }
+    if (count == 0) {
+      return 0;
+    }
+    final float mean = (float) sum / count;
+    return (float) sumOfSquares / count - mean * mean;
+  }
+}
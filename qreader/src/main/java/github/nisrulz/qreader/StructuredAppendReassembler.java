@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import com.google.android.gms.vision.barcode.Barcode;
+import github.nisrulz.qreader.decoder.QRCodeResult;
+
+/**
+ * Joins the symbols of structured append sequences into one code.
+ * <p>
+ * Sequences are told apart by their parity and symbol count and kept in a fixed table of slots,
+ * holding every symbol seen so far. Once all symbols are there, their bytes are copied into one
+ * array of the joined size, each run of bytes keeping the character set its symbol was decoded
+ * with, and decoded once. Sequences not completed within the timeout, or evicted to make room
+ * for a newer one, are dropped.
+ */
+final class StructuredAppendReassembler {
+  /**
+   * The most symbols a QR code sequence can have.
+   */
+  static final int MAX_SEQUENCE_COUNT = 16;
+
+  private final long timeoutMillis;
+  private final boolean[] used;
+  private final int[] parities;
+  private final int[] counts;
+  private final int[] receivedMasks;
+  private final long[] startedAt;
+  private final DecodedBarcode[][] parts;
+  private final QRCodeResult[] results = new QRCodeResult[MAX_SEQUENCE_COUNT];
+  private long droppedSequenceCount;
+
+  /**
+   * Instantiates a new Structured append reassembler.
+   *
+   * @param capacity
+   *     the number of sequences collected at the same time
+   * @param timeoutMillis
+   *     the time in milliseconds a sequence has from its first symbol to complete
+   */
+  StructuredAppendReassembler(int capacity, long timeoutMillis) {
+    this.timeoutMillis = timeoutMillis;
+    this.used = new boolean[capacity];
+    this.parities = new int[capacity];
+    this.counts = new int[capacity];
+    this.receivedMasks = new int[capacity];
+    this.startedAt = new long[capacity];
+    this.parts = new DecodedBarcode[capacity][MAX_SEQUENCE_COUNT];
+  }
+
+  /**
+   * Adds a symbol of a sequence.
+   *
+   * @param part
+   *     the symbol
+   * @param nowMillis
+   *     the current time in milliseconds
+   * @return the joined code if this symbol completed its sequence, null otherwise
+   */
+  synchronized DecodedBarcode offer(DecodedBarcode part, long nowMillis) {
+    final int count = part.sequenceCount;
+    if (count <= 0 || count > MAX_SEQUENCE_COUNT || part.sequenceIndex >= count
+        || part.rawBytes == null) {
+      return null;
+    }
+    expire(nowMillis);
+
+    final int slot = slotFor(part.sequenceParity, count, nowMillis);
+    final int bit = 1 << part.sequenceIndex;
+    if ((receivedMasks[slot] & bit) == 0) {
+      parts[slot][part.sequenceIndex] = part;
+      receivedMasks[slot] |= bit;
+    }
+    if (receivedMasks[slot] != (1 << count) - 1) {
+      return null;
+    }
+
+    final DecodedBarcode joined = join(slot, part);
+    free(slot);
+    return joined;
+  }
+
+  /**
+   * Gets the number of sequences dropped before they were complete.
+   *
+   * @return the dropped sequence count
+   */
+  synchronized long getDroppedSequenceCount() {
+    return droppedSequenceCount;
+  }
+
+  private int slotFor(int parity, int count, long nowMillis) {
+    int free = -1;
+    int oldest = 0;
+    for (int i = 0; i < used.length; i++) {
+      if (!used[i]) {
+        if (free < 0) {
+          free = i;
+        }
+      }
+      else if (parities[i] == parity && counts[i] == count) {
+        return i;
+      }
+      else if (startedAt[i] < startedAt[oldest]) {
+        oldest = i;
+      }
+    }
+
+    final int slot;
+    if (free >= 0) {
+      slot = free;
+    }
+    else {
+      // Table full, the sequence collected for the longest time makes room
+      free(oldest);
+      droppedSequenceCount++;
+      slot = oldest;
+    }
+    used[slot] = true;
+    parities[slot] = parity;
+    counts[slot] = count;
+    startedAt[slot] = nowMillis;
+    return slot;
+  }
+
+  private void expire(long nowMillis) {
+    for (int i = 0; i < used.length; i++) {
+      if (used[i] && nowMillis - startedAt[i] >= timeoutMillis) {
+        free(i);
+        droppedSequenceCount++;
+      }
+    }
+  }
+
+  private DecodedBarcode join(int slot, DecodedBarcode lastPart) {
+    final DecodedBarcode[] slotParts = parts[slot];
+    final int count = counts[slot];
+    final DecodedBarcode joined = new DecodedBarcode();
+    joined.format = Barcode.QR_CODE;
+    // Unknown, the payload parser looks at the joined text
+    joined.valueFormat = 0;
+    joined.cornerPoints = lastPart.cornerPoints;
+
+    boolean decoded = true;
+    for (int i = 0; i < count; i++) {
+      results[i] = slotParts[i].result;
+      decoded &= results[i] != null;
+    }
+    if (decoded) {
+      // Each symbol's text decoded with its own character sets if asked for
+      joined.result = QRCodeResult.join(results, count);
+      joined.rawBytes = joined.result.getBytes();
+    }
+    else {
+      int length = 0;
+      for (int i = 0; i < count; i++) {
+        length += slotParts[i].rawBytes.length;
+      }
+      final byte[] bytes = new byte[length];
+      int offset = 0;
+      for (int i = 0; i < count; i++) {
+        System.arraycopy(slotParts[i].rawBytes, 0, bytes, offset, slotParts[i].rawBytes.length);
+        offset += slotParts[i].rawBytes.length;
+      }
+      // Decoded as UTF-8 if asked for
+      joined.rawBytes = bytes;
+    }
+    for (int i = 0; i < count; i++) {
+      results[i] = null;
+    }
+    return joined;
+  }
+
+  private void free(int slot) {
+    used[slot] = false;
+    receivedMasks[slot] = 0;
+    final DecodedBarcode[] slotParts = parts[slot];
+    for (int i = 0; i < slotParts.length; i++) {
+      slotParts[i] = null;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.os.SystemClock;
+
+/**
+ * A frame source generating frames in plain Java. Runs without a device, which makes it useful
+ * to load-test the scanning pipeline from unit tests.
+ */
+public class SyntheticFrameSource extends PacedFrameSource {
+  private final int width;
+  private final int height;
+  private final Generator generator;
+
+  /**
+   * The interface Generator.
+   */
+  public interface Generator {
+
+    /**
+     * Draws the content of a frame.
+     *
+     * @param data
+     *     the luminance buffer to draw into, row after row
+     * @param width
+     *     the width of the frame
+     * @param height
+     *     the height of the frame
+     * @param index
+     *     the index of the frame since start
+     */
+    void generate(byte[] data, int width, int height, int index);
+  }
+
+  /**
+   * Instantiates a new Synthetic frame source drawing a moving gradient, with a pool of three
+   * frames.
+   *
+   * @param width
+   *     the width
+   * @param height
+   *     the height
+   * @param framesPerSecond
+   *     the frame rate, or 0 to produce frames as fast as they are consumed
+   */
+  public SyntheticFrameSource(int width, int height, float framesPerSecond) {
+    this(width, height, framesPerSecond, 3, new Generator() {
+      @Override
+      public void generate(byte[] data, int width, int height, int index) {
+        int i = 0;
+        for (int y = 0; y < height; y++) {
+          for (int x = 0; x < width; x++) {
+            data[i++] = (byte) (x + y + index);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Instantiates a new Synthetic frame source.
+   *
+   * @param width
+   *     the width
+   * @param height
+   *     the height
+   * @param framesPerSecond
+   *     the frame rate, or 0 to produce frames as fast as they are consumed
+   * @param poolSize
+   *     the number of pooled frames
+   * @param generator
+   *     the generator drawing the frames
+   */
+  public SyntheticFrameSource(int width, int height, float framesPerSecond, int poolSize,
+      Generator generator) {
+    super("QREader-SyntheticFrameSource", new LuminanceBufferPool(poolSize, width * height),
+        framesPerSecond);
+    this.width = width;
+    this.height = height;
+    this.generator = generator;
+  }
+
+  @Override
+  boolean fill(LuminanceFrame frame, int index) {
+    generator.generate(frame.getData(), width, height, index);
+    frame.setMetadata(index, width, height, 0, SystemClock.elapsedRealtime());
+    return true;
+  }
+}
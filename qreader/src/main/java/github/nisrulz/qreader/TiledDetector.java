@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.content.Context;
+import android.graphics.Point;
+import android.util.Log;
+import android.util.SparseArray;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits large frames into overlapping tiles and detects on them in parallel, one barcode detector
+ * per thread. Codes found on several tiles are reported once.
+ * <p>
+ * A barcode detector serializes its own calls, so running tiles in parallel needs as many
+ * detectors as threads. The wrapped detector is one of them, the others are owned by this stage.
+ * They are built one after the other on a thread of their own as soon as the stage is created,
+ * so neither the thread setting up the chain nor the first frames wait for their native
+ * initialization. Each detector only joins the tiles once it is operational; until then tiles
+ * take turns on the detectors that are.
+ */
+class TiledDetector extends DelegatingDetector {
+  /**
+   * Frames smaller than this are detected on as a whole.
+   */
+  private static final int MIN_TILED_PIXELS = 1280 * 720;
+  /**
+   * The share of a tile's size it overlaps with its neighbours.
+   */
+  private static final float TILE_OVERLAP = 0.25f;
+
+  private final String LOGTAG = getClass().getSimpleName();
+  private final List<Detector<Barcode>> ownedDetectors = new ArrayList<>();
+  private final BlockingQueue<Detector<Barcode>> idleDetectors;
+  private final ExecutorService executor;
+  private final int threadCount;
+  private final List<Tile> tiles = new ArrayList<>();
+  private int frameWidth;
+  private int frameHeight;
+  private byte[] frameCopy;
+  private boolean released;
+
+  /**
+   * Instantiates a new Tiled detector.
+   *
+   * @param delegate
+   *     the wrapped barcode detector
+   * @param context
+   *     the context the additional barcode detectors are built with
+   * @param formats
+   *     the barcode formats of the additional barcode detectors
+   * @param threadCount
+   *     the number of tiles detected on in parallel, the wrapped detector's thread included
+   */
+  TiledDetector(Detector<Barcode> delegate, final Context context, final int formats,
+      int threadCount) {
+    super(delegate);
+    this.threadCount = Math.max(1, threadCount);
+    this.idleDetectors = new ArrayBlockingQueue<>(this.threadCount);
+    idleDetectors.add(delegate);
+    this.executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+      private int count;
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, "QREader-Tile-" + count++);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    if (this.threadCount > 1) {
+      final Thread setupThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          buildDetectors(context, formats);
+        }
+      }, "QREader-TileSetup");
+      setupThread.setDaemon(true);
+      setupThread.start();
+    }
+  }
+
+  @Override
+  public SparseArray<Barcode> detect(Frame frame) {
+    final Frame.Metadata metadata = frame.getMetadata();
+    final int width = metadata.getWidth();
+    final int height = metadata.getHeight();
+    if (width * height < MIN_TILED_PIXELS) {
+      return delegate.detect(frame);
+    }
+    if (width != frameWidth || height != frameHeight) {
+      layoutTiles(width, height);
+    }
+
+    final ByteBuffer data = frame.getGrayscaleImageData();
+    final byte[] src;
+    final int offset;
+    if (data.hasArray()) {
+      src = data.array();
+      offset = data.arrayOffset();
+    }
+    else {
+      if (frameCopy == null || frameCopy.length < width * height) {
+        frameCopy = new byte[width * height];
+      }
+      LuminanceFrames.crop(data, width, 0, 0, width, height, frameCopy);
+      src = frameCopy;
+      offset = 0;
+    }
+    for (Tile tile : tiles) {
+      tile.prepare(src, offset, metadata);
+    }
+
+    final SparseArray<Barcode> merged = new SparseArray<>();
+    try {
+      final List<Future<SparseArray<Barcode>>> results = executor.invokeAll(tiles);
+      for (int t = 0; t < results.size(); t++) {
+        final SparseArray<Barcode> barcodes = results.get(t).get();
+        final Tile tile = tiles.get(t);
+        for (int i = 0; i < barcodes.size(); i++) {
+          final Barcode barcode = barcodes.valueAt(i);
+          LuminanceFrames.mapToFrame(barcode, metadata.getRotation(), tile.left, tile.top, 1,
+              tile.width, tile.height, width, height);
+          if (!isDuplicate(barcode, merged)) {
+            merged.append(merged.size(), barcode);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      Log.e(LOGTAG, "Tile detection failed", e.getCause());
+    }
+    return merged;
+  }
+
+  @Override
+  public void release() {
+    executor.shutdown();
+    try {
+      executor.awaitTermination(1, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (ownedDetectors) {
+      released = true;
+      for (Detector<Barcode> detector : ownedDetectors) {
+        detector.release();
+      }
+      ownedDetectors.clear();
+    }
+    super.release();
+  }
+
+  /**
+   * Builds the additional detectors, handing each to the tiles once it is operational. Runs on
+   * the setup thread.
+   */
+  private void buildDetectors(Context context, int formats) {
+    for (int i = 1; i < threadCount; i++) {
+      final Detector<Barcode> detector = DetectorPool.newBarcodeDetector(context, formats);
+      synchronized (ownedDetectors) {
+        if (released) {
+          detector.release();
+          return;
+        }
+        ownedDetectors.add(detector);
+      }
+      if (!detector.isOperational()) {
+        Log.w(LOGTAG, "Tile detector not operational, tiles share the operational ones");
+        return;
+      }
+      idleDetectors.add(detector);
+    }
+  }
+
+  private void layoutTiles(int width, int height) {
+    frameWidth = width;
+    frameHeight = height;
+    tiles.clear();
+
+    // Aim for about one tile per thread, shaped like the frame
+    final int columns =
+        Math.max(1, (int) Math.ceil(Math.sqrt(threadCount * (double) width / height)));
+    final int rows = Math.max(1, (int) Math.ceil((double) threadCount / columns));
+    // Tiles of size s overlapping by o cover s * (n - (n - 1) * o)
+    final int tileWidth = Math.min(width,
+        (int) Math.ceil(width / (columns - (columns - 1) * TILE_OVERLAP)));
+    final int tileHeight =
+        Math.min(height, (int) Math.ceil(height / (rows - (rows - 1) * TILE_OVERLAP)));
+    for (int row = 0; row < rows; row++) {
+      final int top = rows == 1 ? 0 : Math.round((float) row * (height - tileHeight) / (rows - 1));
+      for (int column = 0; column < columns; column++) {
+        final int left =
+            columns == 1 ? 0 : Math.round((float) column * (width - tileWidth) / (columns - 1));
+        tiles.add(new Tile(left, top, tileWidth, tileHeight));
+      }
+    }
+  }
+
+  private static boolean isDuplicate(Barcode barcode, SparseArray<Barcode> found) {
+    for (int i = 0; i < found.size(); i++) {
+      final Barcode other = found.valueAt(i);
+      if (barcode.rawValue != null && barcode.rawValue.equals(other.rawValue) && overlap(
+          barcode.cornerPoints, other.cornerPoints)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean overlap(Point[] a, Point[] b) {
+    if (a == null || b == null || a.length == 0 || b.length == 0) {
+      return true;
+    }
+    return bound(a, true, false) <= bound(b, true, true)
+        && bound(b, true, false) <= bound(a, true, true)
+        && bound(a, false, false) <= bound(b, false, true)
+        && bound(b, false, false) <= bound(a, false, true);
+  }
+
+  private static int bound(Point[] points, boolean horizontal, boolean max) {
+    int bound = max ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+    for (Point point : points) {
+      final int value = horizontal ? point.x : point.y;
+      bound = max ? Math.max(bound, value) : Math.min(bound, value);
+    }
+    return bound;
+  }
+
+  /**
+   * A part of the frame, detected on by whichever detector is idle.
+   */
+  private final class Tile implements Callable<SparseArray<Barcode>> {
+    final int left;
+    final int top;
+    final int width;
+    final int height;
+    private final byte[] buffer;
+    private final ByteBuffer wrappedBuffer;
+    private byte[] src;
+    private int offset;
+    private Frame.Metadata metadata;
+
+    Tile(int left, int top, int width, int height) {
+      this.left = left;
+      this.top = top;
+      this.width = width;
+      this.height = height;
+      this.buffer = new byte[width * height];
+      this.wrappedBuffer = ByteBuffer.wrap(buffer);
+    }
+
+    void prepare(byte[] src, int offset, Frame.Metadata metadata) {
+      this.src = src;
+      this.offset = offset;
+      this.metadata = metadata;
+    }
+
+    @Override
+    public SparseArray<Barcode> call() throws InterruptedException {
+      LuminanceFrames.crop(src, offset, frameWidth, left, top, width, height, buffer);
+      final Detector<Barcode> detector = idleDetectors.take();
+      try {
+        return detector.detect(LuminanceFrames.wrap(wrappedBuffer, width, height, metadata));
+      } finally {
+        idleDetectors.add(detector);
+      }
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.graphics.Rect;
+import android.util.SparseArray;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import java.nio.ByteBuffer;
+
+/**
+ * Follows found codes from frame to frame by detecting only around where they are expected.
+ * <p>
+ * After a detection found codes, the next frames are cropped to their bounds moved by the last
+ * observed motion and padded on every side. When codes are missing from the crop for a number of
+ * frames in a row, detection falls back to the full frame.
+ */
+class TrackingDetector extends DelegatingDetector {
+  /**
+   * Padding added on each side of the tracked bounds, relative to their larger side.
+   */
+  private static final float PADDING = 0.5f;
+  private static final int MIN_CROP_SIZE = 64;
+
+  private final int maxMisses;
+  private final Rect tracked = new Rect();
+  private final Rect found = new Rect();
+  private final Rect barcodeBounds = new Rect();
+  private final Rect crop = new Rect();
+  private boolean tracking;
+  private int misses;
+  private int velocityX;
+  private int velocityY;
+  private byte[] buffer;
+  private ByteBuffer wrappedBuffer;
+
+  /**
+   * Instantiates a new Tracking detector.
+   *
+   * @param delegate
+   *     the wrapped detector
+   * @param maxMisses
+   *     the number of frames in a row without codes in the crop before going back to the full
+   *     frame
+   */
+  TrackingDetector(Detector<Barcode> delegate, int maxMisses) {
+    super(delegate);
+    this.maxMisses = maxMisses;
+  }
+
+  @Override
+  public SparseArray<Barcode> detect(Frame frame) {
+    final Frame.Metadata metadata = frame.getMetadata();
+    final int width = metadata.getWidth();
+    final int height = metadata.getHeight();
+    final int rotation = metadata.getRotation();
+    if (!tracking) {
+      final SparseArray<Barcode> barcodes = delegate.detect(frame);
+      if (barcodes != SKIPPED_FRAME && unionBounds(barcodes, rotation, width, height)) {
+        tracked.set(found);
+        velocityX = 0;
+        velocityY = 0;
+        misses = 0;
+        tracking = true;
+      }
+      return barcodes;
+    }
+
+    predictCrop(width, height);
+    final int cropWidth = crop.width();
+    final int cropHeight = crop.height();
+    if (buffer == null || buffer.length < width * height) {
+      buffer = new byte[width * height];
+      wrappedBuffer = ByteBuffer.wrap(buffer);
+    }
+    LuminanceFrames.crop(frame.getGrayscaleImageData(), width, crop.left, crop.top, cropWidth,
+        cropHeight, buffer);
+    final SparseArray<Barcode> barcodes =
+        delegate.detect(LuminanceFrames.wrap(wrappedBuffer, cropWidth, cropHeight, metadata));
+    if (barcodes == SKIPPED_FRAME) {
+      return barcodes;
+    }
+    for (int i = 0; i < barcodes.size(); i++) {
+      LuminanceFrames.mapToFrame(barcodes.valueAt(i), rotation, crop.left, crop.top, 1, cropWidth,
+          cropHeight, width, height);
+    }
+
+    if (unionBounds(barcodes, rotation, width, height)) {
+      velocityX = found.centerX() - tracked.centerX();
+      velocityY = found.centerY() - tracked.centerY();
+      tracked.set(found);
+      misses = 0;
+    }
+    else if (++misses >= maxMisses) {
+      tracking = false;
+    }
+    return barcodes;
+  }
+
+  private void predictCrop(int width, int height) {
+    final int padding = Math.round(PADDING * Math.max(tracked.width(), tracked.height()));
+    crop.set(tracked);
+    crop.offset(velocityX, velocityY);
+    crop.inset(-padding, -padding);
+    if (crop.width() < MIN_CROP_SIZE) {
+      crop.inset((crop.width() - MIN_CROP_SIZE) / 2, 0);
+    }
+    if (crop.height() < MIN_CROP_SIZE) {
+      crop.inset(0, (crop.height() - MIN_CROP_SIZE) / 2);
+    }
+    if (!crop.intersect(0, 0, width, height) || crop.isEmpty()) {
+      crop.set(0, 0, width, height);
+    }
+  }
+
+  /**
+   * Puts the sensor bounds of all barcodes into {@link #found}.
+   *
+   * @return false if there were no barcodes with corner points
+   */
+  private boolean unionBounds(SparseArray<Barcode> barcodes, int rotation, int width,
+      int height) {
+    found.setEmpty();
+    for (int i = 0; i < barcodes.size(); i++) {
+      if (LuminanceFrames.toSensorBounds(barcodes.valueAt(i), rotation, width, height,
+          barcodeBounds)) {
+        found.union(barcodeBounds);
+      }
+    }
+    return !found.isEmpty();
+  }
+}
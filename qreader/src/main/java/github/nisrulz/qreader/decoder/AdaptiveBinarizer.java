@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader.decoder;
+
+/**
+ * Turns a luminance image into a bit matrix with a threshold of its own for every pixel, the mean
+ * of the window around it. Unlike a single threshold for the whole image, this copes with light
+ * falling off across a code, shadows and glare.
+ * <p>
+ * The window means come from a summed-area table built in one pass over the image, in which
+ * every entry is the sum of all pixels above and left of it. Any window sum is then four lookups,
+ * whatever the window size. A pixel is dark when it is darker than its window mean by a share of
+ * the mean and by a minimum contrast, so flat areas come out light instead of noise.
+ * <p>
+ * The table is kept across images and only grows, and the bits are written a word at a time
+ * into the reused matrix, so binarizing does not allocate once the buffers fit the frame size.
+ */
+final class AdaptiveBinarizer {
+  /**
+   * The smallest window radius, in pixels.
+   */
+  private static final int MIN_RADIUS = 8;
+  /**
+   * The window radius as a fraction of the shorter image side, making windows an eighth of it.
+   */
+  private static final int RADIUS_DIVISOR = 16;
+  /**
+   * How much darker than the window mean a dark pixel is, in 256ths of the mean.
+   */
+  private static final int DARKER_THAN_MEAN = 38;
+  /**
+   * How much darker than the window mean a dark pixel is at least, in luminance levels.
+   */
+  private static final int MIN_CONTRAST = 8;
+
+  private int[] integral = new int[0];
+
+  /**
+   * Binarizes an image.
+   *
+   * @param luminance
+   *     the luminance data
+   * @param offset
+   *     the offset of the first pixel
+   * @param width
+   *     the width
+   * @param height
+   *     the height
+   * @param rowStride
+   *     the distance between the starts of two rows
+   * @param out
+   *     the matrix to write to, dark pixels are set
+   * @return false if the image has too little contrast to hold a code
+   */
+  boolean binarize(byte[] luminance, int offset, int width, int height, int rowStride,
+      BitMatrix out) {
+    if (!buildIntegral(luminance, offset, width, height, rowStride)) {
+      return false;
+    }
+
+    out.reset(width, height);
+    final int[] bits = out.getBits();
+    final int rowSize = out.getRowSize();
+    final int stride = width + 1;
+    final int radius = Math.max(MIN_RADIUS, Math.min(width, height) / RADIUS_DIVISOR);
+    for (int y = 0; y < height; y++) {
+      final int windowTop = Math.max(0, y - radius);
+      final int windowBottom = Math.min(height, y + radius + 1);
+      final int windowHeight = windowBottom - windowTop;
+      final int top = windowTop * stride;
+      final int bottom = windowBottom * stride;
+      final int row = offset + y * rowStride;
+      final int bitsRow = y * rowSize;
+      int word = 0;
+      for (int x = 0; x < width; x++) {
+        final int left = Math.max(0, x - radius);
+        final int right = Math.min(width, x + radius + 1);
+        final int area = (right - left) * windowHeight;
+        // Sums may wrap around in the table of a large frame, their differences are still exact
+        final int sum = integral[bottom + right] - integral[top + right] - integral[bottom + left]
+            + integral[top + left];
+        final long weighted = (long) (luminance[row + x] & 0xff) * area;
+        if (weighted << 8 < (long) sum * (256 - DARKER_THAN_MEAN)
+            && sum - weighted >= (long) MIN_CONTRAST * area) {
+          word |= 1 << (x & 31);
+        }
+        if ((x & 31) == 31) {
+          bits[bitsRow + (x >>> 5)] = word;
+          word = 0;
+        }
+      }
+      if ((width & 31) != 0) {
+        bits[bitsRow + (width >>> 5)] = word;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Builds the summed-area table, one row and column larger than the image with the first row
+   * and column zero.
+   *
+   * @return false if all pixels are within the minimum contrast of each other
+   */
+  private boolean buildIntegral(byte[] luminance, int offset, int width, int height,
+      int rowStride) {
+    final int stride = width + 1;
+    final int size = stride * (height + 1);
+    if (integral.length < size) {
+      integral = new int[size];
+    }
+    for (int x = 0; x < stride; x++) {
+      integral[x] = 0;
+    }
+    int min = 255;
+    int max = 0;
+    for (int y = 0; y < height; y++) {
+      final int row = offset + y * rowStride;
+      final int above = y * stride;
+      final int current = above + stride;
+      integral[current] = 0;
+      int rowSum = 0;
+      for (int x = 0; x < width; x++) {
+        final int value = luminance[row + x] & 0xff;
+        if (value < min) {
+          min = value;
+        }
+        if (value > max) {
+          max = value;
+        }
+        rowSum += value;
+        integral[current + x + 1] = integral[above + x + 1] + rowSum;
+      }
+    }
+    return max - min >= MIN_CONTRAST;
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader.decoder;
+
+/**
+ * Finds an alignment pattern, the small square near the bottom right corner of symbols from
+ * version 2, within a region around where it is expected.
+ * <p>
+ * Rows are scanned from the middle of the region outwards for light, dark and light runs of a
+ * module each, the center of the pattern. A center must be seen on two rows to be confirmed.
+ */
+final class AlignmentPatternFinder {
+  private static final int MAX_CANDIDATES = 8;
+
+  private final float[] centerX = new float[MAX_CANDIDATES];
+  private final float[] centerY = new float[MAX_CANDIDATES];
+  private final float[] candidateSize = new float[MAX_CANDIDATES];
+  private final int[] stateCount = new int[3];
+  private final int[] crossCheck = new int[3];
+  private int candidateCount;
+  private BitMatrix image;
+  private float moduleSize;
+
+  /**
+   * The x coordinate of the pattern found by the last successful search.
+   */
+  float x;
+  /**
+   * The y coordinate of the pattern found by the last successful search.
+   */
+  float y;
+
+  /**
+   * Searches for an alignment pattern.
+   *
+   * @param image
+   *     the binarized image
+   * @param moduleSize
+   *     the estimated module size
+   * @param estimatedX
+   *     the expected x coordinate of the pattern
+   * @param estimatedY
+   *     the expected y coordinate of the pattern
+   * @param allowanceFactor
+   *     the distance in modules to search around the expected position
+   * @return true if a pattern was found, see {@link #x} and {@link #y}
+   */
+  boolean find(BitMatrix image, float moduleSize, float estimatedX, float estimatedY,
+      float allowanceFactor) {
+    this.image = image;
+    this.moduleSize = moduleSize;
+    candidateCount = 0;
+
+    final int allowance = (int) (allowanceFactor * moduleSize);
+    final int left = Math.max(0, (int) estimatedX - allowance);
+    final int right = Math.min(image.getWidth() - 1, (int) estimatedX + allowance);
+    final int top = Math.max(0, (int) estimatedY - allowance);
+    final int bottom = Math.min(image.getHeight() - 1, (int) estimatedY + allowance);
+    if (right - left < moduleSize * 3 || bottom - top < moduleSize * 3) {
+      return false;
+    }
+
+    final int height = bottom - top;
+    final int middleI = top + height / 2;
+    for (int iGen = 0; iGen < height; iGen++) {
+      // Alternate above and below the middle row
+      final int i = middleI + ((iGen & 1) == 0 ? (iGen + 1) / 2 : -((iGen + 1) / 2));
+      stateCount[0] = 0;
+      stateCount[1] = 0;
+      stateCount[2] = 0;
+      int j = left;
+      // A run cut off by the region edge says nothing about its length
+      while (j < right && !image.get(j, i)) {
+        j++;
+      }
+      int currentState = 0;
+      while (j < right) {
+        if (image.get(j, i)) {
+          if (currentState == 1) {
+            stateCount[1]++;
+          }
+          else if (currentState == 2) {
+            if (foundPatternCross(stateCount) && handlePossibleCenter(i, j)) {
+              return true;
+            }
+            stateCount[0] = stateCount[2];
+            stateCount[1] = 1;
+            stateCount[2] = 0;
+            currentState = 1;
+          }
+          else {
+            stateCount[++currentState]++;
+          }
+        }
+        else {
+          if (currentState == 1) {
+            currentState++;
+          }
+          stateCount[currentState]++;
+        }
+        j++;
+      }
+      if (foundPatternCross(stateCount) && handlePossibleCenter(i, right)) {
+        return true;
+      }
+    }
+
+    // Settle for a center seen only once
+    if (candidateCount > 0) {
+      x = centerX[0];
+      y = centerY[0];
+      return true;
+    }
+    return false;
+  }
+
+  private boolean foundPatternCross(int[] counts) {
+    final float maxVariance = moduleSize / 2f;
+    for (int i = 0; i < 3; i++) {
+      if (Math.abs(moduleSize - counts[i]) >= maxVariance) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static float centerFromEnd(int[] counts, int end) {
+    return end - counts[2] - counts[1] / 2f;
+  }
+
+  private boolean handlePossibleCenter(int i, int j) {
+    final int total = stateCount[0] + stateCount[1] + stateCount[2];
+    final float centerJ = centerFromEnd(stateCount, j);
+    final float centerI = crossCheckVertical(i, (int) centerJ, 2 * stateCount[1], total);
+    if (Float.isNaN(centerI)) {
+      return false;
+    }
+    final float size = total / 3f;
+    for (int c = 0; c < candidateCount; c++) {
+      if (Math.abs(centerI - centerY[c]) <= size && Math.abs(centerJ - centerX[c]) <= size) {
+        final float sizeDifference = Math.abs(size - candidateSize[c]);
+        if (sizeDifference <= 1f || sizeDifference <= candidateSize[c]) {
+          x = (centerX[c] + centerJ) / 2f;
+          y = (centerY[c] + centerI) / 2f;
+          return true;
+        }
+      }
+    }
+    if (candidateCount < MAX_CANDIDATES) {
+      centerX[candidateCount] = centerJ;
+      centerY[candidateCount] = centerI;
+      candidateSize[candidateCount] = size;
+      candidateCount++;
+    }
+    return false;
+  }
+
+  private float crossCheckVertical(int startI, int centerJ, int maxCount, int originalTotal) {
+    final int maxI = image.getHeight();
+    crossCheck[0] = 0;
+    crossCheck[1] = 0;
+    crossCheck[2] = 0;
+
+    int i = startI;
+    while (i >= 0 && image.get(centerJ, i) && crossCheck[1] <= maxCount) {
+      crossCheck[1]++;
+      i--;
+    }
+    if (i < 0 || crossCheck[1] > maxCount) {
+      return Float.NaN;
+    }
+    while (i >= 0 && !image.get(centerJ, i) && crossCheck[0] <= maxCount) {
+      crossCheck[0]++;
+      i--;
+    }
+    if (crossCheck[0] > maxCount) {
+      return Float.NaN;
+    }
+
+    i = startI + 1;
+    while (i < maxI && image.get(centerJ, i) && crossCheck[1] <= maxCount) {
+      crossCheck[1]++;
+      i++;
+    }
+    if (i == maxI || crossCheck[1] > maxCount) {
+      return Float.NaN;
+    }
+    while (i < maxI && !image.get(centerJ, i) && crossCheck[2] <= maxCount) {
+      crossCheck[2]++;
+      i++;
+    }
+    if (crossCheck[2] > maxCount) {
+      return Float.NaN;
+    }
+
+    final int total = crossCheck[0] + crossCheck[1] + crossCheck[2];
+    if (5 * Math.abs(total - originalTotal) >= 2 * originalTotal) {
+      return Float.NaN;
+    }
+    return foundPatternCross(crossCheck) ? centerFromEnd(crossCheck, i) : Float.NaN;
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader.decoder;
+
+import java.util.Arrays;
+
+/**
+ * A two-dimensional matrix of bits, packed 32 to an int, row by row. A set bit is a dark module
+ * or pixel.
+ * <p>
+ * The storage is kept when the matrix is reset to another size, it only grows when a larger
+ * matrix is needed.
+ */
+final class BitMatrix {
+  private int width;
+  private int height;
+  private int rowSize;
+  private int[] bits = new int[0];
+
+  /**
+   * Clears the matrix and sets its size.
+   *
+   * @param width
+   *     the width
+   * @param height
+   *     the height
+   */
+  void reset(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.rowSize = (width + 31) >>> 5;
+    final int size = rowSize * height;
+    if (bits.length < size) {
+      bits = new int[size];
+    }
+    else {
+      Arrays.fill(bits, 0, size, 0);
+    }
+  }
+
+  /**
+   * Gets a bit.
+   *
+   * @param x
+   *     the column
+   * @param y
+   *     the row
+   * @return true if the bit is set
+   */
+  boolean get(int x, int y) {
+    return ((bits[y * rowSize + (x >>> 5)] >>> (x & 31)) & 1) != 0;
+  }
+
+  /**
+   * Sets a bit.
+   *
+   * @param x
+   *     the column
+   * @param y
+   *     the row
+   */
+  void set(int x, int y) {
+    bits[y * rowSize + (x >>> 5)] |= 1 << (x & 31);
+  }
+
+  /**
+   * Flips a bit.
+   *
+   * @param x
+   *     the column
+   * @param y
+   *     the row
+   */
+  void flip(int x, int y) {
+    bits[y * rowSize + (x >>> 5)] ^= 1 << (x & 31);
+  }
+
+  /**
+   * Sets all bits of a rectangle.
+   *
+   * @param left
+   *     the left column
+   * @param top
+   *     the top row
+   * @param width
+   *     the width
+   * @param height
+   *     the height
+   */
+  void setRegion(int left, int top, int width, int height) {
+    for (int y = top; y < top + height; y++) {
+      for (int x = left; x < left + width; x++) {
+        set(x, y);
+      }
+    }
+  }
+
+  /**
+   * Gets the width.
+   *
+   * @return the width
+   */
+  int getWidth() {
+    return width;
+  }
+
+  /**
+   * Gets the height.
+   *
+   * @return the height
+   */
+  int getHeight() {
+    return height;
+  }
+
+  /**
+   * Gets the number of ints per row.
+   *
+   * @return the row size
+   */
+  int getRowSize() {
+    return rowSize;
+  }
+
+  /**
+   * Gets the packed bits, row after row. Only the first {@code rowSize * height} ints belong to
+   * the matrix.
+   *
+   * @return the bits
+   */
+  int[] getBits() {
+    return bits;
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader.decoder;
+
+/**
+ * Reads values of any number of bits from a byte array, most significant bit first.
+ */
+final class BitSource {
+  private byte[] bytes;
+  private int length;
+  private int bitOffset;
+
+  /**
+   * Starts reading from the beginning of some bytes.
+   *
+   * @param bytes
+   *     the bytes
+   * @param length
+   *     the number of bytes to read from
+   */
+  void reset(byte[] bytes, int length) {
+    this.bytes = bytes;
+    this.length = length;
+    this.bitOffset = 0;
+  }
+
+  /**
+   * Gets the number of bits left.
+   *
+   * @return the available bits
+   */
+  int available() {
+    return length * 8 - bitOffset;
+  }
+
+  /**
+   * Reads a value.
+   *
+   * @param count
+   *     the number of bits, 1 to 32, at most {@link #available()}
+   * @return the value
+   */
+  int readBits(int count) {
+    int result = 0;
+    for (int i = 0; i < count; i++) {
+      final int bit = (bytes[bitOffset >> 3] >> (7 - (bitOffset & 7))) & 1;
+      result = (result << 1) | bit;
+      bitOffset++;
+    }
+    return result;
+  }
+}
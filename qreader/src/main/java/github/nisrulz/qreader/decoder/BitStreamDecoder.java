@@ -0,0 +1,439 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader.decoder;
+
+import java.nio.charset.Charset;
+
+/**
+ * Decodes the data codewords of a symbol into its content.
+ * <p>
+ * Numeric, alphanumeric, byte and kanji segments are supported, as are ECI designators, FNC1 and
+ * structured append headers. The content bytes are collected in a buffer reused across symbols,
+ * segment by segment as the encoder wrote them. No text is built here: each run of bytes is only
+ * recorded with its character set, so the text can be decoded later if it is asked for. Byte
+ * segments without an ECI designator are read as UTF-8 when they are valid UTF-8 and as
+ * ISO-8859-1 otherwise.
+ */
+final class BitStreamDecoder {
+  private static final int MODE_TERMINATOR = 0x0;
+  private static final int MODE_NUMERIC = 0x1;
+  private static final int MODE_ALPHANUMERIC = 0x2;
+  private static final int MODE_STRUCTURED_APPEND = 0x3;
+  private static final int MODE_BYTE = 0x4;
+  private static final int MODE_FNC1_FIRST_POSITION = 0x5;
+  private static final int MODE_ECI = 0x7;
+  private static final int MODE_KANJI = 0x8;
+  private static final int MODE_FNC1_SECOND_POSITION = 0x9;
+
+  private static final char[] ALPHANUMERIC_CHARS =
+      "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:".toCharArray();
+  private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Charset SHIFT_JIS = charsetOrNull("Shift_JIS");
+  private static final byte GROUP_SEPARATOR = 0x1d;
+
+  private final BitSource bits = new BitSource();
+
+  /**
+   * The content bytes of the last decoded symbol, {@link #length} of them.
+   */
+  byte[] content = new byte[256];
+  /**
+   * The number of content bytes.
+   */
+  int length;
+  /**
+   * The end offsets in {@link #content} of the runs of bytes sharing a character set, {@link
+   * #segmentCount} of them.
+   */
+  int[] segmentEnds = new int[8];
+  /**
+   * The character set of each run of bytes.
+   */
+  Charset[] segmentCharsets = new Charset[8];
+  /**
+   * The number of runs of bytes.
+   */
+  int segmentCount;
+  /**
+   * The position of the symbol in a structured append sequence, or -1.
+   */
+  int sequenceIndex;
+  /**
+   * The number of symbols in the structured append sequence.
+   */
+  int sequenceCount;
+  /**
+   * The parity of the structured append sequence.
+   */
+  int sequenceParity;
+
+  /**
+   * Decodes data codewords.
+   *
+   * @param codewords
+   *     the data codewords
+   * @param count
+   *     the number of data codewords
+   * @param version
+   *     the version of the symbol
+   * @return false if the codewords are not a valid bit stream
+   */
+  boolean decode(byte[] codewords, int count, Version version) {
+    bits.reset(codewords, count);
+    length = 0;
+    segmentCount = 0;
+    sequenceIndex = -1;
+    sequenceCount = 0;
+    sequenceParity = 0;
+
+    final int number = version.getNumber();
+    final int sizeClass = number <= 9 ? 0 : number <= 26 ? 1 : 2;
+    Charset eciCharset = null;
+    boolean fnc1 = false;
+    while (bits.available() >= 4) {
+      final int mode = bits.readBits(4);
+      switch (mode) {
+        case MODE_TERMINATOR:
+          return true;
+        case MODE_FNC1_FIRST_POSITION:
+          fnc1 = true;
+          break;
+        case MODE_FNC1_SECOND_POSITION:
+          if (bits.available() < 8) {
+            return false;
+          }
+          // The application indicator
+          bits.readBits(8);
+          fnc1 = true;
+          break;
+        case MODE_STRUCTURED_APPEND:
+          if (bits.available() < 16) {
+            return false;
+          }
+          final int sequence = bits.readBits(8);
+          sequenceIndex = sequence >> 4;
+          sequenceCount = (sequence & 0xf) + 1;
+          sequenceParity = bits.readBits(8);
+          break;
+        case MODE_ECI:
+          final int eci = readEciValue();
+          if (eci < 0) {
+            return false;
+          }
+          eciCharset = charsetForEci(eci);
+          if (eciCharset == null) {
+            return false;
+          }
+          break;
+        case MODE_NUMERIC:
+          if (!decodeNumeric(readCount(10 + 2 * sizeClass))) {
+            return false;
+          }
+          break;
+        case MODE_ALPHANUMERIC:
+          if (!decodeAlphanumeric(readCount(9 + 2 * sizeClass), fnc1)) {
+            return false;
+          }
+          break;
+        case MODE_BYTE:
+          if (!decodeBytes(readCount(sizeClass == 0 ? 8 : 16), eciCharset)) {
+            return false;
+          }
+          break;
+        case MODE_KANJI:
+          if (SHIFT_JIS == null || !decodeKanji(readCount(8 + 2 * sizeClass))) {
+            return false;
+          }
+          break;
+        default:
+          return false;
+      }
+    }
+    return true;
+  }
+
+  private int readCount(int countBits) {
+    return bits.available() < countBits ? -1 : bits.readBits(countBits);
+  }
+
+  private int readEciValue() {
+    if (bits.available() < 8) {
+      return -1;
+    }
+    final int first = bits.readBits(8);
+    if ((first & 0x80) == 0) {
+      return first;
+    }
+    if ((first & 0xc0) == 0x80 && bits.available() >= 8) {
+      return ((first & 0x3f) << 8) | bits.readBits(8);
+    }
+    if ((first & 0xe0) == 0xc0 && bits.available() >= 16) {
+      return ((first & 0x1f) << 16) | bits.readBits(16);
+    }
+    return -1;
+  }
+
+  private boolean decodeNumeric(int count) {
+    if (count < 0) {
+      return false;
+    }
+    while (count >= 3) {
+      if (bits.available() < 10) {
+        return false;
+      }
+      final int value = bits.readBits(10);
+      if (value >= 1000) {
+        return false;
+      }
+      appendAscii((char) ('0' + value / 100));
+      appendAscii((char) ('0' + value / 10 % 10));
+      appendAscii((char) ('0' + value % 10));
+      count -= 3;
+    }
+    if (count == 2) {
+      if (bits.available() < 7) {
+        return false;
+      }
+      final int value = bits.readBits(7);
+      if (value >= 100) {
+        return false;
+      }
+      appendAscii((char) ('0' + value / 10));
+      appendAscii((char) ('0' + value % 10));
+    }
+    else if (count == 1) {
+      if (bits.available() < 4) {
+        return false;
+      }
+      final int value = bits.readBits(4);
+      if (value >= 10) {
+        return false;
+      }
+      appendAscii((char) ('0' + value));
+    }
+    endSegment(ISO_8859_1);
+    return true;
+  }
+
+  private boolean decodeAlphanumeric(int count, boolean fnc1) {
+    if (count < 0) {
+      return false;
+    }
+    final int start = length;
+    while (count > 1) {
+      if (bits.available() < 11) {
+        return false;
+      }
+      final int value = bits.readBits(11);
+      if (value >= 45 * 45) {
+        return false;
+      }
+      appendAscii(ALPHANUMERIC_CHARS[value / 45]);
+      appendAscii(ALPHANUMERIC_CHARS[value % 45]);
+      count -= 2;
+    }
+    if (count == 1) {
+      if (bits.available() < 6) {
+        return false;
+      }
+      final int value = bits.readBits(6);
+      if (value >= 45) {
+        return false;
+      }
+      appendAscii(ALPHANUMERIC_CHARS[value]);
+    }
+    if (fnc1) {
+      // With FNC1 a single % is a group separator and %% a literal %
+      int write = start;
+      for (int read = start; read < length; read++) {
+        if (content[read] == '%') {
+          if (read + 1 < length && content[read + 1] == '%') {
+            read++;
+          }
+          else {
+            content[read] = GROUP_SEPARATOR;
+          }
+        }
+        content[write++] = content[read];
+      }
+      length = write;
+    }
+    endSegment(ISO_8859_1);
+    return true;
+  }
+
+  private boolean decodeBytes(int count, Charset eciCharset) {
+    if (count < 0 || bits.available() < count * 8) {
+      return false;
+    }
+    final int start = length;
+    ensureCapacity(length + count);
+    for (int i = 0; i < count; i++) {
+      content[length++] = (byte) bits.readBits(8);
+    }
+    Charset charset = eciCharset;
+    if (charset == null) {
+      charset = isUtf8(content, start, length) ? UTF_8 : ISO_8859_1;
+    }
+    endSegment(charset);
+    return true;
+  }
+
+  private boolean decodeKanji(int count) {
+    if (count < 0 || bits.available() < count * 13) {
+      return false;
+    }
+    ensureCapacity(length + 2 * count);
+    for (int i = 0; i < count; i++) {
+      final int value = bits.readBits(13);
+      int assembled = ((value / 0xc0) << 8) | (value % 0xc0);
+      assembled += assembled < 0x1f00 ? 0x8140 : 0xc140;
+      content[length++] = (byte) (assembled >> 8);
+      content[length++] = (byte) assembled;
+    }
+    endSegment(SHIFT_JIS);
+    return true;
+  }
+
+  private void appendAscii(char c) {
+    ensureCapacity(length + 1);
+    content[length++] = (byte) c;
+  }
+
+  /**
+   * Records the bytes added since the last segment as read with a character set, extending the
+   * last segment if it has the same one.
+   */
+  private void endSegment(Charset charset) {
+    final int start = segmentCount == 0 ? 0 : segmentEnds[segmentCount - 1];
+    if (length == start) {
+      return;
+    }
+    if (segmentCount != 0 && segmentCharsets[segmentCount - 1] == charset) {
+      segmentEnds[segmentCount - 1] = length;
+      return;
+    }
+    if (segmentCount == segmentEnds.length) {
+      final int[] grownEnds = new int[segmentCount * 2];
+      System.arraycopy(segmentEnds, 0, grownEnds, 0, segmentCount);
+      segmentEnds = grownEnds;
+      final Charset[] grownCharsets = new Charset[segmentCount * 2];
+      System.arraycopy(segmentCharsets, 0, grownCharsets, 0, segmentCount);
+      segmentCharsets = grownCharsets;
+    }
+    segmentEnds[segmentCount] = length;
+    segmentCharsets[segmentCount] = charset;
+    segmentCount++;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > content.length) {
+      final byte[] grown = new byte[Math.max(capacity, content.length * 2)];
+      System.arraycopy(content, 0, grown, 0, length);
+      content = grown;
+    }
+  }
+
+  private static boolean isUtf8(byte[] bytes, int start, int end) {
+    int i = start;
+    while (i < end) {
+      final int b = bytes[i] & 0xff;
+      final int continuation;
+      if (b < 0x80) {
+        continuation = 0;
+      }
+      else if (b >= 0xc2 && b <= 0xdf) {
+        continuation = 1;
+      }
+      else if (b >= 0xe0 && b <= 0xef) {
+        continuation = 2;
+      }
+      else if (b >= 0xf0 && b <= 0xf4) {
+        continuation = 3;
+      }
+      else {
+        return false;
+      }
+      if (i + continuation >= end && continuation > 0) {
+        return false;
+      }
+      for (int c = 1; c <= continuation; c++) {
+        if ((bytes[i + c] & 0xc0) != 0x80) {
+          return false;
+        }
+      }
+      i += continuation + 1;
+    }
+    return true;
+  }
+
+  /**
+   * Gets the character set of an ECI designator.
+   *
+   * @param eci
+   *     the ECI value
+   * @return the character set, or null if it is unknown or not supported on this platform
+   */
+  static Charset charsetForEci(int eci) {
+    switch (eci) {
+      case 0:
+      case 2:
+        return charsetOrNull("Cp437");
+      case 1:
+      case 3:
+        return ISO_8859_1;
+      case 20:
+        return SHIFT_JIS;
+      case 21:
+        return charsetOrNull("windows-1250");
+      case 22:
+        return charsetOrNull("windows-1251");
+      case 23:
+        return charsetOrNull("windows-1252");
+      case 24:
+        return charsetOrNull("windows-1256");
+      case 25:
+        return charsetOrNull("UTF-16BE");
+      case 26:
+        return UTF_8;
+      case 27:
+      case 170:
+        return charsetOrNull("US-ASCII");
+      case 28:
+        return charsetOrNull("Big5");
+      case 29:
+        return charsetOrNull("GB18030");
+      case 30:
+        return charsetOrNull("EUC-KR");
+      default:
+        // ISO-8859-2 to ISO-8859-16, there is no ISO-8859-12
+        if (eci >= 4 && eci <= 18 && eci != 14) {
+          return charsetOrNull("ISO-8859-" + (eci - 2));
+        }
+        return null;
+    }
+  }
+
+  private static Charset charsetOrNull(String name) {
+    try {
+      return Charset.forName(name);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader.decoder;
+
+/**
+ * Finds the three finder patterns of a symbol, the squares in its corners.
+ * <p>
+ * Rows are scanned for runs of dark, light, dark, light and dark pixels in the 1:1:3:1:1 ratio
+ * of a finder pattern. Each hit is confirmed by checking the same ratio vertically and
+ * horizontally through its center. Confirmed centers are merged into a fixed table of
+ * candidates, of which the three forming the best right isosceles triangle are picked.
+ */
+final class FinderPatternFinder {
+  private static final int MAX_CANDIDATES = 32;
+  /**
+   * Largest symbol in modules, used to space the scanned rows.
+   */
+  private static final int MAX_MODULES = 97;
+
+  private final float[] centerX = new float[MAX_CANDIDATES];
+  private final float[] centerY = new float[MAX_CANDIDATES];
+  private final float[] moduleSize = new float[MAX_CANDIDATES];
+  private final int[] hits = new int[MAX_CANDIDATES];
+  private final int[] stateCount = new int[5];
+  private final int[] crossCheck = new int[5];
+  private int candidateCount;
+  private BitMatrix image;
+
+  /**
+   * The found patterns after a successful {@link #find(BitMatrix)}: x, y and module size of the
+   * top left, top right and bottom left pattern.
+   */
+  final float[] patterns = new float[9];
+
+  /**
+   * Finds the finder patterns of a symbol.
+   *
+   * @param image
+   *     the binarized image
+   * @return true if three patterns were found, see {@link #patterns}
+   */
+  boolean find(BitMatrix image) {
+    this.image = image;
+    candidateCount = 0;
+    final int maxI = image.getHeight();
+    final int maxJ = image.getWidth();
+    int iSkip = Math.max(3, 3 * maxI / (4 * MAX_MODULES));
+
+    for (int i = iSkip - 1; i < maxI; i += iSkip) {
+      clear(stateCount);
+      int currentState = 0;
+      for (int j = 0; j < maxJ; j++) {
+        if (image.get(j, i)) {
+          // Dark pixel, counted in the odd states
+          if ((currentState & 1) == 1) {
+            currentState++;
+          }
+          stateCount[currentState]++;
+        }
+        else if ((currentState & 1) == 0) {
+          // Light pixel ending a dark run
+          if (currentState == 4) {
+            if (foundPatternCross(stateCount) && handlePossibleCenter(i, j)) {
+              // Patterns are at least a few rows high, denser scanning around them pays off
+              iSkip = 2;
+              clear(stateCount);
+              currentState = 0;
+            }
+            else {
+              shiftCounts();
+              currentState = 3;
+            }
+          }
+          else {
+            stateCount[++currentState]++;
+          }
+        }
+        else {
+          stateCount[currentState]++;
+        }
+      }
+      if (foundPatternCross(stateCount)) {
+        handlePossibleCenter(i, maxJ);
+      }
+    }
+    return selectBestPatterns();
+  }
+
+  private static void clear(int[] counts) {
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = 0;
+    }
+  }
+
+  private void shiftCounts() {
+    stateCount[0] = stateCount[2];
+    stateCount[1] = stateCount[3];
+    stateCount[2] = stateCount[4];
+    stateCount[3] = 1;
+    stateCount[4] = 0;
+  }
+
+  private static boolean foundPatternCross(int[] counts) {
+    int total = 0;
+    for (int i = 0; i < 5; i++) {
+      if (counts[i] == 0) {
+        return false;
+      }
+      total += counts[i];
+    }
+    if (total < 7) {
+      return false;
+    }
+    final float module = total / 7f;
+    final float maxVariance = module / 2f;
+    return Math.abs(module - counts[0]) < maxVariance && Math.abs(module - counts[1]) < maxVariance
+        && Math.abs(3f * module - counts[2]) < 3f * maxVariance
+        && Math.abs(module - counts[3]) < maxVariance && Math.abs(module - counts[4]) < maxVariance;
+  }
+
+  private static float centerFromEnd(int[] counts, int end) {
+    return end - counts[4] - counts[3] - counts[2] / 2f;
+  }
+
+  private boolean handlePossibleCenter(int i, int j) {
+    final int total = stateCount[0] + stateCount[1] + stateCount[2] + stateCount[3] + stateCount[4];
+    float x = centerFromEnd(stateCount, j);
+    final float y = crossCheckVertical(i, (int) x, stateCount[2], total);
+    if (Float.isNaN(y)) {
+      return false;
+    }
+    x = crossCheckHorizontal((int) x, (int) y, stateCount[2], total);
+    if (Float.isNaN(x)) {
+      return false;
+    }
+
+    final float size = total / 7f;
+    for (int c = 0; c < candidateCount; c++) {
+      if (Math.abs(y - centerY[c]) <= size && Math.abs(x - centerX[c]) <= size) {
+        final float sizeDifference = Math.abs(size - moduleSize[c]);
+        if (sizeDifference <= 1f || sizeDifference <= moduleSize[c]) {
+          // Running average of the centers seen so far
+          final int n = hits[c];
+          centerX[c] = (n * centerX[c] + x) / (n + 1);
+          centerY[c] = (n * centerY[c] + y) / (n + 1);
+          moduleSize[c] = (n * moduleSize[c] + size) / (n + 1);
+          hits[c] = n + 1;
+          return true;
+        }
+      }
+    }
+    if (candidateCount < MAX_CANDIDATES) {
+      centerX[candidateCount] = x;
+      centerY[candidateCount] = y;
+      moduleSize[candidateCount] = size;
+      hits[candidateCount] = 1;
+      candidateCount++;
+    }
+    return true;
+  }
+
+  private float crossCheckVertical(int startI, int centerJ, int maxCount, int originalTotal) {
+    final int maxI = image.getHeight();
+    clear(crossCheck);
+
+    int i = startI;
+    while (i >= 0 && image.get(centerJ, i)) {
+      crossCheck[2]++;
+      i--;
+    }
+    if (i < 0) {
+      return Float.NaN;
+    }
+    while (i >= 0 && !image.get(centerJ, i) && crossCheck[1] <= maxCount) {
+      crossCheck[1]++;
+      i--;
+    }
+    if (i < 0 || crossCheck[1] > maxCount) {
+      return Float.NaN;
+    }
+    while (i >= 0 && image.get(centerJ, i) && crossCheck[0] <= maxCount) {
+      crossCheck[0]++;
+      i--;
+    }
+    if (crossCheck[0] > maxCount) {
+      return Float.NaN;
+    }
+
+    i = startI + 1;
+    while (i < maxI && image.get(centerJ, i)) {
+      crossCheck[2]++;
+      i++;
+    }
+    if (i == maxI) {
+      return Float.NaN;
+    }
+    while (i < maxI && !image.get(centerJ, i) && crossCheck[3] < maxCount) {
+      crossCheck[3]++;
+      i++;
+    }
+    if (i == maxI || crossCheck[3] >= maxCount) {
+      return Float.NaN;
+    }
+    while (i < maxI && image.get(centerJ, i) && crossCheck[4] < maxCount) {
+      crossCheck[4]++;
+      i++;
+    }
+    if (crossCheck[4] >= maxCount) {
+      return Float.NaN;
+    }
+
+    final int total = crossCheck[0] + crossCheck[1] + crossCheck[2] + crossCheck[3] + crossCheck[4];
+    if (5 * Math.abs(total - originalTotal) >= 2 * originalTotal) {
+      return Float.NaN;
+    }
+    return foundPatternCross(crossCheck) ? centerFromEnd(crossCheck, i) : Float.NaN;
+  }
+
+  private float crossCheckHorizontal(int startJ, int centerI, int maxCount, int originalTotal) {
+    final int maxJ = image.getWidth();
+    clear(crossCheck);
+
+    int j = startJ;
+    while (j >= 0 && image.get(j, centerI)) {
+      crossCheck[2]++;
+      j--;
+    }
+    if (j < 0) {
+      return Float.NaN;
+    }
+    while (j >= 0 && !image.get(j, centerI) && crossCheck[1] <= maxCount) {
+      crossCheck[1]++;
+      j--;
+    }
+    if (j < 0 || crossCheck[1] > maxCount) {
+      return Float.NaN;
+    }
+    while (j >= 0 && image.get(j, centerI) && crossCheck[0] <= maxCount) {
+      crossCheck[0]++;
+      j--;
+    }
+    if (crossCheck[0] > maxCount) {
+      return Float.NaN;
+    }
+
+    j = startJ + 1;
+    while (j < maxJ && image.get(j, centerI)) {
+      crossCheck[2]++;
+      j++;
+    }
+    if (j == maxJ) {
+      return Float.NaN;
+    }
+    while (j < maxJ && !image.get(j, centerI) && crossCheck[3] < maxCount) {
+      crossCheck[3]++;
+      j++;
+    }
+    if (j == maxJ || crossCheck[3] >= maxCount) {
+      return Float.NaN;
+    }
+    while (j < maxJ && image.get(j, centerI) && crossCheck[4] < maxCount) {
+      crossCheck[4]++;
+      j++;
+    }
+    if (crossCheck[4] >= maxCount) {
+      return Float.NaN;
+    }
+
+    final int total = crossCheck[0] + crossCheck[1] + crossCheck[2] + crossCheck[3] + crossCheck[4];
+    if (5 * Math.abs(total - originalTotal) >= originalTotal) {
+      return Float.NaN;
+    }
+    return foundPatternCross(crossCheck) ? centerFromEnd(crossCheck, j) : Float.NaN;
+  }
+
+  /**
+   * Picks the three candidates closest to the corners of a right isosceles triangle with equal
+   * module sizes, and orders them.
+   */
+  private boolean selectBestPatterns() {
+    if (candidateCount < 3) {
+      return false;
+    }
+    float bestScore = Float.MAX_VALUE;
+    int bestA = -1;
+    int bestB = -1;
+    int bestC = -1;
+    for (int a = 0; a < candidateCount - 2; a++) {
+      for (int b = a + 1; b < candidateCount - 1; b++) {
+        for (int c = b + 1; c < candidateCount; c++) {
+          final float score = triangleScore(a, b, c);
+          if (score < bestScore) {
+            bestScore = score;
+            bestA = a;
+            bestB = b;
+            bestC = c;
+          }
+        }
+      }
+    }
+    if (bestA < 0) {
+      return false;
+    }
+
+    // The corner opposite the longest side is the top left pattern
+    final float ab = squaredDistance(bestA, bestB);
+    final float bc = squaredDistance(bestB, bestC);
+    final float ac = squaredDistance(bestA, bestC);
+    int topLeft;
+    int first;
+    int second;
+    if (bc >= ab && bc >= ac) {
+      topLeft = bestA;
+      first = bestB;
+      second = bestC;
+    }
+    else if (ac >= ab) {
+      topLeft = bestB;
+      first = bestA;
+      second = bestC;
+    }
+    else {
+      topLeft = bestC;
+      first = bestA;
+      second = bestB;
+    }
+    // Top right and bottom left follow clockwise, with y pointing down
+    final float cross = (centerX[first] - centerX[topLeft]) * (centerY[second] - centerY[topLeft])
+        - (centerY[first] - centerY[topLeft]) * (centerX[second] - centerX[topLeft]);
+    if (cross < 0) {
+      final int swap = first;
+      first = second;
+      second = swap;
+    }
+    store(0, topLeft);
+    store(3, first);
+    store(6, second);
+    return true;
+  }
+
+  private float triangleScore(int a, int b, int c) {
+    final float averageSize = (moduleSize[a] + moduleSize[b] + moduleSize[c]) / 3f;
+    final float sizeSpread = (Math.abs(moduleSize[a] - averageSize) + Math.abs(
+        moduleSize[b] - averageSize) + Math.abs(moduleSize[c] - averageSize)) / averageSize;
+    if (sizeSpread > 0.5f) {
+      return Float.MAX_VALUE;
+    }
+
+    final float ab = squaredDistance(a, b);
+    final float bc = squaredDistance(b, c);
+    final float ac = squaredDistance(a, c);
+    final float longest = Math.max(ab, Math.max(bc, ac));
+    final float shortSum = ab + bc + ac - longest;
+    final float shorter = Math.min(ab, Math.min(bc, ac));
+    final float other = shortSum - shorter;
+    // The finder patterns are at least 14 modules apart
+    if (shorter < 196f * averageSize * averageSize) {
+      return Float.MAX_VALUE;
+    }
+    final float rightAngle = Math.abs(shortSum - longest) / longest;
+    final float isosceles = Math.abs(other - shorter) / other;
+    if (rightAngle > 0.5f || isosceles > 0.75f) {
+      return Float.MAX_VALUE;
+    }
+    // Candidates seen on only one row are likely noise
+    final int fewestHits = Math.min(hits[a], Math.min(hits[b], hits[c]));
+    return rightAngle + isosceles + sizeSpread + (fewestHits < 2 ? 1f : 0f);
+  }
+
+  private float squaredDistance(int a, int b) {
+    final float dx = centerX[a] - centerX[b];
+    final float dy = centerY[a] - centerY[b];
+    return dx * dx + dy * dy;
+  }
+
+  private void store(int offset, int candidate) {
+    patterns[offset] = centerX[candidate];
+    patterns[offset + 1] = centerY[candidate];
+    patterns[offset + 2] = moduleSize[candidate];
+  }
+}
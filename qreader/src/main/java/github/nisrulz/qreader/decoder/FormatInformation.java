@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader.decoder;
+
+/**
+ * Decodes the format information of a symbol: its error correction level and data mask.
+ */
+final class FormatInformation {
+  private static final int FORMAT_INFO_POLY = 0x537;
+  private static final int FORMAT_INFO_MASK = 0x5412;
+  /**
+   * The block table index of each error correction level by its two format bits.
+   */
+  private static final int[] EC_LEVEL_FOR_BITS = { Version.EC_M, Version.EC_L, Version.EC_H,
+      Version.EC_Q };
+  /**
+   * The masked format information of each of the 32 possible formats.
+   */
+  private static final int[] FORMAT_INFOS = new int[32];
+
+  static {
+    for (int data = 0; data < FORMAT_INFOS.length; data++) {
+      FORMAT_INFOS[data] =
+          ((data << 10) | Version.bchRemainder(data, FORMAT_INFO_POLY)) ^ FORMAT_INFO_MASK;
+    }
+  }
+
+  private FormatInformation() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Decodes format information from the two copies in a symbol, tolerating up to 3 wrong bits.
+   *
+   * @param bits1
+   *     the 15 bits of the copy around the top left finder pattern
+   * @param bits2
+   *     the 15 bits of the copy split between the other finder patterns
+   * @return the format, error correction level index times 8 plus data mask, or -1 if both
+   * copies are too far from any valid format
+   */
+  static int decode(int bits1, int bits2) {
+    int bestDifference = Integer.MAX_VALUE;
+    int bestData = 0;
+    for (int data = 0; data < FORMAT_INFOS.length; data++) {
+      final int difference = Math.min(Integer.bitCount(bits1 ^ FORMAT_INFOS[data]),
+          Integer.bitCount(bits2 ^ FORMAT_INFOS[data]));
+      if (difference < bestDifference) {
+        bestDifference = difference;
+        bestData = data;
+      }
+    }
+    if (bestDifference > 3) {
+      return -1;
+    }
+    return EC_LEVEL_FOR_BITS[bestData >> 3] * 8 + (bestData & 7);
+  }
+
+  /**
+   * Gets whether a data mask flips a module.
+   *
+   * @param mask
+   *     the data mask, 0 to 7
+   * @param row
+   *     the row
+   * @param column
+   *     the column
+   * @return true if the module is flipped
+   */
+  static boolean isMasked(int mask, int row, int column) {
+    switch (mask) {
+      case 0:
+        return ((row + column) & 1) == 0;
+      case 1:
+        return (row & 1) == 0;
+      case 2:
+        return column % 3 == 0;
+      case 3:
+        return (row + column) % 3 == 0;
+      case 4:
+        return (((row >> 1) + column / 3) & 1) == 0;
+      case 5:
+        return (row * column & 1) + row * column % 3 == 0;
+      case 6:
+        return (((row * column & 1) + row * column % 3) & 1) == 0;
+      default:
+        return ((((row + column) & 1) + row * column % 3) & 1) == 0;
+    }
+  }
+}
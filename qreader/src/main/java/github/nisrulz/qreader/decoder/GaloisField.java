@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader.decoder;
+
+/**
+ * Arithmetic in GF(256) with the QR code primitive polynomial x^8 + x^4 + x^3 + x^2 + 1, by
+ * logarithm and antilogarithm tables.
+ */
+final class GaloisField {
+  private static final int PRIMITIVE = 0x11d;
+  /**
+   * Powers of the generator 2. Doubled in length so the sum of two logarithms needs no modulo.
+   */
+  static final int[] EXP = new int[512];
+  /**
+   * Logarithms to the base 2, undefined for 0.
+   */
+  static final int[] LOG = new int[256];
+
+  static {
+    int x = 1;
+    for (int i = 0; i < 255; i++) {
+      EXP[i] = x;
+      LOG[x] = i;
+      x <<= 1;
+      if (x >= 256) {
+        x ^= PRIMITIVE;
+      }
+    }
+    for (int i = 255; i < EXP.length; i++) {
+      EXP[i] = EXP[i - 255];
+    }
+  }
+
+  private GaloisField() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Multiplies two elements.
+   *
+   * @param a
+   *     the first element
+   * @param b
+   *     the second element
+   * @return the product
+   */
+  static int multiply(int a, int b) {
+    if (a == 0 || b == 0) {
+      return 0;
+    }
+    return EXP[LOG[a] + LOG[b]];
+  }
+
+  /**
+   * Gets the multiplicative inverse of an element.
+   *
+   * @param a
+   *     the element, not 0
+   * @return the inverse
+   */
+  static int inverse(int a) {
+    return EXP[255 - LOG[a]];
+  }
+}
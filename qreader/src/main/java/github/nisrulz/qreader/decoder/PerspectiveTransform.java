@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader.decoder;
+
+/**
+ * A projective transform mapping one quadrilateral onto another, used to find the image position
+ * of every module of a symbol. The coefficients are recomputed in place for every symbol.
+ */
+final class PerspectiveTransform {
+  private float a11;
+  private float a12;
+  private float a13;
+  private float a21;
+  private float a22;
+  private float a23;
+  private float a31;
+  private float a32;
+  private float a33;
+
+  /**
+   * Sets the transform mapping the first quadrilateral onto the second. Corners are given
+   * clockwise, in the same order for both.
+   *
+   * @param src
+   *     the corners of the source quadrilateral, x and y of each
+   * @param dst
+   *     the corners of the destination quadrilateral, x and y of each
+   */
+  void setQuadrilateralToQuadrilateral(float[] src, float[] dst) {
+    // Source to unit square is the adjoint of unit square to source
+    setSquareToQuadrilateral(src);
+    final float s11 = a22 * a33 - a23 * a32;
+    final float s21 = a23 * a31 - a21 * a33;
+    final float s31 = a21 * a32 - a22 * a31;
+    final float s12 = a13 * a32 - a12 * a33;
+    final float s22 = a11 * a33 - a13 * a31;
+    final float s32 = a12 * a31 - a11 * a32;
+    final float s13 = a12 * a23 - a13 * a22;
+    final float s23 = a13 * a21 - a11 * a23;
+    final float s33 = a11 * a22 - a12 * a21;
+
+    setSquareToQuadrilateral(dst);
+    final float d11 = a11;
+    final float d12 = a12;
+    final float d13 = a13;
+    final float d21 = a21;
+    final float d22 = a22;
+    final float d23 = a23;
+    final float d31 = a31;
+    final float d32 = a32;
+    final float d33 = a33;
+
+    a11 = d11 * s11 + d21 * s12 + d31 * s13;
+    a21 = d11 * s21 + d21 * s22 + d31 * s23;
+    a31 = d11 * s31 + d21 * s32 + d31 * s33;
+    a12 = d12 * s11 + d22 * s12 + d32 * s13;
+    a22 = d12 * s21 + d22 * s22 + d32 * s23;
+    a32 = d12 * s31 + d22 * s32 + d32 * s33;
+    a13 = d13 * s11 + d23 * s12 + d33 * s13;
+    a23 = d13 * s21 + d23 * s22 + d33 * s23;
+    a33 = d13 * s31 + d23 * s32 + d33 * s33;
+  }
+
+  /**
+   * Gets the x coordinate a point is mapped to.
+   *
+   * @param x
+   *     the x coordinate
+   * @param y
+   *     the y coordinate
+   * @return the mapped x coordinate
+   */
+  float transformX(float x, float y) {
+    return (a11 * x + a21 * y + a31) / (a13 * x + a23 * y + a33);
+  }
+
+  /**
+   * Gets the y coordinate a point is mapped to.
+   *
+   * @param x
+   *     the x coordinate
+   * @param y
+   *     the y coordinate
+   * @return the mapped y coordinate
+   */
+  float transformY(float x, float y) {
+    return (a12 * x + a22 * y + a32) / (a13 * x + a23 * y + a33);
+  }
+
+  private void setSquareToQuadrilateral(float[] corners) {
+    final float x0 = corners[0];
+    final float y0 = corners[1];
+    final float x1 = corners[2];
+    final float y1 = corners[3];
+    final float x2 = corners[4];
+    final float y2 = corners[5];
+    final float x3 = corners[6];
+    final float y3 = corners[7];
+    final float dx3 = x0 - x1 + x2 - x3;
+    final float dy3 = y0 - y1 + y2 - y3;
+    if (dx3 == 0f && dy3 == 0f) {
+      // Affine
+      a11 = x1 - x0;
+      a21 = x2 - x1;
+      a31 = x0;
+      a12 = y1 - y0;
+      a22 = y2 - y1;
+      a32 = y0;
+      a13 = 0f;
+      a23 = 0f;
+    }
+    else {
+      final float dx1 = x1 - x2;
+      final float dx2 = x3 - x2;
+      final float dy1 = y1 - y2;
+      final float dy2 = y3 - y2;
+      final float denominator = dx1 * dy2 - dx2 * dy1;
+      a13 = (dx3 * dy2 - dx2 * dy3) / denominator;
+      a23 = (dx1 * dy3 - dx3 * dy1) / denominator;
+      a11 = x1 - x0 + a13 * x1;
+      a21 = x3 - x0 + a23 * x3;
+      a31 = x0;
+      a12 = y1 - y0 + a13 * y1;
+      a22 = y3 - y0 + a23 * y3;
+      a32 = y0;
+    }
+    a33 = 1f;
+  }
+}
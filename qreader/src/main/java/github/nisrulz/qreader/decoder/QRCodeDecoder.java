@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader.decoder;
+
+import java.util.Arrays;
+
+/**
+ * Decodes QR codes from luminance images in plain Java, without Play Services.
+ * <p>
+ * The image is binarized against local thresholds, the symbol located by its finder and
+ * alignment patterns and sampled module by module. The codewords are read past the function
+ * patterns, unmasked, split into their error correction blocks, corrected and decoded into
+ * content. Codewords with modules outside the image are corrected as erasures.
+ * <p>
+ * All working buffers are kept and reused, so decoding frames without a code does not allocate
+ * once the buffers have grown to the frame size. Only a successful decode allocates its result.
+ * An instance must not be used from several threads at once.
+ */
+public final class QRCodeDecoder {
+  /**
+   * The most codewords a symbol holds, at version 40.
+   */
+  private static final int MAX_CODEWORDS = 3706;
+  /**
+   * The most codewords in one error correction block.
+   */
+  private static final int MAX_BLOCK_CODEWORDS = 153;
+
+  private final AdaptiveBinarizer binarizer = new AdaptiveBinarizer();
+  private final BitMatrix image = new BitMatrix();
+  private final SymbolLocator locator = new SymbolLocator();
+  private final BitStreamDecoder bitStreamDecoder = new BitStreamDecoder();
+  private final byte[] codewords = new byte[MAX_CODEWORDS];
+  private final byte[] dataCodewords = new byte[MAX_CODEWORDS];
+  private final boolean[] erasedCodewords = new boolean[MAX_CODEWORDS];
+  private final int[] block = new int[MAX_BLOCK_CODEWORDS];
+  private final int[] blockErasures = new int[MAX_BLOCK_CODEWORDS];
+  private final ReedSolomonDecoder reedSolomonDecoder = new ReedSolomonDecoder();
+
+  /**
+   * Decodes a QR code from a luminance image, such as the Y plane of a camera frame.
+   *
+   * @param luminance
+   *     the luminance data, one byte per pixel
+   * @param offset
+   *     the offset of the first pixel
+   * @param width
+   *     the width
+   * @param height
+   *     the height
+   * @param rowStride
+   *     the distance between the starts of two rows
+   * @return the decoded code, or null if none was found or it could not be decoded
+   */
+  public QRCodeResult decode(byte[] luminance, int offset, int width, int height, int rowStride) {
+    if (!binarizer.binarize(luminance, offset, width, height, rowStride, image)) {
+      return null;
+    }
+    return decode(image);
+  }
+
+  /**
+   * Decodes a QR code from a binarized image.
+   *
+   * @param image
+   *     the image
+   * @return the decoded code, or null if none was found or it could not be decoded
+   */
+  QRCodeResult decode(BitMatrix image) {
+    if (!locator.locate(image)) {
+      return null;
+    }
+    final BitMatrix modules = locator.modules;
+    final int format = FormatInformation.decode(readFormatBits1(modules),
+        readFormatBits2(modules));
+    if (format < 0) {
+      return null;
+    }
+    final Version version = readVersion(modules);
+    if (version == null) {
+      return null;
+    }
+
+    readCodewords(modules, locator.erasedCount == 0 ? null : locator.erased, version,
+        format & 7);
+    final int dataCount = deinterleave(version.getEcBlocks(format >> 3));
+    if (dataCount < 0 || !bitStreamDecoder.decode(dataCodewords, dataCount, version)) {
+      return null;
+    }
+    final int segmentCount = bitStreamDecoder.segmentCount;
+    return new QRCodeResult(Arrays.copyOf(bitStreamDecoder.content, bitStreamDecoder.length),
+        Arrays.copyOf(bitStreamDecoder.segmentEnds, segmentCount),
+        Arrays.copyOf(bitStreamDecoder.segmentCharsets, segmentCount), locator.corners.clone(),
+        version.getNumber(),
+        bitStreamDecoder.sequenceIndex, bitStreamDecoder.sequenceCount,
+        bitStreamDecoder.sequenceParity);
+  }
+
+  private static int copyBit(BitMatrix modules, int x, int y, int bits) {
+    return modules.get(x, y) ? (bits << 1) | 1 : bits << 1;
+  }
+
+  /**
+   * Reads the format information around the top left finder pattern.
+   */
+  private static int readFormatBits1(BitMatrix modules) {
+    int bits = 0;
+    for (int x = 0; x < 6; x++) {
+      bits = copyBit(modules, x, 8, bits);
+    }
+    // Skipping the vertical timing pattern
+    bits = copyBit(modules, 7, 8, bits);
+    bits = copyBit(modules, 8, 8, bits);
+    bits = copyBit(modules, 8, 7, bits);
+    for (int y = 5; y >= 0; y--) {
+      bits = copyBit(modules, 8, y, bits);
+    }
+    return bits;
+  }
+
+  /**
+   * Reads the format information split between the top right and bottom left finder patterns.
+   */
+  private static int readFormatBits2(BitMatrix modules) {
+    final int dimension = modules.getHeight();
+    int bits = 0;
+    for (int y = dimension - 1; y >= dimension - 7; y--) {
+      bits = copyBit(modules, 8, y, bits);
+    }
+    for (int x = dimension - 8; x < dimension; x++) {
+      bits = copyBit(modules, x, 8, bits);
+    }
+    return bits;
+  }
+
+  /**
+   * Gets the version from the dimension, checked against the version information of the larger
+   * versions.
+   */
+  private static Version readVersion(BitMatrix modules) {
+    final int dimension = modules.getHeight();
+    final Version provisional = Version.forDimension(dimension);
+    if (provisional.getNumber() <= 6) {
+      return provisional;
+    }
+    final int min = dimension - 11;
+    int bits = 0;
+    for (int y = 5; y >= 0; y--) {
+      for (int x = dimension - 9; x >= min; x--) {
+        bits = copyBit(modules, x, y, bits);
+      }
+    }
+    Version version = Version.decodeVersionInformation(bits);
+    if (version != null && version.getDimension() == dimension) {
+      return version;
+    }
+    bits = 0;
+    for (int x = 5; x >= 0; x--) {
+      for (int y = dimension - 9; y >= min; y--) {
+        bits = copyBit(modules, x, y, bits);
+      }
+    }
+    version = Version.decodeVersionInformation(bits);
+    if (version != null && version.getDimension() == dimension) {
+      return version;
+    }
+    return null;
+  }
+
+  /**
+   * Reads the codewords in their zigzag order, two columns at a time from the bottom right,
+   * removing the data mask on the way.
+   */
+  private void readCodewords(BitMatrix modules, BitMatrix erased, Version version, int mask) {
+    final BitMatrix functionPattern = version.getFunctionPattern();
+    final int dimension = modules.getHeight();
+    boolean readingUp = true;
+    int count = 0;
+    int currentByte = 0;
+    int bitsRead = 0;
+    boolean currentErased = false;
+    for (int right = dimension - 1; right > 0; right -= 2) {
+      if (right == 6) {
+        // Skipping the vertical timing pattern
+        right--;
+      }
+      for (int step = 0; step < dimension; step++) {
+        final int row = readingUp ? dimension - 1 - step : step;
+        for (int c = 0; c < 2; c++) {
+          final int column = right - c;
+          if (!functionPattern.get(column, row)) {
+            currentByte <<= 1;
+            if (modules.get(column, row) != FormatInformation.isMasked(mask, row, column)) {
+              currentByte |= 1;
+            }
+            currentErased |= erased != null && erased.get(column, row);
+            if (++bitsRead == 8) {
+              erasedCodewords[count] = currentErased;
+              codewords[count++] = (byte) currentByte;
+              bitsRead = 0;
+              currentByte = 0;
+              currentErased = false;
+            }
+          }
+        }
+      }
+      readingUp = !readingUp;
+    }
+  }
+
+  /**
+   * Splits the interleaved codewords into their blocks, corrects each block and collects the
+   * data codewords.
+   * <p>
+   * The codewords hold the first data codeword of every block, then the second of every block
+   * and so on. Blocks of the second group have one more data codeword, which follows after the
+   * shorter blocks ran out. The error correction codewords are interleaved the same way.
+   *
+   * @return the number of data codewords, or -1 if a block cannot be corrected
+   */
+  private int deinterleave(int[] ecBlocks) {
+    final int ecCount = ecBlocks[0];
+    final int shortBlocks = ecBlocks[1];
+    final int shortData = ecBlocks[2];
+    final int longBlocks = ecBlocks.length > 3 ? ecBlocks[3] : 0;
+    final int totalBlocks = shortBlocks + longBlocks;
+    final int ecStart = shortData * totalBlocks + longBlocks;
+
+    int dataCount = 0;
+    for (int b = 0; b < totalBlocks; b++) {
+      final boolean isLong = b >= shortBlocks;
+      final int blockData = isLong ? shortData + 1 : shortData;
+      int erasureCount = 0;
+      for (int k = 0; k < shortData; k++) {
+        erasureCount = copyCodeword(k * totalBlocks + b, k, erasureCount);
+      }
+      if (isLong) {
+        erasureCount = copyCodeword(shortData * totalBlocks + b - shortBlocks, shortData,
+            erasureCount);
+      }
+      for (int e = 0; e < ecCount; e++) {
+        erasureCount = copyCodeword(ecStart + e * totalBlocks + b, blockData + e, erasureCount);
+      }
+      if (erasureCount > ecCount || reedSolomonDecoder.decode(block, 0, blockData + ecCount,
+          ecCount, blockErasures, erasureCount) < 0) {
+        return -1;
+      }
+      for (int k = 0; k < blockData; k++) {
+        dataCodewords[dataCount++] = (byte) block[k];
+      }
+    }
+    return dataCount;
+  }
+
+  private int copyCodeword(int from, int to, int erasureCount) {
+    block[to] = codewords[from] & 0xff;
+    if (erasedCodewords[from]) {
+      blockErasures[erasureCount++] = to;
+    }
+    return erasureCount;
+  }
+}
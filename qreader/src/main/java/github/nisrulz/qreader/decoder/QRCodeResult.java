@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader.decoder;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A QR code decoded by {@link QRCodeDecoder}.
+ * <p>
+ * The text is decoded from the bytes on the first call to {@link #getText()}, so results only
+ * read as bytes never create a string.
+ */
+public final class QRCodeResult {
+  private final byte[] bytes;
+  private final int[] segmentEnds;
+  private final Charset[] segmentCharsets;
+  private String text;
+  private final float[] corners;
+  private final int version;
+  private final int sequenceIndex;
+  private final int sequenceCount;
+  private final int sequenceParity;
+
+  /**
+   * Instantiates a new QR code result.
+   *
+   * @param bytes
+   *     the content bytes
+   * @param segmentEnds
+   *     the end offsets of the runs of bytes sharing a character set
+   * @param segmentCharsets
+   *     the character set of each run
+   * @param corners
+   *     the corners, x and y of each, clockwise from the top left
+   * @param version
+   *     the version
+   * @param sequenceIndex
+   *     the structured append position, or -1
+   * @param sequenceCount
+   *     the structured append symbol count
+   * @param sequenceParity
+   *     the structured append parity
+   */
+  QRCodeResult(byte[] bytes, int[] segmentEnds, Charset[] segmentCharsets, float[] corners,
+      int version, int sequenceIndex, int sequenceCount, int sequenceParity) {
+    this.bytes = bytes;
+    this.segmentEnds = segmentEnds;
+    this.segmentCharsets = segmentCharsets;
+    this.corners = corners;
+    this.version = version;
+    this.sequenceIndex = sequenceIndex;
+    this.sequenceCount = sequenceCount;
+    this.sequenceParity = sequenceParity;
+  }
+
+  /**
+   * Joins the symbols of a structured append sequence into one result. The bytes are
+   * concatenated in order and each symbol's segments keep their character set, a segment running
+   * on into the next symbol with the same character set being decoded as one. The joined result
+   * has the corners and version of the last symbol and is not part of a sequence.
+   *
+   * @param parts
+   *     the symbols, in sequence order
+   * @param count
+   *     the number of symbols
+   * @return the joined result
+   */
+  public static QRCodeResult join(QRCodeResult[] parts, int count) {
+    int length = 0;
+    int segmentCount = 0;
+    for (int i = 0; i < count; i++) {
+      length += parts[i].bytes.length;
+      segmentCount += parts[i].segmentEnds.length;
+    }
+    final byte[] bytes = new byte[length];
+    final int[] segmentEnds = new int[segmentCount];
+    final Charset[] segmentCharsets = new Charset[segmentCount];
+    int offset = 0;
+    int joinedCount = 0;
+    for (int i = 0; i < count; i++) {
+      final QRCodeResult part = parts[i];
+      System.arraycopy(part.bytes, 0, bytes, offset, part.bytes.length);
+      for (int s = 0; s < part.segmentEnds.length; s++) {
+        if (joinedCount != 0 && segmentCharsets[joinedCount - 1] == part.segmentCharsets[s]) {
+          segmentEnds[joinedCount - 1] = offset + part.segmentEnds[s];
+        }
+        else {
+          segmentEnds[joinedCount] = offset + part.segmentEnds[s];
+          segmentCharsets[joinedCount] = part.segmentCharsets[s];
+          joinedCount++;
+        }
+      }
+      offset += part.bytes.length;
+    }
+    final QRCodeResult last = parts[count - 1];
+    return new QRCodeResult(bytes, Arrays.copyOf(segmentEnds, joinedCount),
+        Arrays.copyOf(segmentCharsets, joinedCount), last.corners, last.version, -1, 0, 0);
+  }
+
+  /**
+   * Gets the content bytes, all segments as encoded. Numeric and alphanumeric segments are ASCII,
+   * kanji segments Shift_JIS.
+   *
+   * @return the bytes
+   */
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Gets the content text, each segment decoded with its character set. Decoded on the first
+   * call.
+   *
+   * @return the text
+   */
+  public String getText() {
+    if (text == null) {
+      if (segmentEnds.length == 1) {
+        text = new String(bytes, 0, segmentEnds[0], segmentCharsets[0]);
+      }
+      else {
+        final StringBuilder builder = new StringBuilder(bytes.length);
+        int start = 0;
+        for (int i = 0; i < segmentEnds.length; i++) {
+          builder.append(new String(bytes, start, segmentEnds[i] - start, segmentCharsets[i]));
+          start = segmentEnds[i];
+        }
+        text = builder.toString();
+      }
+    }
+    return text;
+  }
+
+  /**
+   * Gets the corners of the symbol in the image, x and y of each, clockwise from the top left
+   * corner of the symbol.
+   *
+   * @return the corners
+   */
+  public float[] getCorners() {
+    return corners;
+  }
+
+  /**
+   * Gets the version of the symbol, 1 to 40.
+   *
+   * @return the version
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * Gets the position of the symbol in its structured append sequence.
+   *
+   * @return the sequence index, or -1 if the symbol is not part of a sequence
+   */
+  public int getSequenceIndex() {
+    return sequenceIndex;
+  }
+
+  /**
+   * Gets the number of symbols in the structured append sequence.
+   *
+   * @return the sequence count, 0 if the symbol is not part of a sequence
+   */
+  public int getSequenceCount() {
+    return sequenceCount;
+  }
+
+  /**
+   * Gets the parity of the structured append sequence.
+   *
+   * @return the sequence parity
+   */
+  public int getSequenceParity() {
+    return sequenceParity;
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader.decoder;
+
+/**
+ * Corrects errors and erasures in Reed-Solomon codewords over GF(256), as used by QR codes.
+ * <p>
+ * A block with {@code ecCount} error correction codewords can be corrected as long as twice the
+ * number of errors plus the number of erasures, codewords known to be unreliable, is at most
+ * {@code ecCount}. The syndromes give the error locator polynomial through Berlekamp-Massey,
+ * started from the locator of the erasures. Its roots, found by Chien search, are the error
+ * positions, and Forney's formula gives the error values.
+ * <p>
+ * All arithmetic goes through logarithm tables. Blocks are corrected in place in the caller's
+ * buffer, the polynomials live in arrays allocated once per instance, so decoding does not
+ * allocate. An instance must not be used from several threads at once.
+ */
+public final class ReedSolomonDecoder {
+  /**
+   * The longest block, in codewords.
+   */
+  private static final int MAX_LENGTH = 255;
+
+  private final int[] syndromes = new int[MAX_LENGTH];
+  private final int[] locator = new int[MAX_LENGTH + 1];
+  private final int[] previous = new int[MAX_LENGTH + 1];
+  private final int[] scratch = new int[MAX_LENGTH + 1];
+  private final int[] evaluator = new int[MAX_LENGTH];
+  private final int[] errorPositions = new int[MAX_LENGTH];
+
+  /**
+   * Corrects a block in place.
+   *
+   * @param codewords
+   *     the buffer holding the block, data codewords first, values 0 to 255
+   * @param offset
+   *     the offset of the block in the buffer
+   * @param length
+   *     the number of codewords in the block, at most 255
+   * @param ecCount
+   *     the number of error correction codewords at the end of the block
+   * @param erasures
+   *     the positions of erased codewords within the block, or null
+   * @param erasureCount
+   *     the number of erasures
+   * @return the number of codewords corrected, or -1 if the block cannot be corrected, in which
+   * case it is left unchanged
+   */
+  public int decode(int[] codewords, int offset, int length, int ecCount, int[] erasures,
+      int erasureCount) {
+    if (length > MAX_LENGTH || ecCount >= length || erasureCount > ecCount) {
+      throw new IllegalArgumentException(
+          "Invalid block: " + length + " codewords, " + ecCount + " for error correction, "
+              + erasureCount + " erasures");
+    }
+    if (computeSyndromes(codewords, offset, length, ecCount)) {
+      return 0;
+    }
+
+    // Erasure locator, the product of (1 + X x) over the erased positions X
+    locator[0] = 1;
+    int degree = 0;
+    for (int e = 0; e < erasureCount; e++) {
+      final int x = GaloisField.EXP[length - 1 - erasures[e]];
+      degree++;
+      locator[degree] = 0;
+      for (int k = degree; k > 0; k--) {
+        locator[k] ^= GaloisField.multiply(x, locator[k - 1]);
+      }
+    }
+    degree = berlekampMassey(degree, erasureCount, ecCount);
+    if (degree < 0 || 2 * degree - erasureCount > ecCount) {
+      return -1;
+    }
+
+    // Chien search, the positions whose inverse locators are roots
+    int found = 0;
+    for (int i = 0; i < length && found <= degree; i++) {
+      final int inverse = GaloisField.EXP[(255 - (length - 1 - i)) % 255];
+      if (evaluate(locator, degree, inverse) == 0) {
+        errorPositions[found++] = i;
+      }
+    }
+    if (found != degree) {
+      return -1;
+    }
+
+    // Error evaluator, syndromes times locator modulo x^ecCount
+    for (int k = 0; k < ecCount; k++) {
+      int value = 0;
+      for (int j = 0; j <= Math.min(k, degree); j++) {
+        value ^= GaloisField.multiply(locator[j], syndromes[k - j]);
+      }
+      evaluator[k] = value;
+    }
+
+    // Forney, the value at X is X * evaluator(1 / X) / locator'(1 / X)
+    for (int f = 0; f < found; f++) {
+      final int power = length - 1 - errorPositions[f];
+      final int inverse = GaloisField.EXP[(255 - power) % 255];
+      int derivative = 0;
+      for (int j = 1; j <= degree; j += 2) {
+        derivative ^= GaloisField.multiply(locator[j], power(inverse, j - 1));
+      }
+      if (derivative == 0) {
+        return -1;
+      }
+      final int magnitude = GaloisField.multiply(GaloisField.EXP[power],
+          GaloisField.multiply(evaluate(evaluator, ecCount - 1, inverse),
+              GaloisField.inverse(derivative)));
+      scratch[f] = magnitude;
+    }
+    for (int f = 0; f < found; f++) {
+      codewords[offset + errorPositions[f]] ^= scratch[f];
+    }
+    return found;
+  }
+
+  /**
+   * Evaluates the block at the roots of the generator polynomial, powers 0 and up of 2.
+   *
+   * @return true if all syndromes are zero, the block is undamaged
+   */
+  private boolean computeSyndromes(int[] codewords, int offset, int length, int ecCount) {
+    boolean clean = true;
+    for (int j = 0; j < ecCount; j++) {
+      final int root = GaloisField.EXP[j];
+      int syndrome = 0;
+      for (int i = 0; i < length; i++) {
+        syndrome = GaloisField.multiply(syndrome, root) ^ codewords[offset + i];
+      }
+      syndromes[j] = syndrome;
+      clean &= syndrome == 0;
+    }
+    return clean;
+  }
+
+  /**
+   * Extends the erasure locator in {@link #locator} to the locator of all errors.
+   *
+   * @return the degree of the locator, or -1 if the errors cannot be located
+   */
+  private int berlekampMassey(int degree, int erasureCount, int ecCount) {
+    System.arraycopy(locator, 0, previous, 0, degree + 1);
+    int previousDegree = degree;
+    int length = erasureCount;
+    for (int r = erasureCount + 1; r <= ecCount; r++) {
+      int discrepancy = 0;
+      for (int j = 0; j <= degree && j < r; j++) {
+        discrepancy ^= GaloisField.multiply(locator[j], syndromes[r - 1 - j]);
+      }
+
+      // previous becomes x * previous
+      for (int k = previousDegree + 1; k > 0; k--) {
+        previous[k] = previous[k - 1];
+      }
+      previous[0] = 0;
+      previousDegree++;
+      if (discrepancy == 0) {
+        continue;
+      }
+
+      // locator - discrepancy * previous, keeping the old locator when the length changes
+      final int newDegree = Math.max(degree, previousDegree);
+      if (newDegree > MAX_LENGTH) {
+        return -1;
+      }
+      final boolean lengthChanges = 2 * length <= r + erasureCount - 1;
+      if (lengthChanges) {
+        System.arraycopy(locator, 0, scratch, 0, degree + 1);
+      }
+      for (int k = degree + 1; k <= newDegree; k++) {
+        locator[k] = 0;
+      }
+      for (int k = 0; k <= previousDegree; k++) {
+        locator[k] ^= GaloisField.multiply(discrepancy, previous[k]);
+      }
+      if (lengthChanges) {
+        final int inverse = GaloisField.inverse(discrepancy);
+        for (int k = 0; k <= degree; k++) {
+          previous[k] = GaloisField.multiply(scratch[k], inverse);
+        }
+        previousDegree = degree;
+        length = r + erasureCount - length;
+      }
+      degree = newDegree;
+      while (degree > 0 && locator[degree] == 0) {
+        degree--;
+      }
+    }
+    // A locator shorter than its register length does not locate all errors
+    return degree == length ? degree : -1;
+  }
+
+  /**
+   * Evaluates a polynomial, coefficients from the constant term up.
+   */
+  private static int evaluate(int[] polynomial, int degree, int x) {
+    int result = 0;
+    for (int k = degree; k >= 0; k--) {
+      result = GaloisField.multiply(result, x) ^ polynomial[k];
+    }
+    return result;
+  }
+
+  private static int power(int x, int exponent) {
+    if (exponent == 0) {
+      return 1;
+    }
+    return GaloisField.EXP[GaloisField.LOG[x] * exponent % 255];
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader.decoder;
+
+/**
+ * Locates a symbol in a binarized image and samples its modules.
+ * <p>
+ * The finder patterns give the module size, from the runs between them, and the dimension of the
+ * symbol. From version 2 the alignment pattern is looked for as a fourth point, which corrects
+ * for perspective. The modules are then read at their centers through the transform mapping
+ * module coordinates onto the image. Modules falling outside the image are recorded, so the
+ * codewords holding them can be corrected as erasures.
+ */
+final class SymbolLocator {
+  private final FinderPatternFinder finderPatternFinder = new FinderPatternFinder();
+  private final AlignmentPatternFinder alignmentPatternFinder = new AlignmentPatternFinder();
+  private final PerspectiveTransform transform = new PerspectiveTransform();
+  private final float[] source = new float[8];
+  private final float[] destination = new float[8];
+  private BitMatrix image;
+
+  /**
+   * The sampled modules after a successful {@link #locate(BitMatrix)}.
+   */
+  final BitMatrix modules = new BitMatrix();
+  /**
+   * The modules that fell outside the image after a successful {@link #locate(BitMatrix)},
+   * sampled as light. Only valid if {@link #erasedCount} is not 0.
+   */
+  final BitMatrix erased = new BitMatrix();
+  /**
+   * The number of modules that fell outside the image.
+   */
+  int erasedCount;
+  /**
+   * The image coordinates of the symbol corners after a successful {@link #locate(BitMatrix)},
+   * x and y of each, clockwise from the top left.
+   */
+  final float[] corners = new float[8];
+
+  /**
+   * Locates a symbol and samples its modules.
+   *
+   * @param image
+   *     the binarized image
+   * @return true if a symbol was found
+   */
+  boolean locate(BitMatrix image) {
+    this.image = image;
+    if (!finderPatternFinder.find(image)) {
+      return false;
+    }
+    final float[] patterns = finderPatternFinder.patterns;
+    final float topLeftX = patterns[0];
+    final float topLeftY = patterns[1];
+    final float topRightX = patterns[3];
+    final float topRightY = patterns[4];
+    final float bottomLeftX = patterns[6];
+    final float bottomLeftY = patterns[7];
+
+    final float moduleSize = (moduleSizeOneWay(topLeftX, topLeftY, topRightX, topRightY)
+        + moduleSizeOneWay(topLeftX, topLeftY, bottomLeftX, bottomLeftY)) / 2f;
+    if (!(moduleSize >= 1f)) {
+      return false;
+    }
+    final int dimension = dimension(topLeftX, topLeftY, topRightX, topRightY, bottomLeftX,
+        bottomLeftY, moduleSize);
+    final Version version = dimension < 0 ? null : Version.forDimension(dimension);
+    if (version == null) {
+      return false;
+    }
+
+    float bottomRightX = topRightX - topLeftX + bottomLeftX;
+    float bottomRightY = topRightY - topLeftY + bottomLeftY;
+    final float dimensionMinusThree = dimension - 3.5f;
+    float sourceBottomRight = dimensionMinusThree;
+    if (version.getAlignmentCenters().length > 0) {
+      // The bottom right alignment pattern sits 3 modules in from the bottom right corner
+      final float correction = 1f - 3f / (dimension - 7);
+      final float estimatedX = topLeftX + correction * (bottomRightX - topLeftX);
+      final float estimatedY = topLeftY + correction * (bottomRightY - topLeftY);
+      for (int allowance = 4; allowance <= 16; allowance <<= 1) {
+        if (alignmentPatternFinder.find(image, moduleSize, estimatedX, estimatedY, allowance)) {
+          bottomRightX = alignmentPatternFinder.x;
+          bottomRightY = alignmentPatternFinder.y;
+          sourceBottomRight = dimensionMinusThree - 3f;
+          break;
+        }
+      }
+    }
+
+    source[0] = 3.5f;
+    source[1] = 3.5f;
+    source[2] = dimensionMinusThree;
+    source[3] = 3.5f;
+    source[4] = sourceBottomRight;
+    source[5] = sourceBottomRight;
+    source[6] = 3.5f;
+    source[7] = dimensionMinusThree;
+    destination[0] = topLeftX;
+    destination[1] = topLeftY;
+    destination[2] = topRightX;
+    destination[3] = topRightY;
+    destination[4] = bottomRightX;
+    destination[5] = bottomRightY;
+    destination[6] = bottomLeftX;
+    destination[7] = bottomLeftY;
+    transform.setQuadrilateralToQuadrilateral(source, destination);
+
+    sample(dimension);
+    setCorner(0, 0, 0);
+    setCorner(2, dimension, 0);
+    setCorner(4, dimension, dimension);
+    setCorner(6, 0, dimension);
+    return true;
+  }
+
+  private void setCorner(int offset, float x, float y) {
+    corners[offset] = transform.transformX(x, y);
+    corners[offset + 1] = transform.transformY(x, y);
+  }
+
+  private void sample(int dimension) {
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    modules.reset(dimension, dimension);
+    erasedCount = 0;
+    for (int row = 0; row < dimension; row++) {
+      final float moduleY = row + 0.5f;
+      for (int column = 0; column < dimension; column++) {
+        final float moduleX = column + 0.5f;
+        int x = (int) transform.transformX(moduleX, moduleY);
+        int y = (int) transform.transformY(moduleX, moduleY);
+        // Modules just outside the image are moved onto its edge, the others are unknown
+        if (x < -1 || x > width || y < -1 || y > height) {
+          if (erasedCount++ == 0) {
+            erased.reset(dimension, dimension);
+          }
+          erased.set(column, row);
+          continue;
+        }
+        x = Math.min(Math.max(x, 0), width - 1);
+        y = Math.min(Math.max(y, 0), height - 1);
+        if (image.get(x, y)) {
+          modules.set(column, row);
+        }
+      }
+    }
+  }
+
+  private static int dimension(float topLeftX, float topLeftY, float topRightX, float topRightY,
+      float bottomLeftX, float bottomLeftY, float moduleSize) {
+    final int topDimension = Math.round(distance(topLeftX, topLeftY, topRightX, topRightY)
+        / moduleSize);
+    final int leftDimension = Math.round(distance(topLeftX, topLeftY, bottomLeftX, bottomLeftY)
+        / moduleSize);
+    int dimension = (topDimension + leftDimension) / 2 + 7;
+    // Dimensions are 1 modulo 4, one module off either way is corrected
+    switch (dimension & 3) {
+      case 0:
+        dimension++;
+        break;
+      case 2:
+        dimension--;
+        break;
+      case 3:
+        return -1;
+      default:
+        break;
+    }
+    return dimension;
+  }
+
+  private float moduleSizeOneWay(float fromX, float fromY, float toX, float toY) {
+    final float there = blackWhiteBlackRunBothWays((int) fromX, (int) fromY, (int) toX,
+        (int) toY);
+    final float back = blackWhiteBlackRunBothWays((int) toX, (int) toY, (int) fromX, (int) fromY);
+    if (Float.isNaN(there)) {
+      return back / 7f;
+    }
+    if (Float.isNaN(back)) {
+      return there / 7f;
+    }
+    // Each run spans the 7 modules of a finder pattern
+    return (there + back) / 14f;
+  }
+
+  private float blackWhiteBlackRunBothWays(int fromX, int fromY, int toX, int toY) {
+    float result = blackWhiteBlackRun(fromX, fromY, toX, toY);
+
+    // The same run in the opposite direction, clipped to the image
+    float scale = 1f;
+    int otherToX = fromX - (toX - fromX);
+    if (otherToX < 0) {
+      scale = fromX / (float) (fromX - otherToX);
+      otherToX = 0;
+    }
+    else if (otherToX >= image.getWidth()) {
+      scale = (image.getWidth() - 1 - fromX) / (float) (otherToX - fromX);
+      otherToX = image.getWidth() - 1;
+    }
+    int otherToY = (int) (fromY - (toY - fromY) * scale);
+    scale = 1f;
+    if (otherToY < 0) {
+      scale = fromY / (float) (fromY - otherToY);
+      otherToY = 0;
+    }
+    else if (otherToY >= image.getHeight()) {
+      scale = (image.getHeight() - 1 - fromY) / (float) (otherToY - fromY);
+      otherToY = image.getHeight() - 1;
+    }
+    otherToX = (int) (fromX + (otherToX - fromX) * scale);
+
+    result += blackWhiteBlackRun(fromX, fromY, otherToX, otherToY);
+    // The center pixel was counted twice
+    return result - 1f;
+  }
+
+  /**
+   * Measures the run from the center of a finder pattern over its dark center, light ring and
+   * dark ring, walking the line to another point.
+   */
+  private float blackWhiteBlackRun(int fromX, int fromY, int toX, int toY) {
+    final boolean steep = Math.abs(toY - fromY) > Math.abs(toX - fromX);
+    if (steep) {
+      int swap = fromX;
+      fromX = fromY;
+      fromY = swap;
+      swap = toX;
+      toX = toY;
+      toY = swap;
+    }
+
+    final int dx = Math.abs(toX - fromX);
+    final int dy = Math.abs(toY - fromY);
+    int error = -dx / 2;
+    final int xStep = fromX < toX ? 1 : -1;
+    final int yStep = fromY < toY ? 1 : -1;
+
+    int state = 0;
+    final int xLimit = toX + xStep;
+    for (int x = fromX, y = fromY; x != xLimit; x += xStep) {
+      final int realX = steep ? y : x;
+      final int realY = steep ? x : y;
+      // Dark, then light, then dark again
+      if ((state == 1) == image.get(realX, realY)) {
+        if (state == 2) {
+          return distance(x, y, fromX, fromY);
+        }
+        state++;
+      }
+      error += dy;
+      if (error > 0) {
+        if (y == toY) {
+          break;
+        }
+        y += yStep;
+        error -= dx;
+      }
+    }
+    if (state == 2) {
+      return distance(toX + xStep, toY, fromX, fromY);
+    }
+    return Float.NaN;
+  }
+
+  private static float distance(float x1, float y1, float x2, float y2) {
+    final float dx = x1 - x2;
+    final float dy = y1 - y2;
+    return (float) Math.sqrt(dx * dx + dy * dy);
+  }
+}
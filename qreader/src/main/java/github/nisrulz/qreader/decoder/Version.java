@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader.decoder;
+
+/**
+ * The layout of a QR code version: its size, alignment patterns and error correction blocks.
+ */
+final class Version {
+  /**
+   * Index of error correction level L in the block tables.
+   */
+  static final int EC_L = 0;
+  /**
+   * Index of error correction level M in the block tables.
+   */
+  static final int EC_M = 1;
+  /**
+   * Index of error correction level Q in the block tables.
+   */
+  static final int EC_Q = 2;
+  /**
+   * Index of error correction level H in the block tables.
+   */
+  static final int EC_H = 3;
+
+  /**
+   * Error correction blocks per version and level: the error correction codewords per block,
+   * then the number of blocks and data codewords of the first and, if any, the second group.
+   */
+  private static final int[][][] EC_BLOCKS = {
+      { { 7, 1, 19 }, { 10, 1, 16 }, { 13, 1, 13 }, { 17, 1, 9 } },
+      { { 10, 1, 34 }, { 16, 1, 28 }, { 22, 1, 22 }, { 28, 1, 16 } },
+      { { 15, 1, 55 }, { 26, 1, 44 }, { 18, 2, 17 }, { 22, 2, 13 } },
+      { { 20, 1, 80 }, { 18, 2, 32 }, { 26, 2, 24 }, { 16, 4, 9 } },
+      { { 26, 1, 108 }, { 24, 2, 43 }, { 18, 2, 15, 2, 16 }, { 22, 2, 11, 2, 12 } },
+      { { 18, 2, 68 }, { 16, 4, 27 }, { 24, 4, 19 }, { 28, 4, 15 } },
+      { { 20, 2, 78 }, { 18, 4, 31 }, { 18, 2, 14, 4, 15 }, { 26, 4, 13, 1, 14 } },
+      { { 24, 2, 97 }, { 22, 2, 38, 2, 39 }, { 22, 4, 18, 2, 19 }, { 26, 4, 14, 2, 15 } },
+      { { 30, 2, 116 }, { 22, 3, 36, 2, 37 }, { 20, 4, 16, 4, 17 }, { 24, 4, 12, 4, 13 } },
+      { { 18, 2, 68, 2, 69 }, { 26, 4, 43, 1, 44 }, { 24, 6, 19, 2, 20 }, { 28, 6, 15, 2, 16 } },
+      { { 20, 4, 81 }, { 30, 1, 50, 4, 51 }, { 28, 4, 22, 4, 23 }, { 24, 3, 12, 8, 13 } },
+      { { 24, 2, 92, 2, 93 }, { 22, 6, 36, 2, 37 }, { 26, 4, 20, 6, 21 }, { 28, 7, 14, 4, 15 } },
+      { { 26, 4, 107 }, { 22, 8, 37, 1, 38 }, { 24, 8, 20, 4, 21 }, { 22, 12, 11, 4, 12 } },
+      { { 30, 3, 115, 1, 116 }, { 24, 4, 40, 5, 41 }, { 20, 11, 16, 5, 17 },
+          { 24, 11, 12, 5, 13 } },
+      { { 22, 5, 87, 1, 88 }, { 24, 5, 41, 5, 42 }, { 30, 5, 24, 7, 25 }, { 24, 11, 12, 7, 13 } },
+      { { 24, 5, 98, 1, 99 }, { 28, 7, 45, 3, 46 }, { 24, 15, 19, 2, 20 },
+          { 30, 3, 15, 13, 16 } },
+      { { 28, 1, 107, 5, 108 }, { 28, 10, 46, 1, 47 }, { 28, 1, 22, 15, 23 },
+          { 28, 2, 14, 17, 15 } },
+      { { 30, 5, 120, 1, 121 }, { 26, 9, 43, 4, 44 }, { 28, 17, 22, 1, 23 },
+          { 28, 2, 14, 19, 15 } },
+      { { 28, 3, 113, 4, 114 }, { 26, 3, 44, 11, 45 }, { 26, 17, 21, 4, 22 },
+          { 26, 9, 13, 16, 14 } },
+      { { 28, 3, 107, 5, 108 }, { 26, 3, 41, 13, 42 }, { 30, 15, 24, 5, 25 },
+          { 28, 15, 15, 10, 16 } },
+      { { 28, 4, 116, 4, 117 }, { 26, 17, 42 }, { 28, 17, 22, 6, 23 }, { 30, 19, 16, 6, 17 } },
+      { { 28, 2, 111, 7, 112 }, { 28, 17, 46 }, { 30, 7, 24, 16, 25 }, { 24, 34, 13 } },
+      { { 30, 4, 121, 5, 122 }, { 28, 4, 47, 14, 48 }, { 30, 11, 24, 14, 25 },
+          { 30, 16, 15, 14, 16 } },
+      { { 30, 6, 117, 4, 118 }, { 28, 6, 45, 14, 46 }, { 30, 11, 24, 16, 25 },
+          { 30, 30, 16, 2, 17 } },
+      { { 26, 8, 106, 4, 107 }, { 28, 8, 47, 13, 48 }, { 30, 7, 24, 22, 25 },
+          { 30, 22, 15, 13, 16 } },
+      { { 28, 10, 114, 2, 115 }, { 28, 19, 46, 4, 47 }, { 28, 28, 22, 6, 23 },
+          { 30, 33, 16, 4, 17 } },
+      { { 30, 8, 122, 4, 123 }, { 28, 22, 45, 3, 46 }, { 30, 8, 23, 26, 24 },
+          { 30, 12, 15, 28, 16 } },
+      { { 30, 3, 117, 10, 118 }, { 28, 3, 45, 23, 46 }, { 30, 4, 24, 31, 25 },
+          { 30, 11, 15, 31, 16 } },
+      { { 30, 7, 116, 7, 117 }, { 28, 21, 45, 7, 46 }, { 30, 1, 23, 37, 24 },
+          { 30, 19, 15, 26, 16 } },
+      { { 30, 5, 115, 10, 116 }, { 28, 19, 47, 10, 48 }, { 30, 15, 24, 25, 25 },
+          { 30, 23, 15, 25, 16 } },
+      { { 30, 13, 115, 3, 116 }, { 28, 2, 46, 29, 47 }, { 30, 42, 24, 1, 25 },
+          { 30, 23, 15, 28, 16 } },
+      { { 30, 17, 115 }, { 28, 10, 46, 23, 47 }, { 30, 10, 24, 35, 25 }, { 30, 19, 15, 35, 16 } },
+      { { 30, 17, 115, 1, 116 }, { 28, 14, 46, 21, 47 }, { 30, 29, 24, 19, 25 },
+          { 30, 11, 15, 46, 16 } },
+      { { 30, 13, 115, 6, 116 }, { 28, 14, 46, 23, 47 }, { 30, 44, 24, 7, 25 },
+          { 30, 59, 16, 1, 17 } },
+      { { 30, 12, 121, 7, 122 }, { 28, 12, 47, 26, 48 }, { 30, 39, 24, 14, 25 },
+          { 30, 22, 15, 41, 16 } },
+      { { 30, 6, 121, 14, 122 }, { 28, 6, 47, 34, 48 }, { 30, 46, 24, 10, 25 },
+          { 30, 2, 15, 64, 16 } },
+      { { 30, 17, 122, 4, 123 }, { 28, 29, 46, 14, 47 }, { 30, 49, 24, 10, 25 },
+          { 30, 24, 15, 46, 16 } },
+      { { 30, 4, 122, 18, 123 }, { 28, 13, 46, 32, 47 }, { 30, 48, 24, 14, 25 },
+          { 30, 42, 15, 32, 16 } },
+      { { 30, 20, 117, 4, 118 }, { 28, 40, 47, 7, 48 }, { 30, 43, 24, 22, 25 },
+          { 30, 10, 15, 67, 16 } },
+      { { 30, 19, 118, 6, 119 }, { 28, 18, 47, 31, 48 }, { 30, 34, 24, 34, 25 },
+          { 30, 20, 15, 61, 16 } }
+  };
+
+  /**
+   * BCH code generator of the version information.
+   */
+  private static final int VERSION_INFO_POLY = 0x1f25;
+
+  private static final Version[] VERSIONS = new Version[40];
+
+  static {
+    for (int i = 0; i < VERSIONS.length; i++) {
+      VERSIONS[i] = new Version(i + 1);
+    }
+  }
+
+  private final int number;
+  private final int[] alignmentCenters;
+  private final int totalCodewords;
+  private BitMatrix functionPattern;
+
+  private Version(int number) {
+    this.number = number;
+    this.alignmentCenters = computeAlignmentCenters(number);
+    final int[] blocks = EC_BLOCKS[number - 1][EC_L];
+    int total = blocks[1] * (blocks[0] + blocks[2]);
+    if (blocks.length > 3) {
+      total += blocks[3] * (blocks[0] + blocks[4]);
+    }
+    this.totalCodewords = total;
+  }
+
+  /**
+   * Gets a version by number.
+   *
+   * @param number
+   *     the number, 1 to 40
+   * @return the version
+   */
+  static Version forNumber(int number) {
+    return VERSIONS[number - 1];
+  }
+
+  /**
+   * Gets the version of a symbol size.
+   *
+   * @param dimension
+   *     the number of modules per side
+   * @return the version, or null if no version has that size
+   */
+  static Version forDimension(int dimension) {
+    if (dimension % 4 != 1 || dimension < 21 || dimension > 177) {
+      return null;
+    }
+    return VERSIONS[(dimension - 17) / 4 - 1];
+  }
+
+  /**
+   * Decodes version information read from a symbol, tolerating up to 3 wrong bits.
+   *
+   * @param versionBits
+   *     the 18 bits of version information
+   * @return the version, or null if the bits are too far from any valid version information
+   */
+  static Version decodeVersionInformation(int versionBits) {
+    int bestDifference = Integer.MAX_VALUE;
+    int bestVersion = 0;
+    for (int number = 7; number <= 40; number++) {
+      final int difference = Integer.bitCount(versionBits ^ versionInformation(number));
+      if (difference < bestDifference) {
+        bestDifference = difference;
+        bestVersion = number;
+      }
+    }
+    return bestDifference <= 3 ? forNumber(bestVersion) : null;
+  }
+
+  /**
+   * Computes the version information of a version, the version number followed by its BCH
+   * error correction bits.
+   *
+   * @param number
+   *     the version number, 7 to 40
+   * @return the 18 bits of version information
+   */
+  static int versionInformation(int number) {
+    return (number << 12) | bchRemainder(number, VERSION_INFO_POLY);
+  }
+
+  /**
+   * Computes the remainder of the BCH code of a value.
+   *
+   * @param value
+   *     the value
+   * @param poly
+   *     the generator polynomial
+   * @return the remainder, as many bits as the degree of the polynomial
+   */
+  static int bchRemainder(int value, int poly) {
+    final int degree = 31 - Integer.numberOfLeadingZeros(poly);
+    int remainder = value << degree;
+    while (31 - Integer.numberOfLeadingZeros(remainder) >= degree) {
+      remainder ^= poly << (31 - Integer.numberOfLeadingZeros(remainder) - degree);
+    }
+    return remainder;
+  }
+
+  /**
+   * Gets the version number.
+   *
+   * @return the number
+   */
+  int getNumber() {
+    return number;
+  }
+
+  /**
+   * Gets the number of modules per side.
+   *
+   * @return the dimension
+   */
+  int getDimension() {
+    return 17 + 4 * number;
+  }
+
+  /**
+   * Gets the row and column coordinates of the alignment pattern centers.
+   *
+   * @return the coordinates, empty for version 1
+   */
+  int[] getAlignmentCenters() {
+    return alignmentCenters;
+  }
+
+  /**
+   * Gets the number of codewords, data and error correction.
+   *
+   * @return the total codewords
+   */
+  int getTotalCodewords() {
+    return totalCodewords;
+  }
+
+  /**
+   * Gets the error correction blocks of a level: the error correction codewords per block, then
+   * the number of blocks and data codewords of each group.
+   *
+   * @param ecLevel
+   *     the error correction level, one of the EC constants
+   * @return the blocks
+   */
+  int[] getEcBlocks(int ecLevel) {
+    return EC_BLOCKS[number - 1][ecLevel];
+  }
+
+  /**
+   * Gets the modules holding finder, alignment and timing patterns and format and version
+   * information, which are skipped when reading codewords. Built on first use.
+   *
+   * @return the function pattern
+   */
+  synchronized BitMatrix getFunctionPattern() {
+    if (functionPattern == null) {
+      functionPattern = buildFunctionPattern();
+    }
+    return functionPattern;
+  }
+
+  private BitMatrix buildFunctionPattern() {
+    final int dimension = getDimension();
+    final BitMatrix pattern = new BitMatrix();
+    pattern.reset(dimension, dimension);
+
+    // Finder patterns with separators and format information
+    pattern.setRegion(0, 0, 9, 9);
+    pattern.setRegion(dimension - 8, 0, 8, 9);
+    pattern.setRegion(0, dimension - 8, 9, 8);
+
+    // Alignment patterns, except where they would overlap the finder patterns
+    final int max = alignmentCenters.length;
+    for (int x = 0; x < max; x++) {
+      final int top = alignmentCenters[x] - 2;
+      for (int y = 0; y < max; y++) {
+        if ((x == 0 && (y == 0 || y == max - 1)) || (x == max - 1 && y == 0)) {
+          continue;
+        }
+        pattern.setRegion(alignmentCenters[y] - 2, top, 5, 5);
+      }
+    }
+
+    // Timing patterns
+    pattern.setRegion(6, 9, 1, dimension - 17);
+    pattern.setRegion(9, 6, dimension - 17, 1);
+
+    if (number > 6) {
+      // Version information
+      pattern.setRegion(dimension - 11, 0, 3, 6);
+      pattern.setRegion(0, dimension - 11, 6, 3);
+    }
+    return pattern;
+  }
+
+  private static int[] computeAlignmentCenters(int number) {
+    if (number == 1) {
+      return new int[0];
+    }
+    final int count = number / 7 + 2;
+    final int last = 4 * number + 10;
+    final int step = number == 32 ? 26 : (number * 4 + count * 2 + 1) / (count * 2 - 2) * 2;
+    final int[] centers = new int[count];
+    centers[0] = 6;
+    for (int i = count - 1, position = last; i > 0; i--, position -= step) {
+      centers[i] = position;
+    }
+    return centers;
+  }
+}
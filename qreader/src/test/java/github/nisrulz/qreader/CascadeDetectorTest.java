@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package github.nisrulz.qreader;
+
+import android.graphics.ImageFormat;
+import android.util.SparseArray;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CascadeDetectorTest {
+  private static final int WIDTH = 64;
+  private static final int HEIGHT = 48;
+
+  @Test
+  public void runsLowerPriorityFormatsEveryNthFrameAroundPyramid() throws Exception {
+    final CountingDetector primary = new CountingDetector();
+    final CountingDetector lower = new CountingDetector();
+    final Detector<Barcode> detector = new CascadeDetector(new PyramidDetector(primary),
+        Collections.<Detector<Barcode>>singletonList(lower), 3, 0);
+
+    for (int i = 1; i <= 9; i++) {
+      detector.detect(frame());
+      assertEquals(i / 3, lower.widths.size());
+    }
+    // Every level of every frame went to the primary detector, the lower one saw whole frames
+    assertEquals(9 * PyramidDetector.LEVEL_COUNT, primary.widths.size());
+    assertEquals(Collections.nCopies(3, WIDTH), lower.widths);
+  }
+
+  private static Frame frame() {
+    return new Frame.Builder()
+        .setImageData(ByteBuffer.allocate(WIDTH * HEIGHT * 3 / 2), WIDTH, HEIGHT,
+            ImageFormat.NV21)
+        .build();
+  }
+
+  private static final class CountingDetector extends Detector<Barcode> {
+    final List<Integer> widths = new ArrayList<>();
+
+    @Override
+    public SparseArray<Barcode> detect(Frame frame) {
+      widths.add(frame.getMetadata().getWidth());
+      return new SparseArray<>(0);
+    }
+  }
+}
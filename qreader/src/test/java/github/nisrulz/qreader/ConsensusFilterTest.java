@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConsensusFilterTest {
+
+  @Test
+  public void requiresVotesWithinWindow() throws Exception {
+    final ConsensusFilter filter = new ConsensusFilter(2, 3);
+    filter.nextFrame();
+    assertFalse(filter.vote("a"));
+    filter.nextFrame();
+    assertFalse(filter.vote("b"));
+    filter.nextFrame();
+    assertTrue(filter.vote("a"));
+    filter.nextFrame();
+    // The first frame left the window, only the previous one agrees
+    assertTrue(filter.vote("a"));
+    filter.nextFrame();
+    filter.nextFrame();
+    filter.nextFrame();
+    assertFalse(filter.vote("a"));
+  }
+
+  @Test
+  public void countsValueOncePerFrame() throws Exception {
+    final ConsensusFilter filter = new ConsensusFilter(2, 4);
+    filter.nextFrame();
+    assertFalse(filter.vote("a"));
+    assertFalse(filter.vote("a"));
+    filter.nextFrame();
+    assertTrue(filter.vote("a"));
+  }
+}
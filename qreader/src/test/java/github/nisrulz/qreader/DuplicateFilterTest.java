@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DuplicateFilterTest {
+
+  @Test
+  public void deliversEachValueOncePerWindow() throws Exception {
+    final DuplicateFilter filter = new DuplicateFilter(4, 1000);
+    assertFalse(filter.isDuplicate("a", 0));
+    assertTrue(filter.isDuplicate("a", 500));
+    assertFalse(filter.isDuplicate("b", 500));
+    assertTrue(filter.isDuplicate("a", 999));
+    assertFalse(filter.isDuplicate("a", 1000));
+    assertTrue(filter.isDuplicate("a", 1500));
+  }
+
+  @Test
+  public void evictsLeastRecentlySeenValue() throws Exception {
+    final DuplicateFilter filter = new DuplicateFilter(2, 1000);
+    assertFalse(filter.isDuplicate("a", 0));
+    assertFalse(filter.isDuplicate("b", 10));
+    assertTrue(filter.isDuplicate("a", 20));
+    // b was seen least recently and makes room for c
+    assertFalse(filter.isDuplicate("c", 30));
+    assertTrue(filter.isDuplicate("a", 40));
+    assertFalse(filter.isDuplicate("b", 50));
+  }
+
+  @Test
+  public void comparesValuesWithEqualHashes() throws Exception {
+    final DuplicateFilter filter = new DuplicateFilter(4, 1000);
+    // "Aa" and "BB" share a hash code
+    assertFalse(filter.isDuplicate("Aa", 0));
+    assertFalse(filter.isDuplicate("BB", 0));
+    assertTrue(filter.isDuplicate("Aa", 1));
+  }
+}
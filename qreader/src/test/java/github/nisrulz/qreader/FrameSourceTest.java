@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.util.SparseArray;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the frame sources, their buffer pools and the pipeline fed by them on the JVM.
+ */
+public class FrameSourceTest {
+
+  @Test
+  public void pool_recyclesFrames() throws Exception {
+    final LuminanceBufferPool pool = new LuminanceBufferPool(2, 16);
+    final LuminanceFrame first = pool.acquire();
+    final LuminanceFrame second = pool.acquire();
+    assertNull(pool.acquire());
+    assertEquals(0, pool.getAvailableCount());
+
+    first.release();
+    assertSame(first, pool.acquire());
+    first.release();
+    second.release();
+    assertEquals(2, pool.getAvailableCount());
+  }
+
+  @Test
+  public void pool_rejectsDoubleRelease() throws Exception {
+    final LuminanceFrame frame = new LuminanceBufferPool(1, 16).acquire();
+    frame.release();
+    try {
+      frame.release();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test
+  public void syntheticSource_reusesPooledBuffers() throws Exception {
+    final int frameCount = 500;
+    final SyntheticFrameSource source = new SyntheticFrameSource(320, 240, 0);
+    final CountDownLatch done = new CountDownLatch(frameCount);
+    final Set<byte[]> buffers = Collections.synchronizedSet(
+        Collections.newSetFromMap(new IdentityHashMap<byte[], Boolean>()));
+    source.start(new FrameConsumer() {
+      @Override
+      public void onFrame(LuminanceFrame frame) {
+        buffers.add(frame.getData());
+        assertEquals(320, frame.getWidth());
+        frame.release();
+        done.countDown();
+      }
+    });
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    source.stop();
+
+    assertTrue(buffers.size() <= source.getPool().getCapacity());
+    assertEquals(source.getPool().getCapacity(), source.getPool().getAvailableCount());
+  }
+
+  @Test
+  public void syntheticSource_dropsFramesWhileConsumerHoldsThem() throws Exception {
+    final SyntheticFrameSource source = new SyntheticFrameSource(64, 64, 0);
+    final CountDownLatch poolDrained = new CountDownLatch(source.getPool().getCapacity());
+    source.start(new FrameConsumer() {
+      @Override
+      public void onFrame(LuminanceFrame frame) {
+        // Never released
+        poolDrained.countDown();
+      }
+    });
+    assertTrue(poolDrained.await(10, TimeUnit.SECONDS));
+    while (source.getDroppedFrameCount() == 0) {
+      Thread.sleep(1);
+    }
+    source.stop();
+    assertEquals(0, source.getPool().getAvailableCount());
+  }
+
+  @Test
+  public void recordedSource_replaysLuminancePlanes() throws Exception {
+    final int width = 4;
+    final int height = 2;
+    final int frameSize = width * height * 3 / 2;
+    final File file = File.createTempFile("frames", ".nv21");
+    file.deleteOnExit();
+    writeFrames(file, 3, frameSize);
+
+    final RecordedFrameSource source =
+        new RecordedFrameSource(file, width, height, frameSize, 0, false);
+    final CountDownLatch done = new CountDownLatch(3);
+    final byte[] firstBytes = new byte[3];
+    source.start(new FrameConsumer() {
+      @Override
+      public void onFrame(LuminanceFrame frame) {
+        firstBytes[frame.getId()] = frame.getData()[0];
+        frame.release();
+        done.countDown();
+      }
+    });
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    source.stop();
+
+    assertEquals(0, firstBytes[0]);
+    assertEquals(1, firstBytes[1]);
+    assertEquals(2, firstBytes[2]);
+  }
+
+  @Test
+  public void syntheticSource_stopsFromConsumer() throws Exception {
+    final SyntheticFrameSource source = new SyntheticFrameSource(64, 64, 0);
+    final CountDownLatch stopped = new CountDownLatch(1);
+    source.start(new FrameConsumer() {
+      @Override
+      public void onFrame(LuminanceFrame frame) {
+        frame.release();
+        source.stop();
+        stopped.countDown();
+      }
+    });
+    assertTrue(stopped.await(10, TimeUnit.SECONDS));
+    // Stopped, so it can be started again
+    source.start(new FrameConsumer() {
+      @Override
+      public void onFrame(LuminanceFrame frame) {
+        frame.release();
+      }
+    });
+    source.stop();
+  }
+
+  @Test
+  public void recordedSource_startsAgainAfterEnd() throws Exception {
+    final int frameSize = 8;
+    final File file = File.createTempFile("frames", ".y");
+    file.deleteOnExit();
+    writeFrames(file, 2, frameSize);
+
+    final RecordedFrameSource source = new RecordedFrameSource(file, 4, 2, frameSize, 0, false);
+    for (int run = 0; run < 2; run++) {
+      final CountDownLatch done = new CountDownLatch(2);
+      source.start(new FrameConsumer() {
+        @Override
+        public void onFrame(LuminanceFrame frame) {
+          frame.release();
+          done.countDown();
+        }
+      });
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+      while (source.isRunning()) {
+        Thread.sleep(1);
+      }
+    }
+    source.stop();
+  }
+
+  @Test
+  public void pipeline_deliversCodesOfSyntheticFrames() throws Exception {
+    final int frameCount = 50;
+    final SyntheticFrameSource source = new SyntheticFrameSource(320, 240, 0);
+    final CountDownLatch delivered = new CountDownLatch(frameCount);
+    final List<String> values = Collections.synchronizedList(new ArrayList<String>());
+    final QREader reader = new QREader.Builder(null, null, new QRDataListener() {
+      @Override
+      public void onDetected(String data) {
+        values.add(data);
+        delivered.countDown();
+      }
+    }).frameSource(source).detector(new FrameSizeDetector()).build();
+
+    reader.initAndStart();
+    assertTrue(reader.isCameraRunning());
+    assertTrue(delivered.await(10, TimeUnit.SECONDS));
+    reader.releaseAndCleanup();
+
+    assertFalse(reader.isCameraRunning());
+    assertEquals("320x240", values.get(0));
+    assertEquals(source.getPool().getCapacity(), source.getPool().getAvailableCount());
+  }
+
+  private static void writeFrames(File file, int count, int frameSize) throws IOException {
+    final FileOutputStream output = new FileOutputStream(file);
+    try {
+      for (int i = 0; i < count; i++) {
+        final byte[] frame = new byte[frameSize];
+        Arrays.fill(frame, (byte) i);
+        output.write(frame);
+      }
+    } finally {
+      output.close();
+    }
+  }
+
+  /**
+   * Reports one code per frame, holding the size of the frame it was found in.
+   */
+  private static final class FrameSizeDetector extends Detector<Barcode> {
+
+    @Override
+    public SparseArray<Barcode> detect(Frame frame) {
+      final Barcode barcode = new Barcode();
+      barcode.format = Barcode.QR_CODE;
+      barcode.rawValue = frame.getMetadata().getWidth() + "x" + frame.getMetadata().getHeight();
+      barcode.displayValue = barcode.rawValue;
+      final SparseArray<Barcode> barcodes = new SparseArray<>(1);
+      barcodes.append(0, barcode);
+      return barcodes;
+    }
+
+    @Override
+    public boolean isOperational() {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import com.google.android.gms.vision.barcode.Barcode;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PayloadParserTest {
+
+  @Test
+  public void parsesUrls() throws Exception {
+    final Payload.Url url = (Payload.Url) PayloadParser.parse("https://example.com/a", 0);
+    assertEquals("https://example.com/a", url.getUrl());
+    final Payload.Url bookmark =
+        (Payload.Url) PayloadParser.parse("MEBKM:TITLE:Example;URL:http\\://example.com;;", 0);
+    assertEquals("Example", bookmark.getTitle());
+    assertEquals("http://example.com", bookmark.getUrl());
+  }
+
+  @Test
+  public void parsesWiFiWithEscapes() throws Exception {
+    final Payload.WiFi wifi =
+        (Payload.WiFi) PayloadParser.parse("WIFI:T:WPA;S:my\\;net;P:pa\\:ss;H:true;;", 0);
+    assertEquals("my;net", wifi.getSsid());
+    assertEquals("pa:ss", wifi.getPassword());
+    assertEquals("WPA", wifi.getEncryptionType());
+    assertTrue(wifi.isHidden());
+
+    final Payload.WiFi open = (Payload.WiFi) PayloadParser.parse("WIFI:S:cafe;T:nopass;;", 0);
+    assertNull(open.getPassword());
+    assertFalse(open.isHidden());
+  }
+
+  @Test
+  public void parsesContacts() throws Exception {
+    final Payload.Contact meCard = (Payload.Contact) PayloadParser.parse(
+        "MECARD:N:Doe,John;TEL:123;TEL:456;EMAIL:john@example.com;;", 0);
+    assertEquals("John Doe", meCard.getName());
+    assertArrayEquals(new String[] { "123", "456" }, meCard.getPhones());
+    assertArrayEquals(new String[] { "john@example.com" }, meCard.getEmails());
+
+    final Payload.Contact vCard = (Payload.Contact) PayloadParser.parse("BEGIN:VCARD\r\n"
+        + "VERSION:3.0\r\n"
+        + "N:Doe;John;;;\r\n"
+        + "FN:John Doe\r\n"
+        + "ORG:Example\\, Inc.\r\n"
+        + "item1.TEL;TYPE=CELL:+1 555\r\n"
+        + "ADR;TYPE=HOME:;;1 Main\r\n"
+        + "  St;Springfield;;;\r\n"
+        + "END:VCARD", 0);
+    assertEquals("John Doe", vCard.getName());
+    assertEquals("Example, Inc.", vCard.getOrganization());
+    assertArrayEquals(new String[] { "+1 555" }, vCard.getPhones());
+    assertArrayEquals(new String[] { "1 Main St Springfield" }, vCard.getAddresses());
+    assertEquals(0, vCard.getEmails().length);
+  }
+
+  @Test
+  public void parsesGeo() throws Exception {
+    final Payload.Geo geo = (Payload.Geo) PayloadParser.parse("geo:48.2,-16.37,120?q=cafe", 0);
+    assertEquals(48.2, geo.getLatitude(), 0);
+    assertEquals(-16.37, geo.getLongitude(), 0);
+    assertEquals(120, geo.getAltitude(), 0);
+    assertEquals("cafe", geo.getQuery());
+    assertTrue(Double.isNaN(((Payload.Geo) PayloadParser.parse("geo:1,2", 0)).getAltitude()));
+    assertEquals(Payload.TYPE_TEXT, PayloadParser.parse("geo:north", 0).getType());
+  }
+
+  @Test
+  public void parsesSms() throws Exception {
+    final Payload.Sms smsTo = (Payload.Sms) PayloadParser.parse("SMSTO:+123:Hello: there", 0);
+    assertEquals("+123", smsTo.getPhoneNumber());
+    assertEquals("Hello: there", smsTo.getMessage());
+    final Payload.Sms uri = (Payload.Sms) PayloadParser.parse("sms:+123?body=Hi", 0);
+    assertEquals("+123", uri.getPhoneNumber());
+    assertEquals("Hi", uri.getMessage());
+  }
+
+  @Test
+  public void keepsPlainText() throws Exception {
+    assertEquals(Payload.TYPE_TEXT, PayloadParser.parse("hello", 0).getType());
+    // The detector reported plain text, no classification
+    assertEquals(Payload.TYPE_TEXT,
+        PayloadParser.parse("http://example.com", Barcode.TEXT).getType());
+    assertNull(PayloadParser.parse(null, 0));
+  }
+
+  @Test
+  public void buildsFromStructuredFields() throws Exception {
+    final Barcode bookmark = new Barcode();
+    bookmark.url = new Barcode.UrlBookmark();
+    bookmark.url.url = "https://example.com/b";
+    bookmark.url.title = "Example";
+    final Payload.Url url = (Payload.Url) PayloadParser.fromBarcode(bookmark, "example.com/b");
+    assertEquals("https://example.com/b", url.getUrl());
+    assertEquals("Example", url.getTitle());
+    assertEquals("example.com/b", url.getText());
+
+    final Barcode card = new Barcode();
+    card.contactInfo = new Barcode.ContactInfo();
+    card.contactInfo.name = new Barcode.PersonName();
+    card.contactInfo.name.first = "John";
+    card.contactInfo.name.last = "Doe";
+    card.contactInfo.phones = new Barcode.Phone[] { new Barcode.Phone() };
+    card.contactInfo.phones[0].number = "123";
+    card.contactInfo.addresses = new Barcode.Address[] { new Barcode.Address() };
+    card.contactInfo.addresses[0].addressLines = new String[] { "1 Main St", "Springfield" };
+    final Payload.Contact contact =
+        (Payload.Contact) PayloadParser.fromBarcode(card, "BEGIN:VCARD");
+    assertEquals("John Doe", contact.getName());
+    assertArrayEquals(new String[] { "123" }, contact.getPhones());
+    assertArrayEquals(new String[0], contact.getEmails());
+    assertArrayEquals(new String[] { "1 Main St, Springfield" }, contact.getAddresses());
+
+    final Barcode location = new Barcode();
+    location.geoPoint = new Barcode.GeoPoint();
+    location.geoPoint.lat = 48.2;
+    location.geoPoint.lng = -16.37;
+    final Payload.Geo geo = (Payload.Geo) PayloadParser.fromBarcode(location, "geo:0,0");
+    assertEquals(48.2, geo.getLatitude(), 0);
+    assertTrue(Double.isNaN(geo.getAltitude()));
+
+    // No structured field, the text is parsed
+    final Barcode plain = new Barcode();
+    plain.valueFormat = Barcode.SMS;
+    final Payload.Sms sms = (Payload.Sms) PayloadParser.fromBarcode(plain, "SMSTO:+123:Hi");
+    assertEquals("+123", sms.getPhoneNumber());
+    assertNull(PayloadParser.fromBarcode(plain, null));
+  }
+}
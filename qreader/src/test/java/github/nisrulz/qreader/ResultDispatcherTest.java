@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package github.nisrulz.qreader;
+
+import com.google.android.gms.vision.barcode.Barcode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+public class ResultDispatcherTest {
+
+  @Test
+  public void deliversBatchedCodesFrameByFrame() throws Exception {
+    final QueueingExecutor executor = new QueueingExecutor();
+    final RecordingListener listener = new RecordingListener();
+    final ResultDispatcher dispatcher =
+        new ResultDispatcher(null, listener, null, executor, 0, BackpressurePolicy.DROP_OLDEST,
+            16);
+    dispatcher.dispatch(codes("a", "b"));
+    dispatcher.dispatch(codes("c"));
+
+    executor.runNext();
+    // One task, but the multi listener still sees the codes of one frame per call
+    assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c")), listener.frames);
+    dispatcher.release();
+  }
+
+  @Test
+  public void doesNotCountBatchedFramesAgainstCapacity() throws Exception {
+    final QueueingExecutor executor = new QueueingExecutor();
+    final RecordingListener listener = new RecordingListener();
+    final ResultDispatcher dispatcher =
+        new ResultDispatcher(null, listener, null, executor, 200, BackpressurePolicy.DROP_OLDEST,
+            2);
+    for (int i = 1; i <= 5; i++) {
+      dispatcher.dispatch(codes(String.valueOf(i)));
+    }
+    assertEquals(0, dispatcher.getDroppedResultCount());
+
+    // The batch interval is over, frames now wait for the executor and fill the queue
+    final Runnable delivery = executor.awaitNext();
+    for (int i = 6; i <= 8; i++) {
+      dispatcher.dispatch(codes(String.valueOf(i)));
+    }
+    assertEquals(1, dispatcher.getDroppedResultCount());
+
+    delivery.run();
+    assertEquals(Arrays.asList(Arrays.asList("1"), Arrays.asList("2"), Arrays.asList("3"),
+        Arrays.asList("4"), Arrays.asList("5"), Arrays.asList("7"), Arrays.asList("8")),
+        listener.frames);
+    dispatcher.release();
+  }
+
+  @Test
+  public void stopsWaitingForFullQueueWhenStopping() throws Exception {
+    // Deliveries never run, as when the main thread they are posted to is busy stopping
+    final QueueingExecutor executor = new QueueingExecutor();
+    final ResultDispatcher dispatcher =
+        new ResultDispatcher(null, new RecordingListener(), null, executor, 0,
+            BackpressurePolicy.BLOCK, 1);
+    dispatcher.dispatch(codes("a"));
+    final Thread detectorThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        dispatcher.dispatch(codes("b"));
+      }
+    });
+    detectorThread.start();
+    while (detectorThread.isAlive() && detectorThread.getState() != Thread.State.WAITING) {
+      Thread.sleep(1);
+    }
+
+    dispatcher.setStopping(true);
+    detectorThread.join(5000);
+    assertFalse(detectorThread.isAlive());
+    assertEquals(1, dispatcher.getDroppedResultCount());
+    dispatcher.release();
+  }
+
+  private static DetectedCodes codes(String... values) {
+    final DetectedCodes codes = new DetectedCodes();
+    for (String value : values) {
+      final Barcode barcode = new Barcode();
+      barcode.rawValue = value;
+      barcode.displayValue = value;
+      codes.add(barcode);
+    }
+    return codes;
+  }
+
+  private static final class QueueingExecutor implements Executor {
+    final LinkedBlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+
+    @Override
+    public void execute(Runnable runnable) {
+      tasks.add(runnable);
+    }
+
+    Runnable awaitNext() throws InterruptedException {
+      final Runnable task = tasks.poll(5, TimeUnit.SECONDS);
+      assertNotNull(task);
+      return task;
+    }
+
+    void runNext() throws InterruptedException {
+      awaitNext().run();
+    }
+  }
+
+  private static final class RecordingListener implements QRMultiDataListener {
+    final List<List<String>> frames = new ArrayList<>();
+
+    @Override
+    public void onDetected(DetectedCodes codes) {
+      final List<String> values = new ArrayList<>();
+      for (int i = 0; i < codes.size(); i++) {
+        values.add(codes.getDisplayValue(i));
+      }
+      frames.add(values);
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResultPublisherTest {
+
+  @Test
+  public void deliversOnlyRequestedValues() throws Exception {
+    final ResultPublisher publisher = new ResultPublisher();
+    final RecordingSubscriber subscriber = new RecordingSubscriber();
+    publisher.subscribe(subscriber);
+    assertFalse(publisher.hasDemand());
+
+    subscriber.subscription.request(2);
+    assertTrue(publisher.hasDemand());
+    publisher.publish("a");
+    publisher.publish("b");
+    // No demand left, detection pauses and further values are not delivered
+    assertFalse(publisher.hasDemand());
+    publisher.publish("c");
+    assertEquals(Arrays.asList("a", "b"), subscriber.values);
+  }
+
+  @Test
+  public void stopsDeliveringAfterCancel() throws Exception {
+    final ResultPublisher publisher = new ResultPublisher();
+    final RecordingSubscriber subscriber = new RecordingSubscriber();
+    publisher.subscribe(subscriber);
+    subscriber.subscription.request(Long.MAX_VALUE);
+    publisher.publish("a");
+    subscriber.subscription.cancel();
+    publisher.publish("b");
+    assertEquals(Arrays.asList("a"), subscriber.values);
+    assertFalse(publisher.hasSubscribers());
+  }
+
+  @Test
+  public void signalsErrorForNonPositiveRequest() throws Exception {
+    final ResultPublisher publisher = new ResultPublisher();
+    final RecordingSubscriber subscriber = new RecordingSubscriber();
+    publisher.subscribe(subscriber);
+    subscriber.subscription.request(0);
+    assertTrue(subscriber.error instanceof IllegalArgumentException);
+    assertFalse(publisher.hasSubscribers());
+  }
+
+  private static class RecordingSubscriber implements Subscriber<String> {
+    final List<String> values = new ArrayList<>();
+    Subscription subscription;
+    Throwable error;
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(String value) {
+      values.add(value);
+    }
+
+    @Override
+    public void onError(Throwable error) {
+      this.error = error;
+    }
+
+    @Override
+    public void onComplete() {
+    }
+  }
+}
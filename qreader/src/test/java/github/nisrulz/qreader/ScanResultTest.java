@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import com.google.android.gms.vision.barcode.Barcode;
+import java.nio.charset.Charset;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ScanResultTest {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Test
+  public void createsStringViewsOnceFromBytes() throws Exception {
+    final byte[] bytes = "Gr\u00fc\u00dfe".getBytes(UTF_8);
+    final DecodedBarcode barcode = decoded(bytes);
+    final ScanResult result = new ScanResult(barcode);
+    // Nothing decoded before it is asked for
+    assertNull(barcode.rawValue);
+    assertSame(bytes, result.getRawBytes());
+    assertNull(barcode.rawValue);
+    assertEquals("Gr\u00fc\u00dfe", result.getRawValue());
+    assertSame(result.getRawValue(), result.getRawValue());
+    assertSame(result.getRawValue(), result.getDisplayValue());
+  }
+
+  @Test
+  public void keepsBytesWithoutText() throws Exception {
+    final byte[] bytes = { 0, (byte) 0xff, 0x10 };
+    final ScanResult result = new ScanResult(decoded(bytes));
+    assertArrayEquals(new byte[] { 0, (byte) 0xff, 0x10 }, result.getRawBytes());
+  }
+
+  @Test
+  public void takesPayloadFromStructuredFields() throws Exception {
+    final Barcode barcode = new Barcode();
+    barcode.rawValue = "WIFI:S:home;T:WPA;P:secret;;";
+    barcode.valueFormat = Barcode.WIFI;
+    barcode.wifi = new Barcode.WiFi();
+    barcode.wifi.ssid = "office";
+    barcode.wifi.encryptionType = Barcode.WiFi.OPEN;
+    final Payload.WiFi wifi = (Payload.WiFi) new ScanResult(barcode).getPayload();
+    assertEquals("office", wifi.getSsid());
+    assertNull(wifi.getPassword());
+    assertEquals("nopass", wifi.getEncryptionType());
+    assertEquals("WIFI:S:home;T:WPA;P:secret;;", wifi.getText());
+
+    // Codes read by the built-in decoder are parsed from their text
+    final Payload.WiFi decodedWiFi = (Payload.WiFi) new ScanResult(
+        decoded("WIFI:S:home;T:WPA;P:secret;;".getBytes(UTF_8))).getPayload();
+    assertEquals("home", decodedWiFi.getSsid());
+    assertEquals("secret", decodedWiFi.getPassword());
+  }
+
+  private static DecodedBarcode decoded(byte[] bytes) {
+    final DecodedBarcode barcode = new DecodedBarcode();
+    barcode.rawBytes = bytes;
+    return barcode;
+  }
+}
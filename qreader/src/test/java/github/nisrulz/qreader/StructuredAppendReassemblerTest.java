@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader;
+
+import android.graphics.ImageFormat;
+import com.google.android.gms.vision.Frame;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.decoder.Version;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class StructuredAppendReassemblerTest {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+  private static final int SCALE = 3;
+  private static final int QUIET_ZONE = 4;
+
+  @Test
+  public void joinsPartsInSequenceOrder() throws Exception {
+    final StructuredAppendReassembler reassembler = new StructuredAppendReassembler(2, 1000);
+    assertNull(reassembler.offer(part(7, 2, 3, "c"), 0));
+    assertNull(reassembler.offer(part(7, 0, 3, "a"), 10));
+    // Seen again, counted once
+    assertNull(reassembler.offer(part(7, 0, 3, "a"), 20));
+    final DecodedBarcode joined = reassembler.offer(part(7, 1, 3, "b"), 30);
+    assertEquals("abc", DecodedBarcode.rawValueOf(joined));
+    assertEquals(0, reassembler.getDroppedSequenceCount());
+  }
+
+  @Test
+  public void keepsSequencesApartByParity() throws Exception {
+    final StructuredAppendReassembler reassembler = new StructuredAppendReassembler(2, 1000);
+    assertNull(reassembler.offer(part(1, 0, 2, "a"), 0));
+    assertNull(reassembler.offer(part(2, 1, 2, "y"), 0));
+    assertEquals("xy", DecodedBarcode.rawValueOf(reassembler.offer(part(2, 0, 2, "x"), 0)));
+    assertEquals("ab", DecodedBarcode.rawValueOf(reassembler.offer(part(1, 1, 2, "b"), 0)));
+  }
+
+  @Test
+  public void dropsIncompleteSequences() throws Exception {
+    final StructuredAppendReassembler reassembler = new StructuredAppendReassembler(1, 1000);
+    assertNull(reassembler.offer(part(1, 0, 2, "a"), 0));
+    // Timed out, the first part is gone
+    assertNull(reassembler.offer(part(1, 1, 2, "b"), 1000));
+    assertEquals(1, reassembler.getDroppedSequenceCount());
+    // No room for a second sequence, the first one is evicted
+    assertNull(reassembler.offer(part(2, 0, 2, "x"), 1100));
+    assertEquals(2, reassembler.getDroppedSequenceCount());
+  }
+
+  @Test
+  public void joinsSymbolsReadByFallbackDetector() throws Exception {
+    final List<String> delivered = new ArrayList<>();
+    final ResultDispatcher dispatcher = new ResultDispatcher(new QRDataListener() {
+      @Override
+      public void onDetected(String data) {
+        delivered.add(data);
+      }
+    }, null, null, new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        command.run();
+      }
+    }, 0, BackpressurePolicy.DROP_OLDEST, 16);
+    final FallbackDetector detector = new FallbackDetector(null);
+    detector.setProcessor(new BarcodeProcessor(dispatcher, new ResultPublisher(),
+        new StructuredAppendReassembler(2, 1000), null, null));
+
+    // The symbols declare different character sets, each has to be decoded with its own
+    final byte[] first = "Gr\u00fc\u00dfe ".getBytes(UTF_8);
+    final byte[] second = "aus K\u00f6ln".getBytes(ISO_8859_1);
+    final int parity = parity(first) ^ parity(second);
+    detector.receiveFrame(frame(symbol(1, 2, parity, 3, second)));
+    assertEquals(0, delivered.size());
+    detector.receiveFrame(frame(symbol(0, 2, parity, 26, first)));
+    assertEquals(Arrays.asList("Gr\u00fc\u00dfe aus K\u00f6ln"), delivered);
+    dispatcher.release();
+  }
+
+  private static DecodedBarcode part(int parity, int index, int count, String data) {
+    final DecodedBarcode part = new DecodedBarcode();
+    part.sequenceParity = parity;
+    part.sequenceIndex = index;
+    part.sequenceCount = count;
+    part.rawBytes = data.getBytes(UTF_8);
+    return part;
+  }
+
+  private static int parity(byte[] data) {
+    int parity = 0;
+    for (byte b : data) {
+      parity ^= b & 0xff;
+    }
+    return parity;
+  }
+
+  /**
+   * Encodes a version 2 symbol of a structured append sequence holding one byte segment after an
+   * ECI designator. The encoder has no public way to write the sequence header, so the bit
+   * stream is built here and laid out by its package private helpers.
+   */
+  private static ByteMatrix symbol(int index, int count, int parity, int eci, byte[] data)
+      throws Exception {
+    final BitArray bits = new BitArray();
+    bits.appendBits(3, 4);
+    bits.appendBits(index, 4);
+    bits.appendBits(count - 1, 4);
+    bits.appendBits(parity, 8);
+    bits.appendBits(7, 4);
+    bits.appendBits(eci, 8);
+    bits.appendBits(4, 4);
+    bits.appendBits(data.length, 8);
+    for (byte b : data) {
+      bits.appendBits(b & 0xff, 8);
+    }
+
+    final ErrorCorrectionLevel level = ErrorCorrectionLevel.L;
+    final Version version = Version.getVersionForNumber(2);
+    final Version.ECBlocks blocks = version.getECBlocksForLevel(level);
+    final int dataBytes = version.getTotalCodewords() - blocks.getTotalECCodewords();
+    invoke(Encoder.class, "terminateBits", new Class<?>[] { int.class, BitArray.class },
+        dataBytes, bits);
+    final BitArray codewords = (BitArray) invoke(Encoder.class, "interleaveWithECBytes",
+        new Class<?>[] { BitArray.class, int.class, int.class, int.class }, bits,
+        version.getTotalCodewords(), dataBytes, blocks.getNumBlocks());
+    final ByteMatrix matrix =
+        new ByteMatrix(version.getDimensionForVersion(), version.getDimensionForVersion());
+    invoke(Class.forName("com.google.zxing.qrcode.encoder.MatrixUtil"), "buildMatrix",
+        new Class<?>[] { BitArray.class, ErrorCorrectionLevel.class, Version.class, int.class,
+            ByteMatrix.class }, codewords, level, version, 0, matrix);
+    return matrix;
+  }
+
+  private static Object invoke(Class<?> type, String name, Class<?>[] parameterTypes,
+      Object... args) throws Exception {
+    final Method method = type.getDeclaredMethod(name, parameterTypes);
+    method.setAccessible(true);
+    return method.invoke(null, args);
+  }
+
+  /**
+   * Draws a symbol with a quiet zone into a luminance frame.
+   */
+  private static Frame frame(ByteMatrix matrix) {
+    final int modules = matrix.getWidth();
+    final int size = (modules + 2 * QUIET_ZONE) * SCALE;
+    final byte[] image = new byte[size * size];
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        final int column = x / SCALE - QUIET_ZONE;
+        final int row = y / SCALE - QUIET_ZONE;
+        final boolean dark = column >= 0 && column < modules && row >= 0 && row < modules
+            && matrix.get(column, row) == 1;
+        image[y * size + x] = (byte) (dark ? 30 : 220);
+      }
+    }
+    return new Frame.Builder().setImageData(ByteBuffer.wrap(image), size, size, ImageFormat.NV21)
+        .build();
+  }
+}
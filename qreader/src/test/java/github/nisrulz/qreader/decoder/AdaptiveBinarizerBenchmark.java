@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader.decoder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the adaptive binarizer on camera frame sizes. Run with {@link #main(String[])}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdaptiveBinarizerBenchmark {
+  @Param({ "640x480", "1280x720", "1920x1080", "3840x2160" })
+  public String frameSize;
+
+  private final AdaptiveBinarizer binarizer = new AdaptiveBinarizer();
+  private final BitMatrix bits = new BitMatrix();
+  private byte[] frame;
+  private int width;
+  private int height;
+
+  @Setup
+  public void setUp() {
+    final int separator = frameSize.indexOf('x');
+    width = Integer.parseInt(frameSize.substring(0, separator));
+    height = Integer.parseInt(frameSize.substring(separator + 1));
+    // Blocks of noise under light falling off across the frame
+    final Random random = new Random(7);
+    frame = new byte[width * height];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        final int light = 255 - 160 * x / width;
+        frame[y * width + x] = (byte) (((x >> 3) + (y >> 3)) % 2 == 0
+            ? light / 4 + random.nextInt(16) : light - random.nextInt(16));
+      }
+    }
+  }
+
+  @Benchmark
+  public BitMatrix binarize() {
+    binarizer.binarize(frame, 0, width, height, width, bits);
+    return bits;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(AdaptiveBinarizerBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
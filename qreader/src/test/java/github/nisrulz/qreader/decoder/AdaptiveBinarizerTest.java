@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader.decoder;
+
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveBinarizerTest {
+
+  @Test
+  public void matchesWindowMeansComputedPixelByPixel() throws Exception {
+    final int width = 77;
+    final int height = 45;
+    final int offset = 5;
+    final int rowStride = width + 3;
+    final byte[] image = new byte[offset + rowStride * height];
+    new Random(42).nextBytes(image);
+
+    final BitMatrix bits = new BitMatrix();
+    assertTrue(new AdaptiveBinarizer().binarize(image, offset, width, height, rowStride, bits));
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        assertEquals("pixel " + x + "," + y, isDark(image, offset, width, height, rowStride, x, y),
+            bits.get(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void keepsDarkMarksUnderFallingLight() throws Exception {
+    final int width = 200;
+    final int height = 100;
+    final byte[] image = new byte[width * height];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        // Light falls off from 240 to 60 across the image, marks are a third as bright
+        final int light = 240 - 180 * x / width;
+        final boolean mark = (x / 10 + y / 10) % 2 == 0;
+        image[y * width + x] = (byte) (mark ? light / 3 : light);
+      }
+    }
+    final BitMatrix bits = new BitMatrix();
+    new AdaptiveBinarizer().binarize(image, 0, width, height, width, bits);
+    // Marks are dark and the background light at both ends, though the right background is
+    // darker than the left marks
+    assertTrue(bits.get(5, 5));
+    assertFalse(bits.get(15, 5));
+    assertTrue(bits.get(185, 5));
+    assertFalse(bits.get(195, 5));
+  }
+
+  @Test
+  public void rejectsFlatImages() throws Exception {
+    final byte[] image = new byte[64 * 64];
+    for (int i = 0; i < image.length; i++) {
+      image[i] = (byte) (120 + i % 3);
+    }
+    assertFalse(new AdaptiveBinarizer().binarize(image, 0, 64, 64, 64, new BitMatrix()));
+  }
+
+  /**
+   * The same rule as the binarizer, summing every window pixel by pixel.
+   */
+  private static boolean isDark(byte[] image, int offset, int width, int height, int rowStride,
+      int x, int y) {
+    final int radius = 8;
+    long sum = 0;
+    int area = 0;
+    for (int wy = Math.max(0, y - radius); wy < Math.min(height, y + radius + 1); wy++) {
+      for (int wx = Math.max(0, x - radius); wx < Math.min(width, x + radius + 1); wx++) {
+        sum += image[offset + wy * rowStride + wx] & 0xff;
+        area++;
+      }
+    }
+    final long weighted = (long) (image[offset + y * rowStride + x] & 0xff) * area;
+    return weighted * 256 < sum * (256 - 38) && sum - weighted >= 8L * area;
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader.decoder;
+
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import java.nio.charset.Charset;
+import java.util.EnumMap;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class QRCodeDecoderTest {
+  private static final int SCALE = 3;
+  private static final int QUIET_ZONE = 4;
+
+  @Test
+  public void decodesAllLevelsAcrossVersions() throws Exception {
+    final QRCodeDecoder decoder = new QRCodeDecoder();
+    final ErrorCorrectionLevel[] levels = ErrorCorrectionLevel.values();
+    for (int version = 1; version <= 40; version += 3) {
+      for (ErrorCorrectionLevel level : levels) {
+        final StringBuilder content = new StringBuilder("V" + version + level);
+        for (int i = 1; i < version; i++) {
+          content.append("0123456789");
+        }
+        final ByteMatrix matrix = encode(content.toString(), level, version, null);
+        final QRCodeResult result = decoder.decode(render(matrix, false), 0, size(matrix),
+            size(matrix), size(matrix));
+        assertNotNull("version " + version + " level " + level, result);
+        assertEquals(content.toString(), result.getText());
+        assertEquals(version, result.getVersion());
+      }
+    }
+  }
+
+  @Test
+  public void decodesByteSegmentsWithEci() throws Exception {
+    final String content = "Gr\u00fc\u00dfe aus K\u00f6ln";
+    final ByteMatrix matrix = encode(content, ErrorCorrectionLevel.M, 0, "UTF-8");
+    final QRCodeResult result = new QRCodeDecoder().decode(render(matrix, false), 0,
+        size(matrix), size(matrix), size(matrix));
+    assertEquals(content, result.getText());
+    assertArrayEquals(content.getBytes(Charset.forName("UTF-8")), result.getBytes());
+  }
+
+  @Test
+  public void decodesRotatedSymbolsWithCorners() throws Exception {
+    final ByteMatrix matrix = encode("rotated", ErrorCorrectionLevel.L, 2, null);
+    final int size = size(matrix);
+    final QRCodeResult result = new QRCodeDecoder().decode(render(matrix, true), 0, size, size,
+        size);
+    assertEquals("rotated", result.getText());
+    // Turned clockwise, the top left corner of the symbol is at the top right of the image
+    final float[] corners = result.getCorners();
+    final float symbolEnd = (QUIET_ZONE + matrix.getWidth()) * SCALE;
+    assertEquals(symbolEnd, corners[0], SCALE);
+    assertEquals(QUIET_ZONE * SCALE, corners[1], SCALE);
+  }
+
+  @Test
+  public void readsRowsWithPadding() throws Exception {
+    final ByteMatrix matrix = encode("padded", ErrorCorrectionLevel.Q, 0, null);
+    final int size = size(matrix);
+    final byte[] image = render(matrix, false);
+    final int rowStride = size + 13;
+    final byte[] padded = new byte[7 + rowStride * size];
+    for (int y = 0; y < size; y++) {
+      System.arraycopy(image, y * size, padded, 7 + y * rowStride, size);
+    }
+    assertEquals("padded", new QRCodeDecoder().decode(padded, 7, size, size, rowStride)
+        .getText());
+  }
+
+  @Test
+  public void decodesUnderFallingLight() throws Exception {
+    final ByteMatrix matrix = encode("shadow", ErrorCorrectionLevel.M, 3, null);
+    final int size = size(matrix);
+    final byte[] image = render(matrix, false);
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        // The light background on the right ends up as dark as the modules on the left
+        final int lit = (image[y * size + x] & 0xff) * (size - 17 * x / 20) / size;
+        image[y * size + x] = (byte) lit;
+      }
+    }
+    assertEquals("shadow", new QRCodeDecoder().decode(image, 0, size, size, size).getText());
+  }
+
+  @Test
+  public void rejectsImagesWithoutCodes() throws Exception {
+    final byte[] blank = new byte[100 * 100];
+    for (int i = 0; i < blank.length; i++) {
+      blank[i] = (byte) (i % 7 == 0 ? 40 : 200);
+    }
+    assertNull(new QRCodeDecoder().decode(blank, 0, 100, 100, 100));
+  }
+
+  @Test
+  public void correctsScuffedSymbols() throws Exception {
+    final ByteMatrix matrix = encode("scuffed label", ErrorCorrectionLevel.H, 3, null);
+    // A scratch across the data modules right of the timing pattern
+    for (int y = 12; y < 14; y++) {
+      for (int x = 9; x < 20; x++) {
+        matrix.set(x, y, 1 - matrix.get(x, y));
+      }
+    }
+    assertEquals("scuffed label", new QRCodeDecoder().decode(render(matrix, false), 0,
+        size(matrix), size(matrix), size(matrix)).getText());
+  }
+
+  @Test
+  public void rejectsSymbolsDamagedBeyondCorrection() throws Exception {
+    final ByteMatrix matrix = encode("damaged", ErrorCorrectionLevel.L, 2, null);
+    for (int y = 9; y < 17; y++) {
+      for (int x = 9; x < 17; x++) {
+        matrix.set(x, y, 1 - matrix.get(x, y));
+      }
+    }
+    assertNull(new QRCodeDecoder().decode(render(matrix, false), 0, size(matrix), size(matrix),
+        size(matrix)));
+  }
+
+  private static ByteMatrix encode(String content, ErrorCorrectionLevel level, int version,
+      String charset) throws Exception {
+    final Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+    if (version > 0) {
+      hints.put(EncodeHintType.QR_VERSION, version);
+    }
+    if (charset != null) {
+      hints.put(EncodeHintType.CHARACTER_SET, charset);
+    }
+    return Encoder.encode(content, level, hints).getMatrix();
+  }
+
+  private static int size(ByteMatrix matrix) {
+    return (matrix.getWidth() + 2 * QUIET_ZONE) * SCALE;
+  }
+
+  /**
+   * Draws a symbol with a quiet zone, optionally turned clockwise by a quarter.
+   */
+  private static byte[] render(ByteMatrix matrix, boolean rotate) {
+    final int modules = matrix.getWidth();
+    final int size = size(matrix);
+    final byte[] image = new byte[size * size];
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        int column = x / SCALE - QUIET_ZONE;
+        int row = y / SCALE - QUIET_ZONE;
+        if (rotate) {
+          final int turned = column;
+          column = row;
+          row = modules - 1 - turned;
+        }
+        final boolean dark = column >= 0 && column < modules && row >= 0 && row < modules
+            && matrix.get(column, row) == 1;
+        image[y * size + x] = (byte) (dark ? 30 : 220);
+      }
+    }
+    return image;
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2016 Nishant Srivastava
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.nisrulz.qreader.decoder;
+
+import com.google.zxing.common.reedsolomon.GenericGF;
+import com.google.zxing.common.reedsolomon.ReedSolomonEncoder;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ReedSolomonDecoderTest {
+  private static final int DATA_COUNT = 40;
+  private static final int EC_COUNT = 22;
+
+  private final Random random = new Random(3);
+  private final ReedSolomonDecoder decoder = new ReedSolomonDecoder();
+
+  @Test
+  public void leavesUndamagedBlocksAlone() throws Exception {
+    final int[] block = encode();
+    final int[] received = block.clone();
+    assertEquals(0, decoder.decode(received, 0, block.length, EC_COUNT, null, 0));
+    assertArrayEquals(block, received);
+  }
+
+  @Test
+  public void correctsUpToHalfAsManyErrorsAsEcCodewords() throws Exception {
+    for (int errors = 1; errors <= EC_COUNT / 2; errors++) {
+      final int[] block = encode();
+      final int[] received = block.clone();
+      corrupt(received, randomPositions(block.length, errors));
+      assertEquals(errors, decoder.decode(received, 0, block.length, EC_COUNT, null, 0));
+      assertArrayEquals(block, received);
+    }
+  }
+
+  @Test
+  public void correctsAsManyErasuresAsEcCodewords() throws Exception {
+    final int[] block = encode();
+    final int[] received = block.clone();
+    final int[] erasures = randomPositions(block.length, EC_COUNT);
+    corrupt(received, erasures);
+    assertEquals(EC_COUNT, decoder.decode(received, 0, block.length, EC_COUNT, erasures,
+        EC_COUNT));
+    assertArrayEquals(block, received);
+  }
+
+  @Test
+  public void correctsErrorsTogetherWithErasures() throws Exception {
+    for (int erasureCount = 0; erasureCount <= EC_COUNT; erasureCount += 2) {
+      final int errors = (EC_COUNT - erasureCount) / 2;
+      final int[] block = encode();
+      final int[] received = block.clone();
+      final int[] positions = randomPositions(block.length, erasureCount + errors);
+      corrupt(received, positions);
+      // The first positions are known, the others have to be located
+      final int corrected = decoder.decode(received, 0, block.length, EC_COUNT, positions,
+          erasureCount);
+      assertEquals(erasureCount + errors, corrected);
+      assertArrayEquals(block, received);
+    }
+  }
+
+  @Test
+  public void correctsBlocksAtAnOffset() throws Exception {
+    final int[] block = encode();
+    final int[] buffer = new int[block.length + 9];
+    System.arraycopy(block, 0, buffer, 5, block.length);
+    buffer[5] ^= 0x55;
+    buffer[5 + block.length - 1] ^= 0x0f;
+    assertEquals(2, decoder.decode(buffer, 5, block.length, EC_COUNT, null, 0));
+    assertArrayEquals(block, Arrays.copyOfRange(buffer, 5, 5 + block.length));
+  }
+
+  @Test
+  public void detectsTooManyErrors() throws Exception {
+    int detected = 0;
+    for (int trial = 0; trial < 50; trial++) {
+      final int[] block = encode();
+      final int[] received = block.clone();
+      corrupt(received, randomPositions(block.length, EC_COUNT / 2 + 3));
+      final int[] before = received.clone();
+      if (decoder.decode(received, 0, block.length, EC_COUNT, null, 0) < 0) {
+        assertArrayEquals(before, received);
+        detected++;
+      }
+      else {
+        // Decoded to another codeword, never back to the original
+        assertFalse(Arrays.equals(block, received));
+      }
+    }
+    assertEquals(50, detected, 5);
+  }
+
+  private int[] encode() {
+    final int[] block = new int[DATA_COUNT + EC_COUNT];
+    for (int i = 0; i < DATA_COUNT; i++) {
+      block[i] = random.nextInt(256);
+    }
+    new ReedSolomonEncoder(GenericGF.QR_CODE_FIELD_256).encode(block, EC_COUNT);
+    return block;
+  }
+
+  private int[] randomPositions(int length, int count) {
+    final int[] positions = new int[length];
+    for (int i = 0; i < length; i++) {
+      positions[i] = i;
+    }
+    for (int i = 0; i < count; i++) {
+      final int j = i + random.nextInt(length - i);
+      final int swap = positions[i];
+      positions[i] = positions[j];
+      positions[j] = swap;
+    }
+    return Arrays.copyOf(positions, count);
+  }
+
+  private void corrupt(int[] block, int[] positions) {
+    for (int position : positions) {
+      block[position] ^= 1 + random.nextInt(255);
+    }
+  }
+}